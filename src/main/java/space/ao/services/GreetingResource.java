@@ -80,6 +80,21 @@ public class GreetingResource {
         return response.build();
     }
 
+    @GET
+    @Produces(MediaType.TEXT_PLAIN)
+    @Path("/repeat")
+    public Response repeat(@QueryParam("content") String content, @QueryParam("times") int times) {
+        byte[] bytes = content.getBytes(StandardCharsets.UTF_8);
+        return Response.ok(
+            (StreamingOutput) output -> {
+                try (output) {
+                    for (int i = 0; i < times; i++) {
+                        output.write(bytes);
+                    }
+                }
+            }).build();
+    }
+
     public static class MultipartBody {
         @FormParam("file")
         @PartType(MediaType.APPLICATION_OCTET_STREAM)
@@ -17,11 +17,14 @@
 package space.ao.services.account.authorizedterminalinfo.repository;
 
 import io.quarkus.hibernate.orm.panache.PanacheRepository;
+import io.quarkus.panache.common.Page;
+import io.quarkus.panache.common.Sort;
 import java.util.Objects;
 
 import space.ao.services.account.authorizedterminalinfo.dto.AuthorizedTerminalInfo;
 import space.ao.services.account.authorizedterminalinfo.entity.AuthorizedTerminalEntity;
 import space.ao.services.account.personalinfo.repository.UserInfoRepository;
+import space.ao.services.support.cache.UserAccessCache;
 import space.ao.services.support.log.Logged;
 
 import jakarta.inject.Inject;
@@ -37,6 +40,8 @@ public class AuthorizedTerminalRepository implements PanacheRepository<Authorize
 
   @Inject
   UserInfoRepository userInfoRepository;
+  @Inject
+  UserAccessCache userAccessCache;
   /**
    * 根据userid查询授权端信息
    * @author suqin
@@ -91,6 +96,7 @@ public class AuthorizedTerminalRepository implements PanacheRepository<Authorize
   @Transactional
   public void delete(Long userId){
     delete("userid", userId);
+    userAccessCache.invalidateUser(userId);
   }
 
   /**
@@ -102,6 +108,7 @@ public class AuthorizedTerminalRepository implements PanacheRepository<Authorize
   @Transactional
   public void delete(Long userId, String uuid){
     delete(BY_USERID_AND_UUID, userId, uuid);
+    userAccessCache.invalidateUser(userId);
   }
 
   /**
@@ -137,6 +144,7 @@ public class AuthorizedTerminalRepository implements PanacheRepository<Authorize
     for (var i=1;i<list.size();i++){
       list.get(i).delete();
     }
+    userAccessCache.invalidateUser(authorizedTerminalEntity.getUserid());
 
     return authorizedTerminalEntity;
   }
@@ -147,9 +155,23 @@ public class AuthorizedTerminalRepository implements PanacheRepository<Authorize
     return all.stream().distinct().toList();
   }
 
+  /**
+   * 按主键顺序分页 (keyset) 查询授权端, 用于向全部终端批量推送
+   * @param afterId 上一页最后一条的 id, 第一页传 null
+   * @param limit 每页条数
+   */
+  @Transactional
+  public List<AuthorizedTerminalEntity> findTerminalsAfter(Long afterId, int limit) {
+    var query = afterId == null
+        ? findAll(Sort.by("id"))
+        : find("id > ?1", Sort.by("id"), afterId);
+    return query.page(Page.ofSize(limit)).list();
+  }
+
   @Transactional
   @Logged
   public void save(AuthorizedTerminalEntity terminalEntity) {
     persist(terminalEntity);
+    userAccessCache.invalidateUser(terminalEntity.getUserid());
   }
 }
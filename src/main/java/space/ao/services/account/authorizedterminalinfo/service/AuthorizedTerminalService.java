@@ -37,8 +37,9 @@ import space.ao.services.config.ApplicationProperties;
 import jakarta.inject.Inject;
 import jakarta.transaction.Transactional;
 import java.time.OffsetDateTime;
-import space.ao.services.push.services.RedisService;
+import space.ao.services.push.services.PresenceTracker;
 import space.ao.services.support.StringUtils;
+import space.ao.services.support.cache.UserAccessCache;
 import space.ao.services.support.log.Logged;
 import space.ao.services.support.platform.info.registry.ClientRegistryInfo;
 import space.ao.services.support.platform.info.registry.RegistryTypeEnum;
@@ -58,6 +59,11 @@ public class AuthorizedTerminalService {
   @Inject
   PlatformRegistryService platformRegistryService;
 
+  @Inject
+  UserAccessCache userAccessCache;
+  @Inject
+  PresenceTracker presenceTracker;
+
   /**
    * 插入终端授权信息
    * @author suqin
@@ -111,6 +117,7 @@ public class AuthorizedTerminalService {
     authorizedTerminalEntity.setLoginAt(OffsetDateTime.now());
     authorizedTerminalEntity.setExpireAt(OffsetDateTime.now().plusSeconds(authorizedTerminalInfo.expireAt()));
     authorizedTerminalEntity.persist();
+    userAccessCache.invalidateUser(authorizedTerminalEntity.getUserid());
     return authorizedTerminalEntity;
   }
 
@@ -131,6 +138,7 @@ public class AuthorizedTerminalService {
     platformRegistryService.platformRegistryClientReset(requestId, authorizedTerminalEntity.getAoid(),
         authorizedTerminalInfo.uuid());
     authorizedTerminalEntity.delete();
+    userAccessCache.invalidateUser(authorizedTerminalEntity.getUserid());
   }
 
 
@@ -144,7 +152,7 @@ public class AuthorizedTerminalService {
   @Transactional
   public AuthorizedTerminalEntity logoutAuthorizedTerminalInfo(@Valid @NotBlank String requestId,
       @Valid String userId, String clientUUID) {
-    RedisService.setClientStatus(clientUUID+userId, OffsetDateTime.now().minusSeconds(Duration.parse(properties.pushTimeout()).getSeconds()));
+    presenceTracker.offline(clientUUID, userId);
     return updateAuthorizedTerminalValidTime(requestId, AuthorizedTerminalInfo.of(
         userId, clientUUID, "", -Duration.parse(properties.pushTimeout()).getSeconds()*2,"",""));
   }
@@ -169,6 +177,7 @@ public class AuthorizedTerminalService {
     if(authorizedTerminalEntity.getExpireAt().isBefore(OffsetDateTime.now())
         && authorizedTerminalEntity.getExpireAt().isAfter(OffsetDateTime.now().minusSeconds(Duration.parse(properties.pushTimeout()).getSeconds()*2))){
       authorizedTerminalEntity.setExpireAt(OffsetDateTime.now().plusSeconds(Duration.parse(properties.pushTimeout()).getSeconds()));
+      userAccessCache.invalidateUser(authorizedTerminalEntity.getUserid());
     }
     authorizedTerminalEntity.persist();
   }
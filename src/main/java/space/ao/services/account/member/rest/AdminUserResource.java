@@ -35,6 +35,7 @@ import space.ao.services.account.support.service.ServiceOperationException;
 import space.ao.services.config.ApplicationProperties;
 import space.ao.services.support.FileUtils;
 import space.ao.services.support.OperationUtils;
+import space.ao.services.support.cache.UserAccessCache;
 import space.ao.services.support.log.Logged;
 import space.ao.services.support.response.ResponseBase;
 import space.ao.services.account.member.entity.BoxInfoEntity;
@@ -64,6 +65,8 @@ public class AdminUserResource {
   SecurityPasswordUtils securityPasswordUtils;
   @Inject
   BoxInfoRepository boxInfoRepository;
+  @Inject
+  UserAccessCache userAccessCache;
 
   @Inject
   MemberManageService memberManageService;
@@ -212,6 +215,7 @@ public class AdminUserResource {
                 adminInfo.get(MemberBasicAttribute.AUTHKEY.toString()),
                 adminInfo.get(MemberBasicAttribute.USERDOMAIN.toString()));
       }
+      userAccessCache.invalidateUser(1L);
 
       adminInfo.put(MemberBasicAttribute.STATUS.toString(), "0");
       utils.writeToFile(new File(properties.accountDataLocation() + ServiceDefaultVar.DEFAULT_DATA_FILE), adminInfo);
@@ -0,0 +1,163 @@
+/*
+ * Copyright (c) 2023 Institute of Software Chinese Academy of Sciences (ISCAS)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package space.ao.services.account.member.service;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.quarkus.runtime.ShutdownEvent;
+import jakarta.annotation.PostConstruct;
+import jakarta.enterprise.context.ApplicationScoped;
+import jakarta.enterprise.event.Observes;
+import jakarta.inject.Inject;
+import org.eclipse.microprofile.rest.client.inject.RestClient;
+import org.jboss.logging.Logger;
+import space.ao.services.account.deviceinfo.dto.UserStorageInfo;
+import space.ao.services.account.deviceinfo.service.DeviceStorageService;
+import space.ao.services.account.personalinfo.dto.AccountInfoResult;
+import space.ao.services.account.personalinfo.entity.UserEntity;
+import space.ao.services.config.ApplicationProperties;
+import space.ao.services.support.file.FileServiceRestClient;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+/**
+ * Builds the {@link AccountInfoResult} of members. For each member the used storage (file service) and the DID
+ * (system agent) are requested concurrently, at most {@code app.account.member-info.parallelism} calls at a time;
+ * the device storage is requested once for all members, and DIDs are cached for
+ * {@code app.account.member-info.did-cache-ttl}.
+ *
+ * <p>A slow backend does not fail the list: a storage or DID call that fails, or has not completed within
+ * {@code app.account.member-info.timeout}, is logged and its value left empty.
+ */
+@ApplicationScoped
+public class MemberInfoAggregator {
+  static final Logger LOG = Logger.getLogger("app.log");
+
+  @Inject
+  ApplicationProperties properties;
+  @Inject
+  MemberManageService memberManageService;
+  @Inject
+  @RestClient
+  FileServiceRestClient fileServiceRestClient;
+  @Inject
+  @RestClient
+  DeviceStorageService deviceStorageService;
+
+  private ExecutorService executor;
+  private Duration timeout;
+  private Cache<String, String> dids;
+
+  @PostConstruct
+  void init() {
+    var index = new AtomicInteger();
+    executor = Executors.newFixedThreadPool(properties.accountMemberInfoParallelism(), r -> {
+      var thread = new Thread(r, "member-info-" + index.incrementAndGet());
+      thread.setDaemon(true);
+      return thread;
+    });
+    timeout = Duration.parse("PT" + properties.accountMemberInfoTimeout());
+    dids = Caffeine.newBuilder()
+        .maximumSize(1000)
+        .expireAfterWrite(Duration.parse("PT" + properties.accountMemberInfoDidCacheTtl()))
+        .build();
+  }
+
+  void stop(@Observes ShutdownEvent event) {
+    executor.shutdownNow();
+  }
+
+  public List<AccountInfoResult> aggregate(String requestId, List<UserEntity> users) {
+    var deadline = System.nanoTime() + timeout.toNanos();
+    // 对于用户总的存储空间：如果邀请时设置的空间配额，则为该配额；如果没有设置，则为设备的总存储大小。
+    CompletableFuture<String> deviceTotal = users.stream().anyMatch(user -> user.getSpaceLimit() == null)
+        ? call(requestId, "device storage", () -> deviceStorageService.getStorageInfo(requestId).results().getTotal())
+        : CompletableFuture.completedFuture(null);
+    var storages = new ArrayList<CompletableFuture<UserStorageInfo>>(users.size());
+    var didFutures = new ArrayList<CompletableFuture<String>>(users.size());
+    for (var user : users) {
+      var userId = String.valueOf(user.getId());
+      storages.add(call(requestId, "storage of user " + userId,
+          () -> fileServiceRestClient.getUserStorageInfo(requestId, userId, userId).results()));
+      var cached = user.getAoId() == null ? null : dids.getIfPresent(user.getAoId());
+      didFutures.add(cached != null ? CompletableFuture.completedFuture(cached)
+          : call(requestId, "did of " + user.getAoId(), () -> did(requestId, user.getAoId())));
+    }
+
+    var total = await(deviceTotal, deadline, requestId, "device storage");
+    var results = new ArrayList<AccountInfoResult>(users.size());
+    for (int i = 0; i < users.size(); i++) {
+      var user = users.get(i);
+      var storage = await(storages.get(i), deadline, requestId, "storage of user " + user.getId());
+      var did = await(didFutures.get(i), deadline, requestId, "did of " + user.getAoId());
+      results.add(AccountInfoResult.of(user.getRole().name(), user.getPersonalName(), user.getPersonalSign(),
+          user.getCreateAt(), user.getAoId(), user.getClientUUID(), user.getPhoneModel(),
+          user.getUserDomain(), user.getImageMd5(), storage == null ? null : storage.getUserStorage(),
+          user.getSpaceLimit() != null ? String.valueOf(user.getSpaceLimit()) : total, did));
+    }
+    return results;
+  }
+
+  /**
+   * {@link MemberManageService#getDid}, which logs and returns {@code null} on failure, cached per aoid.
+   */
+  private String did(String requestId, String aoid) {
+    var did = memberManageService.getDid(requestId, null, aoid);
+    if (did != null && aoid != null) {
+      dids.put(aoid, did);
+    }
+    return did;
+  }
+
+  private <T> CompletableFuture<T> call(String requestId, String name, Supplier<T> supplier) {
+    return CompletableFuture.supplyAsync(supplier, executor).whenComplete((result, t) -> {
+      if (t != null) {
+        LOG.errorv("get {0} failed, requestId: {1}, exception: {2}", name, requestId, t.getMessage());
+      }
+    });
+  }
+
+  /**
+   * @return the result of the call, {@code null} when it failed (logged by {@link #call}) or has not completed in
+   * time.
+   */
+  private static <T> T await(CompletableFuture<T> future, long deadline, String requestId, String name) {
+    try {
+      return future.get(Math.max(0, deadline - System.nanoTime()), TimeUnit.NANOSECONDS);
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      return null;
+    } catch (ExecutionException e) {
+      return null;
+    } catch (TimeoutException e) {
+      // does not interrupt the call, its result is only dropped
+      future.cancel(false);
+      LOG.warnv("get {0} not complete in time, requestId: {1}", name, requestId);
+      return null;
+    }
+  }
+}
@@ -35,6 +35,7 @@ import space.ao.services.account.support.service.AdminInfoFileDTO;
 import space.ao.services.account.support.service.ServiceDefaultVar;
 import space.ao.services.account.support.service.ServiceError;
 import space.ao.services.support.agent.AgentServiceRestClient;
+import space.ao.services.support.cache.AccessTokenCache;
 import space.ao.services.support.agent.info.DidDoc;
 import space.ao.services.support.agent.info.DidDocResult;
 import space.ao.services.support.file.FileServiceRestClient;
@@ -88,6 +89,8 @@ public class MemberManageService {
   @Inject
   RedisTokenService redisTokenService;
   @Inject
+  AccessTokenCache accessTokenCache;
+  @Inject
   PlatformUtils platformUtils;
   @Inject
   @RestClient
@@ -99,6 +102,8 @@ public class MemberManageService {
   @Inject
   @RestClient
   DeviceStorageService deviceStorageService;
+  @Inject
+  MemberInfoAggregator memberInfoAggregator;
   private static int count = 0; // 该变量用于记录密码输入次数。通过成员变量在不同的请求中共享，其正确性的前提是该服务只会单实例部署，如果多实例部署，需要重构该变量的共享方式。
 
   private static Long timeTicket = System.currentTimeMillis(); // 该变量用于记录密码输入次数超过限制之后，再次允许验证密码的时间。通过成员变量在不同的请求中共享，其正确性的前提是该服务只会单实例部署，如果多实例部署，需要重构该变量的共享方式。
@@ -143,12 +148,8 @@ public class MemberManageService {
 
   @Logged
   public List<AccountInfoResult> getMemberList(String requestId){
-    ArrayList<AccountInfoResult> personalList = new ArrayList<>();
     List<UserEntity> userList = findAll(Sort.by("id")).list();
-    for(UserEntity userEntity :userList){
-      personalList.add(getMemberInfo(requestId, userEntity));
-    }
-    return personalList;
+    return memberInfoAggregator.aggregate(requestId, userList);
   }
 
   public AccountInfoResult getMemberInfo(String requestId, UserEntity userEntity){
@@ -271,6 +272,7 @@ public class MemberManageService {
     // 目前预期只有一条记录被成功修改。
     userInfoRepository.revokeUserClientInfo(Long.valueOf(userId));
     redisTokenService.deleteByAoid(userEntity.getAoId());
+    accessTokenCache.invalidateUser(userId);
     return ResponseBase.of("ACC-200", "revoke user success", requestId, null);
   }
 
@@ -20,7 +20,9 @@ import io.quarkus.hibernate.orm.panache.PanacheRepository;
 import space.ao.services.account.member.dto.Const;
 import space.ao.services.support.log.Logged;
 import space.ao.services.account.personalinfo.entity.UserEntity;
+import space.ao.services.support.cache.UserAccessCache;
 
+import jakarta.inject.Inject;
 import jakarta.inject.Singleton;
 import jakarta.transaction.Transactional;
 import java.time.OffsetDateTime;
@@ -33,6 +35,9 @@ public class UserInfoRepository implements PanacheRepository<UserEntity> {
   private static final String UPDATE_USER_DOMAIN_BY_USERID = "userDomain=?1 where id=?2";
   private static final String UPDATE_CLIENT_BY_USERID = "phoneModel=?1, clientUUID=?2, authKey=?3 where id=?4";
 
+  @Inject
+  UserAccessCache userAccessCache;
+
   /**
    * 根据角色查询用户
    * @author suqin
@@ -105,6 +110,7 @@ public class UserInfoRepository implements PanacheRepository<UserEntity> {
     userEntity.setRole(UserEntity.Role.ADMINISTRATOR);
     this.persist(userEntity);
     this.update("set id=1 where role = ?1", UserEntity.Role.ADMINISTRATOR);
+    userAccessCache.invalidateUser(1L);
     return userEntity;
   }
 
@@ -116,18 +122,21 @@ public class UserInfoRepository implements PanacheRepository<UserEntity> {
       this.update(
         "set clientUUID=null, phoneModel=null where id=?1", userId);
     }
+    userAccessCache.invalidateUser(userId);
 
   }
 
   @Transactional
   public void updatePhoneTypeByUserId(String phoneType, Long userid){
     this.update("set phoneType = ?1 where id = ?2", phoneType, userid);
+    userAccessCache.invalidateUser(userid);
   }
 
 
   @Transactional
   public void updateApplyEmail(String email, Long id) {
     this.update("applyEmail=?1 where id=?2", email, id);
+    userAccessCache.invalidateUser(id);
   }
 
   @Transactional
@@ -143,9 +152,11 @@ public class UserInfoRepository implements PanacheRepository<UserEntity> {
   @Transactional
   public void updateUserDomainByUserid(String userDomain, Long id) {
     this.update(UPDATE_USER_DOMAIN_BY_USERID, userDomain, id);
+    userAccessCache.invalidateUser(id);
   }
 
   public void updateClient(String phoneModel, String clientUUID, String authKey, Long userid) {
     this.update(UPDATE_CLIENT_BY_USERID, phoneModel, clientUUID, authKey, userid);
+    userAccessCache.invalidateUser(userid);
   }
 }
@@ -16,6 +16,8 @@
 
 package space.ao.services.account.security.rest;
 
+import io.smallrye.common.annotation.Blocking;
+import io.smallrye.mutiny.Uni;
 import org.eclipse.microprofile.openapi.annotations.Operation;
 import org.eclipse.microprofile.openapi.annotations.media.Schema;
 import org.eclipse.microprofile.openapi.annotations.tags.Tag;
@@ -57,7 +59,8 @@ public class SecurityMessagePoll {
     @Produces(MediaType.APPLICATION_JSON)
     @Consumes(MediaType.APPLICATION_JSON)
     @Operation(description = "消息轮询接口.")
-    public ResponseBase<List<SecurityMessageRsp>> poll(@Valid @NotBlank @HeaderParam("Request-Id") String requestId,
+    @Blocking
+    public Uni<ResponseBase<List<SecurityMessageRsp>>> poll(@Valid @NotBlank @HeaderParam("Request-Id") String requestId,
                                                        @Schema(description = "前端调用不需要加") @Valid @NotBlank @QueryParam("userId") String userId,
                                                        @Schema(description = "前端调用不需要加") @Valid @NotBlank @QueryParam(AccessToken.AK_CLIENT_UUID)  String clientUUid,
                                                        @Valid SecurityMessagePollReq req) {
@@ -73,7 +76,8 @@ public class SecurityMessagePoll {
     @Produces(MediaType.APPLICATION_JSON)
     @Consumes(MediaType.APPLICATION_JSON)
     @Operation(description = "消息轮询接口(called by system-agent).")
-    public ResponseBase<List<SecurityMessageRsp>> pollInLocal(@Valid @NotBlank @HeaderParam("Request-Id") String requestId,
+    @Blocking
+    public Uni<ResponseBase<List<SecurityMessageRsp>>> pollInLocal(@Valid @NotBlank @HeaderParam("Request-Id") String requestId,
                                                               @Schema(description = "调用者的 clientUuid") @NotBlank(message = "不可为空") @HeaderParam("clientUuid") String clientUuid,
                                                               @Schema(description = "使用盒子私钥对 clientUuid 签名, 签名算法用 sha256.") @NotBlank(message = "不可为空") @HeaderParam("clientUuidSign") String clientUuidSign,
                                                        @Valid SecurityMessagePollReq req) {
@@ -81,6 +85,6 @@ public class SecurityMessagePoll {
         if (signUtil.verifySign(requestId, clientUuid, clientUuidSign)) {
             return securityMessageService.pollInLocal(requestId, req);
         }
-        return ResponseBase.forbidden(INVALID_SIGN, requestId);
+        return Uni.createFrom().item(ResponseBase.forbidden(INVALID_SIGN, requestId));
     }
 }
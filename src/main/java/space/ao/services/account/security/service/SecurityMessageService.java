@@ -16,7 +16,9 @@
 
 package space.ao.services.account.security.service;
 
-import io.quarkus.logging.Log;
+import io.smallrye.mutiny.Uni;
+import io.smallrye.mutiny.infrastructure.Infrastructure;
+import space.ao.services.push.services.PollWakeupRegistry;
 import space.ao.services.support.redis.SecurityMessageRedisService;
 import space.ao.services.support.response.ResponseBase;
 import space.ao.services.account.security.dto.SecurityMessagePollReq;
@@ -42,7 +44,11 @@ public class SecurityMessageService {
     @Inject
     ApplicationProperties properties;
 
+    @Inject
+    PollWakeupRegistry pollWakeupRegistry;
+
     private final String redisKeyPrefix = "SCP-";
+    private static final int POP_COUNT = 100;
 
 //    map<String toClientUUid,  List<SecurityMessageStore>>
     public void storeMessage(String toClientUUid, SecurityMessageStore securityMessageStore) {
@@ -55,6 +61,7 @@ public class SecurityMessageService {
 
         var l= Duration.parse(properties.gatewayTimeOfSecurityPasswdAkLife()).toSeconds();
         securityMessageRedisService.expire(k, l);
+        pollWakeupRegistry.wakeUp(List.of(k));
     }
 
     public List<SecurityMessageStore> retriveMessage(String toClientUUid) {
@@ -62,51 +69,65 @@ public class SecurityMessageService {
         List<SecurityMessageStore> lst = new ArrayList<>();
 
         String k = redisKeyPrefix+toClientUUid;
-        securityMessageRedisService.lrange(k,0, -1).forEach((e) -> {
-            var msg =  utils.jsonToObject(e, SecurityMessageStore.class);
-            lst.add(msg);
-        });
-
-        if (lst.size()>0) {
-            securityMessageRedisService.ltrim(k,lst.size(),-1);
-        }
+        // LPOP 原子地取出并删除消息, 并发轮询同一个 clientUUID 时消息不会丢失或重复
+        List<String> popped;
+        do {
+            popped = securityMessageRedisService.lpop(k, POP_COUNT);
+            popped.forEach((e) -> {
+                var msg =  utils.jsonToObject(e, SecurityMessageStore.class);
+                lst.add(msg);
+            });
+        } while (popped.size() == POP_COUNT);
 
         return lst;
     }
 
-    public ResponseBase<List<SecurityMessageRsp>> poll(String requestId,
-                                                       String userId,
-                                                       String clientUUid,
-                                                       SecurityMessagePollReq req) {
-
-        List<SecurityMessageRsp> res = new ArrayList<>();
+    /**
+     * 没有消息时请求挂起, 直到有新消息或超时, 等待期间不占用工作线程.
+     */
+    public Uni<ResponseBase<List<SecurityMessageRsp>>> poll(String requestId,
+                                                            String userId,
+                                                            String clientUUid,
+                                                            SecurityMessagePollReq req) {
+        var deadline = System.nanoTime() + Duration.parse("PT" + properties.gatewaySecurityMessagePollTimeout()).toNanos();
+        return park(requestId, clientUUid, deadline);
+    }
 
+    /**
+     * 读取消息, 没有消息时等待唤醒后再读取. 同一个 clientUUID 有多个轮询请求时, 被唤醒的请求可能发现消息已被其他请求取走,
+     * 这时重新挂起直到截止时间.
+     */
+    private Uni<ResponseBase<List<SecurityMessageRsp>>> park(String requestId, String clientUUid, long deadline) {
+        var remaining = deadline - System.nanoTime();
+        if (remaining <= 0) {
+            return Uni.createFrom().item(toResponse(requestId, List.of()));
+        }
+        // 先注册再读取, 读取之后到达的消息也能唤醒请求
+        var waiter = pollWakeupRegistry.register(redisKeyPrefix + clientUUid);
         var lst = retriveMessage(clientUUid);
-        int n = 0;
-        // redis 中数据为空时, 调用不会阻塞. 所有这里暂时增加重试.
-        while (lst.size()<1 && n++<5) {
-            try {
-                Thread.sleep(3000);
-            } catch (InterruptedException e) {
-                Log.infov("security message poll error: {0},\n userid: {1}, clientUUID: {2}, " +
-                                "SecurityMessagePollReq: {3}", e, userId, clientUUid, req);
-                Thread.currentThread().interrupt();
-            }
-            lst = retriveMessage(clientUUid);
+        if (!lst.isEmpty()) {
+            waiter.cancel();
+            return Uni.createFrom().item(toResponse(requestId, lst));
         }
+        return waiter.await(Duration.ofNanos(remaining))
+                .emitOn(Infrastructure.getDefaultWorkerPool())
+                .flatMap(woken -> Boolean.TRUE.equals(woken)
+                        ? park(requestId, clientUUid, deadline) : Uni.createFrom().item(toResponse(requestId, List.of())));
+    }
 
+    private ResponseBase<List<SecurityMessageRsp>> toResponse(String requestId, List<SecurityMessageStore> lst) {
+        List<SecurityMessageRsp> res = new ArrayList<>();
         for (SecurityMessageStore msg : lst) {
             if (ZonedDateTime.now().isBefore(msg.getExpiresAt())) {
                 res.add(msg.getSecurityMessageRsp());
             }
         }
-
         return ResponseBase.okACC(requestId, res);
     }
 
 
-    public ResponseBase<List<SecurityMessageRsp>> pollInLocal(String requestId,
-                                                              SecurityMessagePollReq req) {
+    public Uni<ResponseBase<List<SecurityMessageRsp>>> pollInLocal(String requestId,
+                                                                   SecurityMessagePollReq req) {
 
         return poll( requestId,
                  "1",
@@ -20,6 +20,10 @@ import io.smallrye.config.ConfigMapping;
 import io.smallrye.config.WithDefault;
 import io.smallrye.config.WithName;
 
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+
 /**
  * Global application configuration properties.
  *
@@ -41,9 +45,27 @@ public interface ApplicationProperties {
   @WithName("ssplatform.user-domain.suffix")
   String ssplatformUserDomainSuffix();
 
+  @WithName("ssplatform.box-reg-key.refresh-ahead")
+  String ssplatformBoxRegKeyRefreshAhead();
+
+  @WithName("ssplatform.box-reg-key.timeout")
+  String ssplatformBoxRegKeyTimeout();
+
+  @WithName("ssplatform.box-reg-key.retry-max")
+  String ssplatformBoxRegKeyRetryMax();
+
   @WithName("psplatform.url")
   String psplatformUrl();
 
+  @WithName("platform.health.probe-interval")
+  String platformHealthProbeInterval();
+
+  @WithName("platform.health.open-probe-interval")
+  String platformHealthOpenProbeInterval();
+
+  @WithName("platform.health.failure-threshold")
+  int platformHealthFailureThreshold();
+
   @WithName("file-api.url")
   String fileapiUrl();
 
@@ -124,6 +146,9 @@ public interface ApplicationProperties {
   @WithName("gateway.routers.location")
   String gatewayRoutersLocation();
 
+  @WithName("gateway.routers.watch")
+  boolean gatewayRoutersWatch();
+
   @WithName("gateway.metadata.location")
   String gatewayMetadataLocation();
 
@@ -133,12 +158,100 @@ public interface ApplicationProperties {
   @WithName("gateway.http-client.write-timeout")
   String gatewayHttpClientWriteTimeout();
 
+  @WithName("gateway.http-client.connect-timeout")
+  String gatewayHttpClientConnectTimeout();
+
+  @WithName("gateway.http-client.keep-alive")
+  String gatewayHttpClientKeepAlive();
+
+  @WithName("gateway.http-client.max-idle-connections")
+  int gatewayHttpClientMaxIdleConnections();
+
+  @WithName("gateway.http-client.max-requests")
+  int gatewayHttpClientMaxRequests();
+
+  @WithName("gateway.http-client.max-requests-per-host")
+  int gatewayHttpClientMaxRequestsPerHost();
+
+  @WithName("gateway.http-client.queue-timeout")
+  String gatewayHttpClientQueueTimeout();
+
+  /**
+   * Per upstream host settings, keyed by host name (e.g. {@code aospace-fileapi}).
+   */
+  @WithName("gateway.http-client.hosts")
+  Map<String, UpstreamHost> gatewayHttpClientHosts();
+
+  interface UpstreamHost {
+    /**
+     * Use HTTP/2 without TLS (prior knowledge) for this host.
+     */
+    @WithName("h2c")
+    @WithDefault("false")
+    boolean h2c();
+
+    @WithName("max-idle-connections")
+    Optional<Integer> maxIdleConnections();
+
+    @WithName("max-requests")
+    Optional<Integer> maxRequests();
+
+    /**
+     * Connections opened at startup so the first requests do not pay for the connection setup.
+     */
+    @WithName("warm-up-connections")
+    @WithDefault("0")
+    int warmUpConnections();
+  }
+
+  @WithName("gateway.download.chunk-size")
+  int gatewayDownloadChunkSize();
+
+  @WithName("gateway.upload.chunk-size")
+  int gatewayUploadChunkSize();
+
+  @WithName("gateway.call.streaming.enabled")
+  boolean gatewayCallStreamingEnabled();
+
+  @WithName("gateway.call.streaming.chunk-size")
+  int gatewayCallStreamingChunkSize();
+
+  @WithName("gateway.sse.queue-size")
+  int gatewaySseQueueSize();
+
+  @WithName("gateway.sse.overflow")
+  String gatewaySseOverflow();
+
+  @WithName("gateway.messages.replay.enabled")
+  boolean gatewayMessagesReplayEnabled();
+
+  @WithName("gateway.messages.replay.max-len")
+  long gatewayMessagesReplayMaxLen();
+
+  @WithName("gateway.rate-limit.window")
+  String gatewayRateLimitWindow();
+
+  @WithName("gateway.rate-limit.applet-max")
+  int gatewayRateLimitAppletMax();
+
+  @WithName("gateway.rate-limit.user-max")
+  int gatewayRateLimitUserMax();
+
+  @WithName("gateway.rate-limit.redis")
+  boolean gatewayRateLimitRedis();
+
+  @WithName("gateway.limit-req.address-factor")
+  int gatewayLimitReqAddressFactor();
+
   @WithName("gateway.auth.time-of-ak-life")
   String gatewayTimeOfAkLife();
 
   @WithName("gateway.auth.time-of-rak-life")
   String gatewayTimeOfRakLife();
 
+  @WithName("gateway.auth.token-verify.mode")
+  String gatewayAuthTokenVerifyMode();
+
   @WithName("gateway.auth.login.time-of-qr-ak-life")
   String gatewayTimeOfQrAkLife();
 
@@ -170,6 +283,9 @@ public interface ApplicationProperties {
   @WithName("gateway.security.passwd.time-of-ak-life")
   String gatewayTimeOfSecurityPasswdAkLife();
 
+  @WithName("gateway.security.message.poll-timeout")
+  String gatewaySecurityMessagePollTimeout();
+
   @WithName("gateway.security.passwd.modify-take-effect-for-new-app")
   String gatewayTimeOfSecurityPasswdModifyTakeEffectForNewApp();
 
@@ -195,6 +311,15 @@ public interface ApplicationProperties {
   @WithName("account.data.location")
   String accountDataLocation();
 
+  @WithName("account.member-info.parallelism")
+  int accountMemberInfoParallelism();
+
+  @WithName("account.member-info.timeout")
+  String accountMemberInfoTimeout();
+
+  @WithName("account.member-info.did-cache-ttl")
+  String accountMemberInfoDidCacheTtl();
+
   @WithName("account.invite.maxmemberlimit")
   int inviteMaxMemberLimit();
 
@@ -237,6 +362,27 @@ public interface ApplicationProperties {
   @WithName("push.mq.main")
   String pushMqMain();
 
+  @WithName("push.dispatcher.group")
+  String pushDispatcherGroup();
+
+  @WithName("push.dispatcher.workers")
+  int pushDispatcherWorkers();
+
+  @WithName("push.dispatcher.batch-size")
+  int pushDispatcherBatchSize();
+
+  @WithName("push.dispatcher.block")
+  String pushDispatcherBlock();
+
+  @WithName("push.dispatcher.claim-min-idle")
+  String pushDispatcherClaimMinIdle();
+
+  @WithName("push.fanout.page-size")
+  int pushFanoutPageSize();
+
+  @WithName("push.presence.heartbeat-interval")
+  String pushPresenceHeartbeatInterval();
+
   @WithName("push.mq.platform")
   String pushMqPlatform();
 
@@ -264,9 +410,30 @@ public interface ApplicationProperties {
   @WithName("gateway.cron.cache-clean.clean-expired-ak")
   String gatewayCronCacheCleanCleanExpiredAk();
 
+  @WithName("gateway.cache.access-token.max-size")
+  long gatewayCacheAccessTokenMaxSize();
+
+  @WithName("gateway.cache.user-access.max-size")
+  long gatewayCacheUserAccessMaxSize();
+
+  @WithName("gateway.cache.user-access.expire-after-write")
+  String gatewayCacheUserAccessExpireAfterWrite();
+
   @WithName("gateway.log.file.path")
   String quarkusLogFilePath();
 
+  @WithName("gateway.log.structured.enabled")
+  boolean gatewayLogStructuredEnabled();
+
+  @WithName("gateway.log.structured.max-field-length")
+  int gatewayLogStructuredMaxFieldLength();
+
+  @WithName("gateway.log.structured.sample-rate")
+  double gatewayLogStructuredSampleRate();
+
+  @WithName("gateway.log.structured.redact")
+  List<String> gatewayLogStructuredRedact();
+
   @WithName("dockerhub.url")
   String dockerhubUrl();
 
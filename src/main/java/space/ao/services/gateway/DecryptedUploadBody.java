@@ -0,0 +1,76 @@
+/*
+ * Copyright (c) 2023 Institute of Software Chinese Academy of Sciences (ISCAS)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package space.ao.services.gateway;
+
+import okhttp3.MediaType;
+import okhttp3.RequestBody;
+import okio.BufferedSink;
+
+import javax.crypto.Cipher;
+import java.io.IOException;
+import java.io.InputStream;
+import java.security.GeneralSecurityException;
+
+/**
+ * Upload body that decrypts the file uploaded by the client while OkHttp writes it to upstream.
+ *
+ * <p>RESTEasy Reactive has already buffered the multipart file part before the resource method runs, so no
+ * backpressure reaches the client. What this body bounds is the decryption: the next chunk is only read from the
+ * buffered part when the previous one has been written to the upstream socket, so the heap used to decrypt an
+ * upload is the two chunk buffers whatever the size of the file.
+ */
+public class DecryptedUploadBody extends RequestBody {
+  private final InputStream file;
+  private final Cipher cipher;
+  private final int chunkSize;
+  private final MediaType contentType;
+
+  public DecryptedUploadBody(InputStream file, Cipher cipher, int chunkSize, MediaType contentType) {
+    this.file = file;
+    this.cipher = cipher;
+    this.chunkSize = chunkSize;
+    this.contentType = contentType;
+  }
+
+  @Override
+  public MediaType contentType() {
+    return contentType;
+  }
+
+  /**
+   * The file stream can only be read once, OkHttp must not retry the request with this body.
+   */
+  @Override
+  public boolean isOneShot() {
+    return true;
+  }
+
+  @Override
+  public void writeTo(@SuppressWarnings("NullableProblems") BufferedSink sink) throws IOException {
+    try (file) {
+      var in = new byte[chunkSize];
+      var out = new byte[cipher.getOutputSize(chunkSize)];
+      int read;
+      while ((read = file.read(in, 0, chunkSize)) != -1) {
+        sink.write(out, 0, cipher.update(in, 0, read, out, 0));
+      }
+      sink.write(out, 0, cipher.doFinal(out, 0));
+    } catch (GeneralSecurityException e) {
+      throw new IOException("decrypt upload failed", e);
+    }
+  }
+}
@@ -0,0 +1,84 @@
+/*
+ * Copyright (c) 2023 Institute of Software Chinese Academy of Sciences (ISCAS)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package space.ao.services.gateway;
+
+import jakarta.ws.rs.core.StreamingOutput;
+import org.jboss.logging.Logger;
+import space.ao.services.support.security.Base64CipherEncoder;
+
+import javax.crypto.Cipher;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Writes the {@link RealCallResult} envelope of a call while the upstream body is read, the body being encrypted
+ * and BASE64 encoded chunk by chunk with {@link Base64CipherEncoder}. Only one chunk is kept in memory, whatever
+ * the size of the upstream response.
+ */
+public class EncryptedCallOutput implements StreamingOutput {
+  static final Logger LOG = Logger.getLogger("app.log");
+
+  private static final byte[] SUFFIX = "\"}".getBytes(StandardCharsets.US_ASCII);
+
+  private final byte[] prefix;
+  private final InputStream source;
+  private final Closeable upstream;
+  private final Cipher cipher;
+  private final int chunkSize;
+
+  /**
+   * @param requestIdJson the request id, already serialized as a json string.
+   * @param source the plain upstream body, {@code null} when there is none.
+   * @param upstream closed after the content is written.
+   */
+  public EncryptedCallOutput(String requestIdJson, InputStream source, Closeable upstream, Cipher cipher,
+                             int chunkSize) {
+    // same layout as the serialized RealCallResult: {"code":200,"message":"OK","requestId":"..","body":".."}
+    this.prefix = ("{\"code\":200,\"message\":\"OK\",\"requestId\":" + requestIdJson + ",\"body\":\"")
+        .getBytes(StandardCharsets.UTF_8);
+    this.source = source;
+    this.upstream = upstream;
+    this.cipher = cipher;
+    this.chunkSize = chunkSize;
+  }
+
+  @Override
+  public void write(OutputStream output) throws IOException {
+    try (upstream; output) {
+      var encoder = new Base64CipherEncoder(cipher);
+      output.write(prefix);
+      if (source != null) {
+        var in = new byte[chunkSize];
+        int read;
+        while ((read = source.read(in, 0, chunkSize)) != -1) {
+          output.write(encoder.update(in, 0, read));
+        }
+      }
+      output.write(encoder.doFinal());
+      output.write(SUFFIX);
+    } catch (IOException e) {
+      LOG.error("call transfer error", e);
+      throw e;
+    } catch (Exception e) {
+      LOG.error("call transfer error", e);
+      throw new IOException(e);
+    }
+  }
+}
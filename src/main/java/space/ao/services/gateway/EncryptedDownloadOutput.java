@@ -0,0 +1,144 @@
+/*
+ * Copyright (c) 2023 Institute of Software Chinese Academy of Sciences (ISCAS)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package space.ao.services.gateway;
+
+import jakarta.ws.rs.core.StreamingOutput;
+import org.jboss.logging.Logger;
+
+import javax.crypto.Cipher;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.regex.Pattern;
+
+/**
+ * Encrypts a download while streaming it to the client, optionally only the bytes {@code [start, end]} of the
+ * encrypted content (HTTP Range).
+ *
+ * <p>The content is encrypted with AES/CBC, where every block depends on the previous one, so a range is
+ * produced by encrypting from the beginning and dropping the bytes before {@code start}; upstream reading stops
+ * once {@code end} is written. The input and output buffers are allocated once per download and reused for
+ * every chunk.
+ */
+public class EncryptedDownloadOutput implements StreamingOutput {
+  static final Logger LOG = Logger.getLogger("app.log");
+
+  private static final Pattern RANGE = Pattern.compile("bytes=(\\d*)-(\\d*)");
+  private static final int BLOCK_SIZE = 16;
+
+  private final InputStream source;
+  private final Closeable upstream;
+  private final Cipher cipher;
+  private final int chunkSize;
+  private final long start;
+  private final long end;
+
+  /**
+   * @param source the plain content.
+   * @param upstream closed after the content is written.
+   * @param start first encrypted byte to write.
+   * @param end last encrypted byte to write (inclusive), {@code Long.MAX_VALUE} for all.
+   */
+  public EncryptedDownloadOutput(InputStream source, Closeable upstream, Cipher cipher, int chunkSize,
+                                 long start, long end) {
+    this.source = source;
+    this.upstream = upstream;
+    this.cipher = cipher;
+    this.chunkSize = chunkSize;
+    this.start = start;
+    this.end = end;
+  }
+
+  /**
+   * @return the size of the content once encrypted with PKCS5 padding.
+   */
+  public static long encryptedSize(long plainSize) {
+    return plainSize + (BLOCK_SIZE - (plainSize % BLOCK_SIZE));
+  }
+
+  /**
+   * Parses a single range {@code bytes=start-end}, {@code bytes=start-} or {@code bytes=-suffix}.
+   *
+   * @return {@code {start, end}} (end inclusive), or {@code null} when the header is not a single byte range.
+   * An unsatisfiable range returns {@code {size, size}}.
+   */
+  public static long[] parseRange(String range, long size) {
+    if (range == null) {
+      return null;
+    }
+    var matcher = RANGE.matcher(range.trim());
+    if (!matcher.matches() || (matcher.group(1).isEmpty() && matcher.group(2).isEmpty())) {
+      return null;
+    }
+    try {
+      long first;
+      long last;
+      if (matcher.group(1).isEmpty()) {
+        first = Math.max(0, size - Long.parseLong(matcher.group(2)));
+        last = size - 1;
+      } else {
+        first = Long.parseLong(matcher.group(1));
+        last = matcher.group(2).isEmpty() ? size - 1 : Math.min(Long.parseLong(matcher.group(2)), size - 1);
+      }
+      if (first >= size || first > last) {
+        return new long[]{size, size};
+      }
+      return new long[]{first, last};
+    } catch (NumberFormatException e) {
+      return null;
+    }
+  }
+
+  @Override
+  public void write(OutputStream output) throws IOException {
+    try (upstream; output) {
+      var in = new byte[chunkSize];
+      var out = new byte[cipher.getOutputSize(chunkSize)];
+      long position = 0;
+      int read;
+      while (position <= end && (read = source.read(in, 0, chunkSize)) != -1) {
+        var length = cipher.update(in, 0, read, out, 0);
+        position = emit(output, out, length, position);
+      }
+      if (position <= end) {
+        var length = cipher.doFinal(out, 0);
+        emit(output, out, length, position);
+      }
+    } catch (IOException e) {
+      LOG.error("download transfer error", e);
+      throw e;
+    } catch (Exception e) {
+      LOG.error("download transfer error", e);
+      throw new IOException(e);
+    }
+  }
+
+  /**
+   * Writes the part of {@code buffer} (encrypted bytes starting at {@code position}) inside the range.
+   *
+   * @return the position after the buffer.
+   */
+  private long emit(OutputStream output, byte[] buffer, int length, long position) throws IOException {
+    var from = Math.max(start, position);
+    var to = Math.min(end, position + length - 1) + 1;
+    if (from < to) {
+      output.write(buffer, (int) (from - position), (int) (to - from));
+    }
+    return position + length;
+  }
+}
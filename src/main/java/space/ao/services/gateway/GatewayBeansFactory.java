@@ -25,7 +25,6 @@ import space.ao.services.support.OperationUtils;
 
 import jakarta.annotation.PostConstruct;
 import jakarta.enterprise.context.ApplicationScoped;
-import jakarta.enterprise.inject.Produces;
 import jakarta.inject.Inject;
 
 @Startup
@@ -47,10 +46,11 @@ public class GatewayBeansFactory {
 
   }
 
-  @Produces
+  /**
+   * Reads and parses the routes file at {@code app.gateway.routers.location}.
+   */
   @SneakyThrows
-  @SuppressWarnings("unused") // Used by DIC framework
-  public Routers routers() {
+  public Routers loadRouters() {
     Routers routers;
     LOG.info("start to fetch and create gateway routers.");
     try (var reader = utils.getFileStreamReader(properties.gatewayRoutersLocation())) {
@@ -16,64 +16,78 @@
 
 package space.ao.services.gateway;
 
-import org.eclipse.microprofile.reactive.messaging.Channel;
-import org.eclipse.microprofile.reactive.messaging.Emitter;
-import org.eclipse.microprofile.reactive.messaging.Incoming;
-import org.eclipse.microprofile.reactive.messaging.OnOverflow;
-import org.eclipse.microprofile.reactive.messaging.Outgoing;
-
-import io.smallrye.mutiny.Multi;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
 import io.smallrye.mutiny.Uni;
+import jakarta.annotation.PostConstruct;
 import jakarta.enterprise.context.ApplicationScoped;
+import jakarta.inject.Inject;
+import org.jboss.logging.Logger;
+import space.ao.services.support.OperationUtils;
+
+import java.util.concurrent.TimeUnit;
 
 /**
- * Gateway message service is used to publish gateway message to endpoint and
- * manage gateway message channel.
+ * Gateway message service is used to publish gateway message to the clients subscribed to the
+ * gateway message endpoint.
+ *
+ * <p>Messages are stored in the {@link GatewayMessageStore} stream (when replay is enabled) before they are
+ * handed to {@link SseSubscriptionRegistry}, so they are not lost when nobody is subscribed and clients can
+ * resume from {@code Last-Event-ID}. Slow subscribers are handled per connection, publishing never blocks
+ * on them.
  */
 @ApplicationScoped
 public class GatewayMessageService {
+  static final Logger LOG = Logger.getLogger("app.log");
 
-  /**
-   * This message emitter is only used to publish gateway message to client who
-   * should have been subscribed to gateway message endpoint.
-   */
-  @Channel("gateway-messages-src")
-  @OnOverflow(value = OnOverflow.Strategy.BUFFER, bufferSize = 256)
-  Emitter<GatewayMessage> publisher;
+  @Inject
+  SseSubscriptionRegistry sseSubscriptions;
+  @Inject
+  GatewayMessageStore store;
+  @Inject
+  OperationUtils utils;
+  @Inject
+  MeterRegistry registry;
 
-  /**
-   * Create a joint point for auditing all gateway message here.
-   *
-   * @param message the all gateway messages
-   */
-  @Incoming("gateway-messages-src")
-  @Outgoing("gateway-messages")
-  Multi<GatewayMessage> onMessage(Multi<GatewayMessage> message) {
-    return message.log();
-  }
+  private Timer publishTimer;
+  private Counter storeFailures;
 
-  /**
-   * It offers a way to query if the gateway channel has been established
-   * before publishing message.
-   *
-   * @return true for ready to publish, and false for otherwise.
-   */
-  public boolean isChannelAvailable() {
-    return publisher.hasRequests();
+  @PostConstruct
+  void init() {
+    publishTimer = Timer.builder("gateway.messages.publish")
+        .description("time to store and dispatch a gateway message")
+        .register(registry);
+    storeFailures = Counter.builder("gateway.messages.store.failures")
+        .description("gateway messages dispatched without being stored")
+        .register(registry);
   }
 
   /**
-   * Used to publish message when gateway message channel is ready to do so. Note,
-   * before calling this method, you should always check if chancel is ready to write by
-   * calling {@link #isChannelAvailable()}.
+   * Used to publish message to the subscribed clients.
    *
    * @param gatewayMessage the message to be published.
    * @return the Uni result used to wait or to be notified when it completed.
    */
   public Uni<GatewayMessage> publish(GatewayMessage gatewayMessage) {
-    return Uni.createFrom()
-        .completionStage(publisher.send(gatewayMessage))
-        .replaceWith(gatewayMessage);
+    var started = System.nanoTime();
+    if (!store.enabled() && !sseSubscriptions.hasReceivers(gatewayMessage)) {
+      publishTimer.record(System.nanoTime() - started, TimeUnit.NANOSECONDS);
+      return Uni.createFrom().item(gatewayMessage);
+    }
+    var json = utils.objectToJson(gatewayMessage);
+    var fallbackId = String.valueOf(gatewayMessage.getUuid());
+    var id = store.enabled()
+        ? store.append(json).onFailure().recoverWithItem(t -> {
+          LOG.errorv(t, "store gateway message {0} failed", fallbackId);
+          storeFailures.increment();
+          return fallbackId;
+        })
+        : Uni.createFrom().item(fallbackId);
+    return id.map(i -> {
+      sseSubscriptions.dispatch(new SseSubscriptionRegistry.Delivery(i, gatewayMessage, json));
+      publishTimer.record(System.nanoTime() - started, TimeUnit.NANOSECONDS);
+      return gatewayMessage;
+    });
   }
 }
-
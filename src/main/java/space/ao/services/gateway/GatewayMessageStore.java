@@ -0,0 +1,101 @@
+/*
+ * Copyright (c) 2023 Institute of Software Chinese Academy of Sciences (ISCAS)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package space.ao.services.gateway;
+
+import io.quarkus.redis.datasource.ReactiveRedisDataSource;
+import io.quarkus.redis.datasource.stream.ReactiveStreamCommands;
+import io.quarkus.redis.datasource.stream.StreamRange;
+import io.quarkus.redis.datasource.stream.XAddArgs;
+import io.smallrye.mutiny.Uni;
+import jakarta.annotation.PostConstruct;
+import jakarta.enterprise.context.ApplicationScoped;
+import jakarta.inject.Inject;
+import space.ao.services.config.ApplicationProperties;
+
+import java.util.List;
+import java.util.Map;
+import java.util.regex.Pattern;
+
+/**
+ * Keeps the last {@code app.gateway.messages.replay.max-len} gateway messages in the {@code gateway_messages}
+ * Redis stream. The stream id of a message is the id of its SSE event, so a client reconnecting with
+ * {@code Last-Event-ID} and a connection that fell behind can read what they missed.
+ */
+@ApplicationScoped
+public class GatewayMessageStore {
+
+  static final String STREAM_KEY = "gateway_messages";
+  private static final String FIELD_MESSAGE = "message";
+  private static final Pattern STREAM_ID = Pattern.compile("\\d+-\\d+");
+
+  /**
+   * @param id the stream id.
+   * @param json the serialized {@link GatewayMessage}.
+   */
+  public record Entry(String id, String json) {
+  }
+
+  @Inject
+  ApplicationProperties properties;
+  @Inject
+  ReactiveRedisDataSource redisDataSource;
+
+  private ReactiveStreamCommands<String, String, String> streamCommands;
+
+  @PostConstruct
+  void init() {
+    streamCommands = redisDataSource.stream(String.class);
+  }
+
+  public boolean enabled() {
+    return properties.gatewayMessagesReplayEnabled();
+  }
+
+  /**
+   * @return the stream id of the appended message.
+   */
+  public Uni<String> append(String json) {
+    return streamCommands.xadd(STREAM_KEY,
+        new XAddArgs().maxlen(properties.gatewayMessagesReplayMaxLen()).nearlyExactTrimming(),
+        Map.of(FIELD_MESSAGE, json));
+  }
+
+  /**
+   * @return at most {@code count} messages appended after {@code id} (exclusive), oldest first.
+   */
+  public Uni<List<Entry>> readAfter(String id, int count) {
+    return streamCommands.xrange(STREAM_KEY, StreamRange.of("(" + id, "+"), count)
+        .map(messages -> messages.stream()
+            .map(m -> new Entry(m.id(), m.payload().get(FIELD_MESSAGE)))
+            .toList());
+  }
+
+  public static boolean isStreamId(String id) {
+    return id != null && STREAM_ID.matcher(id).matches();
+  }
+
+  /**
+   * Compares two stream ids ({@code <millis>-<sequence>}) in stream order.
+   */
+  public static int compare(String id, String other) {
+    var split = id.indexOf('-');
+    var otherSplit = other.indexOf('-');
+    var result = Long.compare(Long.parseLong(id.substring(0, split)), Long.parseLong(other.substring(0, otherSplit)));
+    return result != 0 ? result
+        : Long.compare(Long.parseLong(id.substring(split + 1)), Long.parseLong(other.substring(otherSplit + 1)));
+  }
+}
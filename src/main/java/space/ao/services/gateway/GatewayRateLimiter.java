@@ -0,0 +1,93 @@
+/*
+ * Copyright (c) 2023 Institute of Software Chinese Academy of Sciences (ISCAS)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package space.ao.services.gateway;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import jakarta.enterprise.context.ApplicationScoped;
+import jakarta.inject.Inject;
+import org.jboss.logging.Logger;
+import space.ao.services.config.ApplicationProperties;
+import space.ao.services.support.limit.RateLimitedException;
+import space.ao.services.support.limit.RateLimiter;
+import space.ao.services.support.model.AccessToken;
+
+import java.time.Duration;
+
+/**
+ * Quotas of the call, upload and download routes:
+ * <ul>
+ *   <li>route: {@code open-api.rate_limit} of the route, per open api applet;</li>
+ *   <li>applet: {@code app.gateway.rate-limit.applet-max}, per open api applet over all routes;</li>
+ *   <li>user: {@code app.gateway.rate-limit.user-max}, per user over all routes.</li>
+ * </ul>
+ * Every quota counts the requests of one {@code app.gateway.rate-limit.window}. The quotas are kept by each
+ * gateway in local token buckets, or shared by all gateways through redis when {@code app.gateway.rate-limit.redis}
+ * is set.
+ */
+@ApplicationScoped
+public class GatewayRateLimiter {
+  static final Logger LOG = Logger.getLogger("app.log");
+
+  private static final String KEY_PREFIX = "GWREQRATE-";
+
+  @Inject
+  RateLimiter rateLimiter;
+  @Inject
+  ApplicationProperties properties;
+  @Inject
+  MeterRegistry registry;
+
+  private Duration window;
+
+  @PostConstruct
+  void init() {
+    window = Duration.parse("PT" + properties.gatewayRateLimitWindow());
+  }
+
+  /**
+   * @throws RateLimitedException when one of the quotas of the request is exhausted.
+   */
+  public void check(RouteTable.Route route, AccessToken accessToken) {
+    if (accessToken.isOpenApi()) {
+      var openApi = route.router().getOpenApi();
+      var appletId = accessToken.getOpenApiAppletId();
+      if (openApi != null && openApi.getRateLimit() != null && openApi.getRateLimit() > 0) {
+        acquire(route, "route",
+            KEY_PREFIX + route.serviceName() + "/" + route.apiName() + "-" + appletId, openApi.getRateLimit());
+      }
+      if (properties.gatewayRateLimitAppletMax() > 0) {
+        acquire(route, "applet", KEY_PREFIX + "applet-" + appletId, properties.gatewayRateLimitAppletMax());
+      }
+    }
+    if (properties.gatewayRateLimitUserMax() > 0) {
+      acquire(route, "user", KEY_PREFIX + "user-" + accessToken.getUserId(), properties.gatewayRateLimitUserMax());
+    }
+  }
+
+  private void acquire(RouteTable.Route route, String quota, String key, int max) {
+    var wait = properties.gatewayRateLimitRedis()
+        ? rateLimiter.acquire(key, max, window)
+        : rateLimiter.acquireLocal(key, max, window);
+    if (wait > 0) {
+      var api = route.serviceName() + "/" + route.apiName();
+      registry.counter("gateway.route.throttled", "route", api, "quota", quota).increment();
+      LOG.debugv("{0} throttled by {1}, retry after {2}ms", api, key, String.valueOf(wait));
+      throw new RateLimitedException(wait);
+    }
+  }
+}
@@ -18,10 +18,10 @@ package space.ao.services.gateway;
 
 import org.eclipse.microprofile.openapi.annotations.Operation;
 import org.eclipse.microprofile.openapi.annotations.tags.Tag;
-import org.eclipse.microprofile.reactive.messaging.Channel;
 
 import io.quarkus.logging.Log;
 import io.smallrye.mutiny.Multi;
+import space.ao.services.config.ApplicationProperties;
 import space.ao.services.support.RestConfiguration;
 import space.ao.services.support.TokenUtils;
 import space.ao.services.support.model.AccessToken;
@@ -33,6 +33,7 @@ import jakarta.validation.Valid;
 import jakarta.validation.constraints.NotBlank;
 import jakarta.ws.rs.*;
 import jakarta.ws.rs.core.Context;
+import jakarta.ws.rs.core.HttpHeaders;
 import jakarta.ws.rs.core.MediaType;
 import jakarta.ws.rs.core.Response;
 import jakarta.ws.rs.sse.OutboundSseEvent;
@@ -56,6 +57,10 @@ public class GatewayResource {
   SecurityUtils securityUtils;
   @Inject
   TokenUtils tokenUtils;
+  @Inject
+  ApplicationProperties properties;
+  @Inject
+  SseSubscriptionRegistry sseSubscriptions;
 
 
   /**
@@ -97,15 +102,20 @@ public class GatewayResource {
   @Operation(description =
       "Tries to handle and forward a space call request to underlying service regarding with " +
           "specified service and api name.")
-  public RealCallResult call(@Valid @NotBlank @HeaderParam(RestConfiguration.REQUEST_ID) String requestId,
-                             @HeaderParam("Authorization") String bearerToken,
-                             @Valid CallRequest callRequest) {
+  public Response call(@Valid @NotBlank @HeaderParam(RestConfiguration.REQUEST_ID) String requestId,
+                       @HeaderParam("Authorization") String bearerToken,
+                       @Valid CallRequest callRequest) {
     final var accessToken = checkAccessToken(requestId, bearerToken, callRequest.accessToken());
     final var request = checkRequestBody(callRequest.body(), accessToken);
 
+    if (properties.gatewayCallStreamingEnabled()) {
+      // the RealCallResult envelope is written while the upstream body is read and encrypted
+      final var output = service.handleStreamingCall(requestId, request, accessToken);
+      return Response.ok(output, MediaType.APPLICATION_JSON).build();
+    }
     final var handleResult = service.handleCall(requestId, request, accessToken);
     final var result = encodeResult(handleResult, accessToken);
-    return RealCallResult.of(200, "OK", requestId, result);
+    return Response.ok(RealCallResult.of(200, "OK", requestId, result)).build();
   }
 
   /**
@@ -133,8 +143,7 @@ public class GatewayResource {
   public RealCallResult upload(@Valid @NotBlank @HeaderParam(RestConfiguration.REQUEST_ID) String requestId,
                                @HeaderParam("Authorization") String bearerToken,
                                MultipartRequest mpr) {
-    final var callRequestStr = utils.inputStreamToString(mpr.callRequest);
-    final var callRequest = utils.jsonToObject(callRequestStr, CallRequest.class);
+    final var callRequest = utils.jsonToObject(mpr.callRequest, CallRequest.class);
     final var accessToken = checkAccessToken(requestId, bearerToken, callRequest.accessToken());
     final var request = checkRequestBody(callRequest.body(), accessToken);
 
@@ -147,7 +156,11 @@ public class GatewayResource {
    * Used to download a file hosted in the underlying service. It uses HTTP GET method and
    * will specify a temporary file name for attachment.
    *
+   * <p>A single HTTP {@code Range} of the encrypted content is supported, so that an interrupted download
+   * can be resumed; the response is then {@code 206 Partial Content} with {@code Content-Range}.
+   *
    * @param requestId the request track id generated by the caller of client.
+   * @param range the optional byte range of the encrypted content, e.g. {@code bytes=1024-}.
    * @param callRequest the unified api call request
    * @return http response with header: <tt>Content-Disposition: attachment;filename=file</tt>
    */
@@ -160,19 +173,24 @@ public class GatewayResource {
           "specified service and api name.")
   public Response download(@NotBlank @HeaderParam(RestConfiguration.REQUEST_ID) String requestId,
                            @HeaderParam("Authorization") String bearerToken,
+                           @HeaderParam("Range") String range,
                            @Valid CallRequest callRequest) {
     final var accessToken = checkAccessToken(requestId, bearerToken, callRequest.accessToken());
     final var request = checkRequestBody(callRequest.body(), accessToken);
 
-    final var result = service.handleDownload(requestId, request, accessToken);
+    final var result = service.handleDownload(requestId, request, accessToken, range);
     Response.ResponseBuilder builder;
     if(result.getCode() == Response.Status.NOT_FOUND.getStatusCode()){
       builder = Response.status(Response.Status.NOT_FOUND).entity(result.getFile());
-    } else if(result.getFileSize() == 0L){
-      builder = Response.ok(result.getFile());
+    } else if(result.getCode() == Response.Status.REQUESTED_RANGE_NOT_SATISFIABLE.getStatusCode()){
+      builder = Response.status(Response.Status.REQUESTED_RANGE_NOT_SATISFIABLE);
     } else {
-      builder = Response.ok(result.getFile())
-          .header("File-Size", String.valueOf(result.getFileSize()));
+      var status = result.getCode() == Response.Status.PARTIAL_CONTENT.getStatusCode() ?
+          Response.Status.PARTIAL_CONTENT : Response.Status.OK;
+      builder = Response.status(status).entity(result.getFile());
+      if (result.getFileSize() != 0L) {
+        builder.header("File-Size", String.valueOf(result.getFileSize()));
+      }
     }
     if (result.getHeaders() != null && !result.getHeaders().isEmpty()) {
       result.getHeaders().forEach(builder::header);
@@ -180,14 +198,6 @@ public class GatewayResource {
     return builder.build();
   }
 
-  /**
-   * This channel is used to output gateway messages. Http Clients
-   * can subscribe to it by calling this SSE endpoint and stream messages
-   * with a push-style manner.
-   */
-  @Channel("gateway-messages")
-  Multi<GatewayMessage> messages;
-
   /**
    * It offers an endpoint for serving SSE(Server-sent Events) based http message stream request.
    * From this endpoint, You can specify a topic to filter message that client is interested in.
@@ -196,6 +206,7 @@ public class GatewayResource {
    * @param clientUuid  the client uuid that belongs to the caller
    * @param requestId   the request track id generated by the caller of client.
    * @param bearerToken the Authorization token info
+   * @param lastEventId the id of the last event received before reconnecting, missed messages are replayed
    * @param sse         the current sse context
    * @param sink        the current sse sink context
    * @return the SSE stream
@@ -207,35 +218,23 @@ public class GatewayResource {
                                         @QueryParam("clientUuid") String clientUuid,
                                         @NotBlank @HeaderParam(RestConfiguration.REQUEST_ID) String requestId,
                                         @NotBlank @HeaderParam("Authorization") String bearerToken,
+                                        @HeaderParam(HttpHeaders.LAST_EVENT_ID_HEADER) String lastEventId,
                                         @Context Sse sse, @Context SseEventSink sink) {
     final var accessToken = checkAccessToken(requestId, bearerToken, null);
 
     sink.send(sse.newEventBuilder().id("0").mediaType(MediaType.APPLICATION_JSON_TYPE)
         .data(Map.of("message", "Welcome!")).name(topic).build());
 
-    return messages.filter(m -> checkMessage(topic, accessToken, m))
-        .map(m -> sse.newEventBuilder()
-            .id(m.getUuid().toString())
-            .name(m.getTopic())
+    return sseSubscriptions.subscribe(topic, accessToken, lastEventId)
+        .map(d -> sse.newEventBuilder()
+            .id(d.id())
+            .name(d.message().getTopic())
             .mediaType(MediaType.TEXT_PLAIN_TYPE)
-            .data(encodeResult(utils.objectToJson(m), accessToken))
+            .data(encodeResult(d.json(), accessToken))
             .build())
         .onCancellation().invoke(() -> Log.infof("SSE for topic=%s cancelled", topic))
         .onCompletion().invoke(() -> Log.infof("SSE for topic=%s completed", topic))
-        .onFailure().invoke(t -> Log.errorf(t, "SSE for topic=%s failed" + topic));
-  }
-
-  private static boolean checkMessage(String topic, AccessToken accessToken, GatewayMessage m) {
-    if (!topic.equals(m.getTopic())) {
-      return false;
-    }
-    if (m.getType() == GatewayMessage.Type.USER) {
-      return accessToken.getUserId().equals(m.getUserId());
-    }
-    if (m.getType() == GatewayMessage.Type.CLIENT) {
-      return accessToken.getClientUUID().equalsIgnoreCase(m.getUuid().toString());
-    }
-    return true;
+        .onFailure().invoke(t -> Log.errorf(t, "SSE for topic=%s failed", topic));
   }
 
   private AccessToken checkAccessToken(String requestId, String bearerToken, String accessToken) {
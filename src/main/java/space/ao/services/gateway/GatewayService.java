@@ -22,17 +22,11 @@ import jakarta.inject.Inject;
 import jakarta.ws.rs.core.StreamingOutput;
 import lombok.SneakyThrows;
 import okhttp3.*;
-import okio.BufferedSink;
-import okio.BufferedSource;
-import okio.Okio;
 import org.jboss.logging.Logger;
-import space.ao.services.account.authorizedterminalinfo.entity.AuthorizedTerminalEntity;
-import space.ao.services.account.authorizedterminalinfo.repository.AuthorizedTerminalRepository;
-import space.ao.services.account.member.service.MemberManageService;
-import space.ao.services.account.personalinfo.entity.UserEntity;
 import space.ao.services.config.ApplicationProperties;
 import space.ao.services.support.OperationUtils;
 import space.ao.services.support.TokenUtils;
+import space.ao.services.support.cache.UserAccessCache;
 import space.ao.services.support.log.Logged;
 import space.ao.services.support.model.AccessToken;
 import space.ao.services.support.platform.PlatformUtils;
@@ -52,7 +46,7 @@ import static space.ao.services.support.RestConfiguration.REQUEST_ID;
 public class GatewayService {
   static final Logger LOG = Logger.getLogger("app.log");
 
-  @Inject OkHttpClient httpClient;
+  @Inject UpstreamHttpClients httpClients;
   static final MediaType JSON = MediaType.get("application/json; charset=utf-8");
   static final MediaType MULTIPART_FORM = MediaType.get("multipart/form-data");
   static final MediaType OCTET = MediaType.parse("application/octet-stream");
@@ -64,22 +58,57 @@ public class GatewayService {
   @Inject
   PlatformUtils platformUtils;
   @Inject
-  MemberManageService memberManageService;
-  @Inject
   ApplicationProperties properties;
   @Inject
-  AuthorizedTerminalRepository authorizedTerminalRepository;
+  UserAccessCache userAccessCache;
 
   @Inject
-  Routers routers;
+  RouteRegistry routeRegistry;
+  @Inject
+  GatewayRateLimiter rateLimiter;
+
+  /**
+   * A call request that has passed the access checks and is ready to be sent to the upstream service.
+   */
+  public record PreparedCall(RouteTable.Route route, HttpUrl url, Map<String, String> headers, Object entity) {
+  }
 
   @Logged
   @SneakyThrows
   public String handleCall(String requestId, RealCallRequest request, AccessToken accessToken) {
-    final var router =
-        routers.getServices().get(request.getServiceName()).get(request.getApiName());
+    var call = prepareCall(requestId, request, accessToken);
+    return execCall(call, requestId);
+  }
+
+  /**
+   * Same as {@link #handleCall}, but the upstream response is kept open: the returned output encrypts its body
+   * while writing it to the client, then closes it.
+   *
+   * <p>The memory is bounded by the chunk size, but the transfer is not non-blocking: it runs on the worker thread
+   * that writes the output, like the download route, so that the call keeps the routing, bulkhead, metrics and
+   * error mapping of the shared upstream clients. The worker pool is sized above
+   * {@code app.gateway.http-client.max-requests} for this.
+   */
+  @Logged
+  @SneakyThrows
+  public StreamingOutput handleStreamingCall(String requestId, RealCallRequest request, AccessToken accessToken) {
+    var call = prepareCall(requestId, request, accessToken);
+    var cipher = tokenUtils.createAndInitCipherWithAccessToken(accessToken, Cipher.ENCRYPT_MODE);
+    var upstream = createRequest(call, requestId);
+    // response 再 transfer 后才被关闭。
+    var response = httpClients.forUrl(upstream.url()).newCall(upstream).execute();
+    return new EncryptedCallOutput(utils.objectToJson(requestId),
+        response.body() == null ? null : response.body().byteStream(), response, cipher,
+        properties.gatewayCallStreamingChunkSize());
+  }
+
+  /**
+   * Checks the access of a call request and resolves its upstream url, headers and entity.
+   */
+  private PreparedCall prepareCall(String requestId, RealCallRequest request, AccessToken accessToken) {
+    final var route = routeRegistry.current().get(request.getServiceName(), request.getApiName());
 
-    var user = checkIllegalApiAccess(accessToken, router);
+    var user = checkIllegalApiAccess(accessToken, route);
 
     Map<String, String> query = new HashMap<>();
     if (request.getQueries() != null) {
@@ -87,19 +116,14 @@ public class GatewayService {
     }
     query.put(AccessToken.USER_ID, accessToken.getUserId());
     query.put("AccessToken-" +AccessToken.CLIENT_UUID, accessToken.getClientUUID());
-    if (user.getSpaceLimit() != null) {
-      query.put("spaceLimit", String.valueOf(user.getSpaceLimit()));
+    if (user.spaceLimit() != null) {
+      query.put("spaceLimit", String.valueOf(user.spaceLimit()));
     }
 
     handlePlatformRequest(requestId, request, query, accessToken);
 
-    return execCall(
-        router,
-        query,
-        request.getHeaders(),
-        request.getEntity(),
-        requestId
-    );
+    return new PreparedCall(route, createUrl(route, query, request.getHeaders()), request.getHeaders(),
+        request.getEntity());
   }
 
   private void handlePlatformRequest(String requestId, RealCallRequest request, Map<String, String> query, AccessToken accessToken) {
@@ -133,10 +157,9 @@ public class GatewayService {
   @Logged(enablePreLog = false)
   @SneakyThrows
   public String handleUpload(String requestId, RealCallRequest request, InputStream file, AccessToken accessToken) {
-    final var router =
-        routers.getServices().get(request.getServiceName()).get(request.getApiName());
+    final var route = routeRegistry.current().get(request.getServiceName(), request.getApiName());
 
-    checkIllegalApiAccess(accessToken, router);
+    checkIllegalApiAccess(accessToken, route);
 
     Map<String, String> query = new HashMap<>();
     if (request.getQueries() != null) {
@@ -145,7 +168,7 @@ public class GatewayService {
     query.put(AccessToken.USER_ID, accessToken.getUserId());
 
     return execUpload(
-        router,
+        route,
         query,
         request.getHeaders(),
         request.getEntity(),
@@ -157,11 +180,10 @@ public class GatewayService {
 
   @Logged
   @SneakyThrows
-  public FileResult handleDownload(String requestId, RealCallRequest request, AccessToken accessToken) {
-    final var router =
-        routers.getServices().get(request.getServiceName()).get(request.getApiName());
+  public FileResult handleDownload(String requestId, RealCallRequest request, AccessToken accessToken, String range) {
+    final var route = routeRegistry.current().get(request.getServiceName(), request.getApiName());
 
-    checkIllegalApiAccess(accessToken, router);
+    checkIllegalApiAccess(accessToken, route);
 
     Map<String, String> query = new HashMap<>();
     if (request.getQueries() != null) {
@@ -170,125 +192,96 @@ public class GatewayService {
     query.put(AccessToken.USER_ID, accessToken.getUserId());
 
     return execDownload(
-        router,
+        route,
         query,
         request.getHeaders(),
         request.getEntity(),
         requestId,
-        accessToken
+        accessToken,
+        range
     );
   }
 
-  private FileResult execDownload(Routers.Router router, Map<String, String> queries, Map<String, String> headers,
-      Object entity, String requestId, AccessToken accessToken) throws IOException {
-    if (!"HTTP".equalsIgnoreCase(router.getProtocol())) {
-      throw new ServiceOperationException(500, "execDownload no support yet for protocol - " + router.getProtocol());
+  private FileResult execDownload(RouteTable.Route route, Map<String, String> queries, Map<String, String> headers,
+      Object entity, String requestId, AccessToken accessToken, String range) throws IOException {
+    if (route.protocol() != RouteTable.Protocol.HTTP) {
+      throw new ServiceOperationException(500, "execDownload no support yet for protocol - " + route.router().getProtocol());
     }
 
-    var builder = createBuilder(router, queries, headers, requestId);
+    var builder = createBuilder(route, queries, headers, requestId);
     Request request;
-    if ("GET".equalsIgnoreCase(router.getMethod())) {
+    if (route.method() == RouteTable.Method.GET) {
       // response 再 transfer 后才被关闭。
       request = builder.build();
-    } else if("POST".equals(router.getMethod())){
+    } else if (route.method() == RouteTable.Method.POST) {
       var body = RequestBody.create(
           JSON, entity == null ? "" : utils.objectToJson(entity));
       // response 再 transfer 后才被关闭。
       request = builder.post(body).build();
     } else {
-      throw new ServiceOperationException(500, "execDownload invalid http method - " + router.getMethod());
+      throw new ServiceOperationException(500, "execDownload invalid http method - " + route.router().getMethod());
     }
-    var response = httpClient.newCall(request).execute();
-    {
-      final StreamingOutput newFile = outputStream -> {
-        try (response) {
-          if (response.body() != null) {
-            transfer(accessToken, Okio.buffer(Okio.sink(outputStream)), response.body().source());
-          }
-        }
-      };
-      long newSize = 0;
-      var contentLength = response.header("Content-Length");
-
-      if(Objects.nonNull(contentLength)){
-        // convert to encrypted file size
-        var fileSize = Long.parseLong(contentLength);
-        newSize = fileSize + (16 - (fileSize % 16));
-      }
+    var response = httpClients.forUrl(request.url()).newCall(request).execute();
 
-      Map<String, String> newHeaders = new HashMap<>();
-      response.headers().names().forEach(name -> {
-        if (!name.equalsIgnoreCase("Content-Length")) {
-          newHeaders.put(name, response.headers().get(name));
+    Map<String, String> newHeaders = new HashMap<>();
+    response.headers().names().forEach(name -> {
+      if (!name.equalsIgnoreCase("Content-Length")) {
+        newHeaders.put(name, response.headers().get(name));
+      }
+    });
+
+    var code = response.code();
+    long newSize = 0;
+    long start = 0;
+    long end = Long.MAX_VALUE;
+    var contentLength = response.header("Content-Length");
+    if(Objects.nonNull(contentLength)){
+      // convert to encrypted file size
+      newSize = EncryptedDownloadOutput.encryptedSize(Long.parseLong(contentLength));
+      if (code == 200) {
+        newHeaders.put("Accept-Ranges", "bytes");
+        var bytes = EncryptedDownloadOutput.parseRange(range, newSize);
+        if (bytes != null && bytes[0] >= newSize) {
+          response.close();
+          newHeaders.put("Content-Range", "bytes */" + newSize);
+          return FileResult.of(416, null, newSize, newHeaders);
+        } else if (bytes != null) {
+          code = 206;
+          start = bytes[0];
+          end = bytes[1];
+          newHeaders.put("Content-Range", "bytes " + start + "-" + end + "/" + newSize);
         }
-      });
-      return FileResult.of(response.code(), newFile, newSize, newHeaders);
+        newHeaders.put("Content-Length", String.valueOf(Math.min(end, newSize - 1) - start + 1));
+      }
     }
-  }
 
-  @SneakyThrows
-  private void transfer(AccessToken accessToken, BufferedSink sink, BufferedSource source) {
     var cipher = tokenUtils.createAndInitCipherWithAccessToken(accessToken, Cipher.ENCRYPT_MODE);
-    try (sink) {
-      byte[] buffer = new byte[DEFAULT_BUF_SIZE];
-      int bytesRead;
-      while ((bytesRead = source.read(buffer)) != -1) {
-        byte[] output = cipher.update(buffer, 0, bytesRead);
-        if (output != null) {
-          sink.write(output);
-        }
-      }
-      var outputBytes = cipher.doFinal();
-      if (outputBytes != null) {
-        sink.write(outputBytes);
-      }
-    } catch (Exception e) {
-      LOG.error("download transfer error", e);
-    }
+    final StreamingOutput newFile = new EncryptedDownloadOutput(response.body().byteStream(), response, cipher,
+        properties.gatewayDownloadChunkSize(), start, end);
+    return FileResult.of(code, newFile, newSize, newHeaders);
   }
 
-  // 2K chars (4K bytes)
-  private static final int DEFAULT_BUF_SIZE = 0x800;
-
-  private String execUpload(Routers.Router router, Map<String, String> queries, Map<String, String> headers,
+  private String execUpload(RouteTable.Route route, Map<String, String> queries, Map<String, String> headers,
                             Object entity, final InputStream file, String requestId, AccessToken accessToken)
       throws IOException
   {
-    if (!"HTTP".equalsIgnoreCase(router.getProtocol())) {
+    var router = route.router();
+    if (route.protocol() != RouteTable.Protocol.HTTP) {
       throw new ServiceOperationException(500, "execUpload no support yet for protocol - " + router.getProtocol());
     }
 
-    if (!"PUT".equalsIgnoreCase(router.getMethod()) && !"POST".equalsIgnoreCase(router.getMethod())) {
+    if (route.method() != RouteTable.Method.PUT && route.method() != RouteTable.Method.POST) {
       throw new ServiceOperationException(500, "execUpload invalid http method - " + router.getMethod());
     }
 
-    var builder = createBuilder(router, queries, headers, requestId);
-    RequestBody body = new RequestBody() {
-      @Override public MediaType contentType() {
-        return OCTET;
-      }
-      @SneakyThrows @Override public void writeTo(@SuppressWarnings("NullableProblems") BufferedSink sink) {
-        var cipher = tokenUtils.createAndInitCipherWithAccessToken(accessToken, Cipher.DECRYPT_MODE);
-        try (file) {
-          var buffer = new byte[DEFAULT_BUF_SIZE];
-          int bytesRead;
-          while ((bytesRead = file.read(buffer)) != -1) {
-            byte[] output = cipher.update(buffer, 0, bytesRead);
-            if (output != null) {
-              sink.write(output);
-            }
-          }
-          byte[] outputBytes = cipher.doFinal();
-          if (outputBytes != null) {
-            sink.write(outputBytes);
-          }
-        }
-      }
-    };
+    var builder = createBuilder(route, queries, headers, requestId);
+    RequestBody body = new DecryptedUploadBody(file,
+        tokenUtils.createAndInitCipherWithAccessToken(accessToken, Cipher.DECRYPT_MODE),
+        properties.gatewayUploadChunkSize(), OCTET);
 
     // By default, we use "multipart" as ext protocol
     if (router.getExtProtocol() == null || "multipart".equals(router.getExtProtocol())) {
-      final UploadEntity ue = utils.jsonToObject(utils.objectToJson(entity), UploadEntity.class);
+      final UploadEntity ue = utils.convertValue(entity, UploadEntity.class);
       // Convert "onepart" body to multipart.
       body = new MultipartBody.Builder()
           .setType(MULTIPART_FORM)
@@ -298,33 +291,41 @@ public class GatewayService {
     }
 
     Request request;
-    if ("PUT".equalsIgnoreCase(router.getMethod())) {
+    if (route.method() == RouteTable.Method.PUT) {
       request = builder.put(body).build();
     } else {
       request = builder.post(body).build();
     }
-    try (var response = httpClient.newCall(request).execute()) {
+    try (var response = httpClients.forUrl(request.url()).newCall(request).execute()) {
       return response.body() == null ? null : response.body().string();
     }
   }
 
-  private Request.Builder createBuilder(Routers.Router router, Map<String, String> queries, Map<String, String> headers,
-                                        String requestId) {
-    String url = router.getUrl();
-    if(headers != null && headers.containsKey("Box-Reg-Key")){
-      url = properties.ssplatformUrl() + router.getUrl();
+  private HttpUrl createUrl(RouteTable.Route route, Map<String, String> queries, Map<String, String> headers) {
+    var url = headers != null && headers.containsKey("Box-Reg-Key") ? route.platformUrl() : route.url();
+    if (url == null) {
+      throw new ServiceOperationException(500, "invalid url - " + route.router().getUrl());
+    }
+    if (queries == null || queries.isEmpty()) {
+      return url;
     }
-    var urlBuilder = Objects.requireNonNull(HttpUrl.parse(url)).newBuilder();
 
-    if (queries != null && !queries.isEmpty()) {
-      for (Map.Entry<String, String> pair : queries.entrySet()) {
-        urlBuilder.addQueryParameter(pair.getKey(), pair.getValue());
-      }
+    var urlBuilder = url.newBuilder();
+    for (Map.Entry<String, String> pair : queries.entrySet()) {
+      urlBuilder.addQueryParameter(pair.getKey(), pair.getValue());
     }
+    return urlBuilder.build();
+  }
 
+  private Request.Builder createBuilder(RouteTable.Route route, Map<String, String> queries, Map<String, String> headers,
+                                        String requestId) {
+    return createBuilder(createUrl(route, queries, headers), headers, requestId);
+  }
+
+  private Request.Builder createBuilder(HttpUrl url, Map<String, String> headers, String requestId) {
     var builder =
         new Request.Builder()
-            .url(urlBuilder.build())
+            .url(url)
             .addHeader(REQUEST_ID, requestId);
 
     if (headers != null && !headers.isEmpty()) {
@@ -335,77 +336,50 @@ public class GatewayService {
     return builder;
   }
 
-  private String execCall(Routers.Router router, Map<String, String> queries, Map<String, String> headers,
-                          Object entity, String requestId)
-      throws IOException
-  {
-    if (!"HTTP".equalsIgnoreCase(router.getProtocol())) {
-      throw new ServiceOperationException(500, "execCall no support yet for protocol - " + router.getProtocol());
-    }
-
-    var builder = createBuilder(router, queries, headers, requestId);
-
-    var request = builder.build(); // build as GET by default
-
-    if ("HEAD".equalsIgnoreCase(router.getMethod())) {
-      request = builder.head().build();
-    }
-
-    else if ("TAG".equalsIgnoreCase(router.getMethod())) {
-      request = builder.tag(entity).build();
-    }
-
-    else if ("POST".equalsIgnoreCase(router.getMethod())) {
-      var body = RequestBody.create(
-          JSON, entity == null ? "" : utils.objectToJson(entity));
-      request = builder.post(body).build();
-    }
-
-    else if ("DELETE".equalsIgnoreCase(router.getMethod())) {
-      var body = RequestBody.create(
-          JSON, entity == null ? "" : utils.objectToJson(entity));
-      request = builder.delete(body).build();
+  private String execCall(PreparedCall call, String requestId) throws IOException {
+    var request = createRequest(call, requestId);
+    try (var response = httpClients.forUrl(request.url()).newCall(request).execute()) {
+      return response.body() == null ? null : response.body().string();
     }
+  }
 
-    else if ("PUT".equalsIgnoreCase(router.getMethod())) {
-      var body = RequestBody.create(
-          JSON, entity == null ? "" : utils.objectToJson(entity));
-      request = builder.put(body).build();
+  private Request createRequest(PreparedCall call, String requestId) {
+    var route = call.route();
+    var entity = call.entity();
+    if (route.protocol() != RouteTable.Protocol.HTTP) {
+      throw new ServiceOperationException(500, "execCall no support yet for protocol - " + route.router().getProtocol());
     }
 
-    else if ("PATCH".equalsIgnoreCase(router.getMethod())) {
-      var body = RequestBody.create(
-          JSON, entity == null ? "" : utils.objectToJson(entity));
-      request = builder.patch(body).build();
-    }
-
-    try (var response = httpClient.newCall(request).execute()) {
-      return response.body() == null ? null : response.body().string();
-    }
+    var builder = createBuilder(call.url(), call.headers(), requestId);
+    var body = route.method().hasBody() ? RequestBody.create(
+        JSON, entity == null ? "" : utils.objectToJson(entity)) : null;
+
+    return switch (route.method()) {
+      case HEAD -> builder.head().build();
+      case TAG -> builder.tag(entity).build();
+      case POST -> builder.post(body).build();
+      case DELETE -> builder.delete(body).build();
+      case PUT -> builder.put(body).build();
+      case PATCH -> builder.patch(body).build();
+      default -> builder.build(); // build as GET by default
+    };
   }
 
   @Logged
-  public boolean verifyClient(String clientUUID, UserEntity userEntity){
-    if (Objects.equals(userEntity.getClientUUID(), clientUUID)) {
-      if(Objects.isNull(userEntity.getAuthKey())){
+  public boolean verifyClient(String clientUUID, UserAccessCache.UserAccess userAccess){
+    if (Objects.equals(userAccess.clientUUID(), clientUUID)) {
+      if(!userAccess.hasAuthKey()){
         throw new ServiceOperationException(ServiceError.ACCESS_TOKEN_INVALID);
       }
       return true;
     }
 
-    List<AuthorizedTerminalEntity> authorizedTerminalEntityList =
-          authorizedTerminalRepository.findByUserid(userEntity.getId());
-
-    if(!authorizedTerminalEntityList.isEmpty()){
-      for (var entity: authorizedTerminalEntityList
-      ) {
-        if(Objects.equals(entity.getUuid(), clientUUID)){
-          if(entity.getExpireAt().isBefore(OffsetDateTime.now())){
-            throw new ServiceOperationException(ServiceError.ACCESS_TOKEN_INVALID);
-          }
-          return true;
-        }
+    if (userAccess.terminals().containsKey(clientUUID)) {
+      var expireAt = userAccess.terminals().get(clientUUID);
+      if(expireAt == null || expireAt.isBefore(OffsetDateTime.now())){
+        throw new ServiceOperationException(ServiceError.ACCESS_TOKEN_INVALID);
       }
+      return true;
     }
 
     return false;
@@ -417,9 +391,10 @@ public class GatewayService {
     return !openApiScopes.contains(openApi.getScope());
   }
 
-  private UserEntity checkIllegalApiAccess(AccessToken accessToken, Routers.Router router) {
-    var userEntity = memberManageService.findByUserId(accessToken.getUserId());
-    if (!verifyClient(accessToken.getClientUUID(), userEntity)) {
+  private UserAccessCache.UserAccess checkIllegalApiAccess(AccessToken accessToken, RouteTable.Route route) {
+    var router = route.router();
+    var userAccess = userAccessCache.get(Long.valueOf(accessToken.getUserId()));
+    if (userAccess == null || !verifyClient(accessToken.getClientUUID(), userAccess)) {
       throw new ServiceOperationException(500, "User id and clientUUID don't match");
     }
     if (accessToken.isOpenApi()) {
@@ -427,6 +402,7 @@ public class GatewayService {
         throw new ServiceOperationException(403, "Access to data without permission is forbidden");
       }
     }
-    return userEntity;
+    rateLimiter.check(route, accessToken);
+    return userAccess;
   }
 }
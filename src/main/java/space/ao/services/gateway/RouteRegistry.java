@@ -0,0 +1,159 @@
+/*
+ * Copyright (c) 2023 Institute of Software Chinese Academy of Sciences (ISCAS)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package space.ao.services.gateway;
+
+import io.quarkus.runtime.Startup;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import jakarta.enterprise.context.ApplicationScoped;
+import jakarta.inject.Inject;
+import org.jboss.logging.Logger;
+import space.ao.services.config.ApplicationProperties;
+import space.ao.services.support.ResourceUtils;
+import space.ao.services.support.service.ServiceOperationException;
+
+import java.io.IOException;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.FileSystems;
+import java.nio.file.Path;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchService;
+
+/**
+ * Holds the current {@link RouteTable} and replaces it when routes.json changes.
+ *
+ * <p>A reload parses and validates the whole file first, then swaps the table with a single volatile write.
+ * A request looks the route up once and keeps using that {@link RouteTable.Route}, so in-flight requests finish
+ * on the table they started with. An invalid file is logged and the current table is kept.
+ */
+@Startup
+@ApplicationScoped
+public class RouteRegistry {
+  static final Logger LOG = Logger.getLogger("app.log");
+
+  // events of an editor saving the file come in bursts, wait for them to settle before reloading
+  private static final long SETTLE_MILLIS = 500;
+
+  @Inject
+  GatewayBeansFactory beansFactory;
+  @Inject
+  ApplicationProperties properties;
+
+  private volatile RouteTable current;
+  private WatchService watchService;
+
+  @PostConstruct
+  void init() {
+    current = compile(beansFactory.loadRouters());
+    if (properties.gatewayRoutersWatch()) {
+      watch();
+    }
+  }
+
+  @PreDestroy
+  void destroy() throws IOException {
+    if (watchService != null) {
+      watchService.close();
+    }
+  }
+
+  public RouteTable current() {
+    return current;
+  }
+
+  /**
+   * Reloads routes.json and swaps it in when it is valid.
+   *
+   * @return the routes changed by the reload.
+   * @throws ServiceOperationException 400 when the file can not be parsed or validated.
+   */
+  public synchronized RouteTable.Diff reload(String requestId) {
+    RouteTable table;
+    try {
+      table = compile(beansFactory.loadRouters());
+    } catch (Exception e) {
+      LOG.errorv("requestId:{0}, reload gateway routers failed, keep the current ones: {1}", requestId, e.getMessage());
+      throw new ServiceOperationException(e, 400, "invalid gateway routers - " + e.getMessage());
+    }
+    var diff = current.diff(table);
+    current = table;
+    LOG.infov("requestId:{0}, gateway routers reloaded, added:{1}, removed:{2}, changed:{3}",
+        requestId, diff.added(), diff.removed(), diff.changed());
+    return diff;
+  }
+
+  private RouteTable compile(Routers routers) {
+    var table = new RouteTable(routers, properties.ssplatformUrl());
+    table.validate();
+    return table;
+  }
+
+  private void watch() {
+    Path file;
+    try {
+      file = ResourceUtils.getFile(properties.gatewayRoutersLocation()).toPath().toAbsolutePath();
+    } catch (IOException e) {
+      LOG.infov("gateway routers {0} is not a file, skip watching", properties.gatewayRoutersLocation());
+      return;
+    }
+    if (!file.toFile().isFile()) {
+      LOG.infov("gateway routers {0} is not a file, skip watching", file);
+      return;
+    }
+    try {
+      watchService = FileSystems.getDefault().newWatchService();
+      file.getParent().register(watchService, StandardWatchEventKinds.ENTRY_CREATE,
+          StandardWatchEventKinds.ENTRY_MODIFY);
+    } catch (IOException e) {
+      LOG.error("watch gateway routers failed", e);
+      return;
+    }
+    var thread = new Thread(() -> watchLoop(file), "routes-watcher");
+    thread.setDaemon(true);
+    thread.start();
+    LOG.infov("watching gateway routers {0}", file);
+  }
+
+  private void watchLoop(Path file) {
+    try {
+      while (true) {
+        var key = watchService.take();
+        var changed = key.pollEvents().stream()
+            .anyMatch(event -> file.getFileName().equals(event.context()));
+        key.reset();
+        if (!changed) {
+          continue;
+        }
+        Thread.sleep(SETTLE_MILLIS);
+        var burst = watchService.poll();
+        if (burst != null) {
+          burst.pollEvents();
+          burst.reset();
+        }
+        try {
+          reload("routes-watcher");
+        } catch (ServiceOperationException e) {
+          // already logged, wait for the next change
+        }
+      }
+    } catch (ClosedWatchServiceException e) {
+      LOG.info("stop watching gateway routers");
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    }
+  }
+}
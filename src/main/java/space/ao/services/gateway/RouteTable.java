@@ -0,0 +1,164 @@
+/*
+ * Copyright (c) 2023 Institute of Software Chinese Academy of Sciences (ISCAS)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package space.ao.services.gateway;
+
+import okhttp3.HttpUrl;
+import space.ao.services.support.service.ServiceOperationException;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Immutable route table compiled from {@link Routers} at startup. Urls, methods and protocols are parsed once,
+ * so that dispatching a request is a lookup without any parsing.
+ */
+public final class RouteTable {
+
+  public enum Method {
+    GET, HEAD, POST, PUT, DELETE, PATCH, TAG;
+
+    /**
+     * The upstream request of these methods carries the JSON entity of the call.
+     */
+    public boolean hasBody() {
+      return this == POST || this == PUT || this == DELETE || this == PATCH;
+    }
+
+    static Method of(String method) {
+      if (method == null) {
+        return GET;
+      }
+      try {
+        return Method.valueOf(method.toUpperCase(Locale.ROOT));
+      } catch (IllegalArgumentException e) {
+        return GET; // unknown methods have always been sent as GET
+      }
+    }
+  }
+
+  public enum Protocol {
+    HTTP, UNSUPPORTED;
+
+    static Protocol of(String protocol) {
+      return "HTTP".equalsIgnoreCase(protocol) ? HTTP : UNSUPPORTED;
+    }
+  }
+
+  /**
+   * A compiled route.
+   *
+   * @param url the parsed upstream url, {@code null} when the route url is relative (platform routes).
+   * @param platformUrl the url prefixed by {@code app.ssplatform.url}, used when the call carries a Box-Reg-Key.
+   */
+  public record Route(String serviceName, String apiName, Routers.Router router, Method method,
+                      Protocol protocol, HttpUrl url, HttpUrl platformUrl) {
+  }
+
+  /**
+   * Routes (as {@code service/api}) that differ between two tables.
+   */
+  public record Diff(List<String> added, List<String> removed, List<String> changed) {
+    public boolean isEmpty() {
+      return added.isEmpty() && removed.isEmpty() && changed.isEmpty();
+    }
+  }
+
+  private final Map<String, Map<String, Route>> routes;
+
+  public RouteTable(Routers routers, String ssplatformUrl) {
+    var services = new HashMap<String, Map<String, Route>>();
+    var definitions = routers.getServices() == null ? Map.<String, Map<String, Routers.Router>>of() : routers.getServices();
+    definitions.forEach((serviceName, apis) -> {
+      var compiled = new HashMap<String, Route>();
+      apis.forEach((apiName, router) -> compiled.put(apiName, new Route(serviceName, apiName, router,
+          Method.of(router.getMethod()), Protocol.of(router.getProtocol()), HttpUrl.parse(router.getUrl()),
+          HttpUrl.parse(ssplatformUrl + router.getUrl()))));
+      services.put(serviceName, Map.copyOf(compiled));
+    });
+    this.routes = Map.copyOf(services);
+  }
+
+  /**
+   * @throws ServiceOperationException 404 when the api is not routed.
+   */
+  public Route get(String serviceName, String apiName) {
+    var apis = serviceName == null ? null : routes.get(serviceName);
+    var route = apis == null || apiName == null ? null : apis.get(apiName);
+    if (route == null) {
+      throw new ServiceOperationException(404, "no route for " + serviceName + "/" + apiName);
+    }
+    return route;
+  }
+
+  public Collection<Map<String, Route>> services() {
+    return routes.values();
+  }
+
+  /**
+   * Checks that every route can be dispatched: a relative url (platform routes) must start with {@code /} and
+   * resolve against {@code app.ssplatform.url}, any other url must be an absolute http(s) url.
+   *
+   * @throws IllegalArgumentException describing the first invalid route.
+   */
+  public void validate() {
+    if (routes.isEmpty()) {
+      throw new IllegalArgumentException("no services defined");
+    }
+    routes.values().forEach(apis -> apis.values().forEach(route -> {
+      if (route.protocol() != Protocol.HTTP) {
+        return;
+      }
+      var url = route.router().getUrl();
+      var relative = url != null && url.startsWith("/");
+      if (relative ? route.platformUrl() == null : route.url() == null) {
+        throw new IllegalArgumentException("invalid url of " + route.serviceName() + "/" + route.apiName()
+            + " - " + route.router().getUrl());
+      }
+    }));
+  }
+
+  public Diff diff(RouteTable newer) {
+    var added = new ArrayList<String>();
+    var removed = new ArrayList<String>();
+    var changed = new ArrayList<String>();
+    var services = new HashSet<>(routes.keySet());
+    services.addAll(newer.routes.keySet());
+    for (var service : services) {
+      var oldApis = routes.getOrDefault(service, Map.of());
+      var newApis = newer.routes.getOrDefault(service, Map.of());
+      var apis = new HashSet<>(oldApis.keySet());
+      apis.addAll(newApis.keySet());
+      for (var api : apis) {
+        var oldRoute = oldApis.get(api);
+        var newRoute = newApis.get(api);
+        if (oldRoute == null) {
+          added.add(service + "/" + api);
+        } else if (newRoute == null) {
+          removed.add(service + "/" + api);
+        } else if (!oldRoute.router().equals(newRoute.router())) {
+          changed.add(service + "/" + api);
+        }
+      }
+    }
+    return new Diff(added, removed, changed);
+  }
+}
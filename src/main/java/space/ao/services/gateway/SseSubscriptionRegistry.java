@@ -0,0 +1,356 @@
+/*
+ * Copyright (c) 2023 Institute of Software Chinese Academy of Sciences (ISCAS)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package space.ao.services.gateway;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.smallrye.mutiny.Multi;
+import jakarta.annotation.PostConstruct;
+import jakarta.enterprise.context.ApplicationScoped;
+import jakarta.inject.Inject;
+import org.jboss.logging.Logger;
+import space.ao.services.config.ApplicationProperties;
+import space.ao.services.support.OperationUtils;
+import space.ao.services.support.model.AccessToken;
+
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Flow;
+
+/**
+ * Fans gateway messages out to the SSE connections. Connections are indexed by topic, userId and clientUUID,
+ * so a message is only handed to the connections it is addressed to and is serialized once whatever the
+ * number of receivers.
+ *
+ * <p>Every connection has a bounded queue of {@code app.gateway.sse.queue-size} messages. What happens when a
+ * slow client lets it fill up is set by {@code app.gateway.sse.overflow}, see {@link Overflow}. A connection
+ * that is behind (spilled, or reconnected with {@code Last-Event-ID}) reads from {@link GatewayMessageStore}
+ * until it has caught up with the live messages.
+ */
+@ApplicationScoped
+public class SseSubscriptionRegistry {
+  static final Logger LOG = Logger.getLogger("app.log");
+
+  public enum Overflow {
+    /**
+     * Drops the oldest queued message.
+     */
+    DROP_OLDEST,
+    /**
+     * Keeps only the latest queued message per topic and receiver (broadcast, user or client), the
+     * older ones are superseded. Drops the oldest message if the queue is still full.
+     */
+    LATEST_PER_KEY,
+    /**
+     * Stops queueing and reads the missed messages back from the Redis stream when the client is ready.
+     * Same as {@link #DROP_OLDEST} when {@code app.gateway.messages.replay.enabled} is false.
+     */
+    SPILL;
+
+    static Overflow of(String value) {
+      return valueOf(value.trim().toUpperCase(Locale.ROOT).replace('-', '_'));
+    }
+  }
+
+  /**
+   * A message and its JSON text, shared by all the connections it is delivered to.
+   *
+   * @param id the SSE event id, the stream id when the message is stored or else the message uuid.
+   */
+  public record Delivery(String id, GatewayMessage message, String json) {
+  }
+
+  record Key(String topic, GatewayMessage.Type type, String id) {
+    static Key of(GatewayMessage message) {
+      if (message.getType() == GatewayMessage.Type.USER) {
+        return new Key(message.getTopic(), GatewayMessage.Type.USER, message.getUserId());
+      }
+      if (message.getType() == GatewayMessage.Type.CLIENT) {
+        return new Key(message.getTopic(), GatewayMessage.Type.CLIENT, lowerCase(message.getClientUuid()));
+      }
+      return new Key(message.getTopic(), GatewayMessage.Type.BROADCAST, null);
+    }
+  }
+
+  @Inject
+  ApplicationProperties properties;
+  @Inject
+  OperationUtils utils;
+  @Inject
+  MeterRegistry registry;
+  @Inject
+  GatewayMessageStore store;
+
+  private final Map<Key, Set<Sink>> index = new ConcurrentHashMap<>();
+  private final Set<Sink> sinks = ConcurrentHashMap.newKeySet();
+  private Overflow overflow;
+  private Counter dropped;
+  private Counter coalesced;
+  private Counter spilled;
+
+  @PostConstruct
+  void init() {
+    overflow = Overflow.of(properties.gatewaySseOverflow());
+    if (overflow == Overflow.SPILL && !store.enabled()) {
+      LOG.warn("app.gateway.sse.overflow is spill but replay is disabled, falling back to drop-oldest");
+      overflow = Overflow.DROP_OLDEST;
+    }
+    Gauge.builder("gateway.sse.subscribers", sinks, Set::size)
+        .description("connected SSE clients")
+        .register(registry);
+    Gauge.builder("gateway.sse.queue.depth", this, SseSubscriptionRegistry::queueDepth)
+        .description("messages waiting to be sent to SSE clients")
+        .register(registry);
+    dropped = Counter.builder("gateway.sse.dropped")
+        .description("messages dropped because an SSE client did not keep up")
+        .register(registry);
+    coalesced = Counter.builder("gateway.sse.coalesced")
+        .description("queued messages superseded by a newer one for the same receiver")
+        .register(registry);
+    spilled = Counter.builder("gateway.sse.spilled")
+        .description("times an SSE client fell behind and switched to reading the message stream")
+        .register(registry);
+  }
+
+  /**
+   * @param lastEventId the {@code Last-Event-ID} of a reconnecting client, messages stored after it are
+   *                    replayed first. May be null.
+   * @return the messages of the topic addressed to the caller: broadcast ones, ones for its user and ones
+   * for its client.
+   */
+  public Multi<Delivery> subscribe(String topic, AccessToken accessToken, String lastEventId) {
+    var cursor = store.enabled() && GatewayMessageStore.isStreamId(lastEventId) ? lastEventId : null;
+    return Multi.createFrom().publisher(subscriber -> new Sink(Set.of(
+        new Key(topic, GatewayMessage.Type.BROADCAST, null),
+        new Key(topic, GatewayMessage.Type.USER, accessToken.getUserId()),
+        new Key(topic, GatewayMessage.Type.CLIENT, lowerCase(accessToken.getClientUUID()))
+    ), properties.gatewaySseQueueSize(), cursor, subscriber).start());
+  }
+
+  /**
+   * @return whether a connected client would receive the message.
+   */
+  public boolean hasReceivers(GatewayMessage message) {
+    var receivers = index.get(Key.of(message));
+    return receivers != null && !receivers.isEmpty();
+  }
+
+  void dispatch(Delivery delivery) {
+    if (delivery.message().getTopic() == null) {
+      return;
+    }
+    var receivers = index.get(Key.of(delivery.message()));
+    if (receivers != null) {
+      receivers.forEach(sink -> sink.offer(delivery));
+    }
+  }
+
+  private double queueDepth() {
+    return sinks.stream().mapToInt(Sink::size).sum();
+  }
+
+  private static String lowerCase(String value) {
+    return value == null ? null : value.toLowerCase(Locale.ROOT);
+  }
+
+  /**
+   * The queue of one connection, drained as the connection requests more events.
+   *
+   * <p>While {@code behind}, the queue is filled from the message stream after {@code cursor}, one batch
+   * when it runs empty, and live messages wait in {@code live}. Once a read returns less than a batch and no
+   * live message was lost meanwhile, the live messages newer than the cursor are moved to the queue.
+   */
+  private final class Sink implements Flow.Subscription {
+    private final Set<Key> keys;
+    private final int capacity;
+    private final Flow.Subscriber<? super Delivery> downstream;
+    private final Deque<Delivery> queue = new ArrayDeque<>();
+    private final Deque<Delivery> live = new ArrayDeque<>();
+    private long requested;
+    private boolean draining;
+    private boolean cancelled;
+    private boolean behind;
+    private boolean reading;
+    private boolean missed;
+    private String cursor;
+
+    Sink(Set<Key> keys, int capacity, String cursor, Flow.Subscriber<? super Delivery> downstream) {
+      this.keys = keys;
+      this.capacity = capacity;
+      this.cursor = cursor;
+      this.behind = cursor != null;
+      this.downstream = downstream;
+    }
+
+    Sink start() {
+      downstream.onSubscribe(this);
+      sinks.add(this);
+      keys.forEach(key -> index.compute(key, (k, set) -> {
+        var result = set == null ? ConcurrentHashMap.<Sink>newKeySet() : set;
+        result.add(this);
+        return result;
+      }));
+      return this;
+    }
+
+    void offer(Delivery delivery) {
+      synchronized (this) {
+        if (cancelled) {
+          return;
+        }
+        if (behind) {
+          if (live.size() >= capacity) {
+            live.clear();
+            missed = true;
+          }
+          live.offer(delivery);
+          return;
+        }
+        if (overflow == Overflow.LATEST_PER_KEY) {
+          var key = Key.of(delivery.message());
+          if (queue.removeIf(queued -> key.equals(Key.of(queued.message())))) {
+            coalesced.increment();
+          }
+        }
+        if (queue.size() >= capacity) {
+          if (overflow == Overflow.SPILL && GatewayMessageStore.isStreamId(queue.peekLast().id())) {
+            behind = true;
+            cursor = queue.peekLast().id();
+            live.offer(delivery);
+            spilled.increment();
+            return;
+          }
+          queue.poll();
+          dropped.increment();
+        }
+        queue.offer(delivery);
+      }
+      drain();
+    }
+
+    synchronized int size() {
+      return queue.size() + live.size();
+    }
+
+    @Override
+    public void request(long n) {
+      if (n <= 0) {
+        cancel();
+        downstream.onError(new IllegalArgumentException("Invalid request number " + n));
+        return;
+      }
+      synchronized (this) {
+        requested = requested + n < 0 ? Long.MAX_VALUE : requested + n;
+      }
+      drain();
+    }
+
+    @Override
+    public void cancel() {
+      synchronized (this) {
+        cancelled = true;
+        queue.clear();
+        live.clear();
+      }
+      keys.forEach(key -> index.computeIfPresent(key, (k, set) -> {
+        set.remove(this);
+        return set.isEmpty() ? null : set;
+      }));
+      sinks.remove(this);
+    }
+
+    private void drain() {
+      synchronized (this) {
+        if (draining) {
+          return;
+        }
+        draining = true;
+      }
+      while (true) {
+        Delivery next;
+        synchronized (this) {
+          if (cancelled || requested == 0) {
+            draining = false;
+            return;
+          }
+          next = queue.poll();
+          if (next == null) {
+            draining = false;
+            if (behind && !reading) {
+              reading = true;
+              missed = false;
+              read(cursor);
+            }
+            return;
+          }
+          if (requested != Long.MAX_VALUE) {
+            requested--;
+          }
+        }
+        downstream.onNext(next);
+      }
+    }
+
+    private void read(String after) {
+      store.readAfter(after, capacity).subscribe().with(entries -> {
+        synchronized (this) {
+          reading = false;
+          for (var entry : entries) {
+            cursor = entry.id();
+            GatewayMessage message;
+            try {
+              message = utils.jsonToObject(entry.json(), GatewayMessage.class);
+            } catch (Exception e) {
+              LOG.warnv(e, "skip invalid gateway message {0}", entry.id());
+              continue;
+            }
+            if (message != null && keys.contains(Key.of(message))) {
+              queue.offer(new Delivery(entry.id(), message, entry.json()));
+            }
+          }
+          if (entries.size() < capacity && !missed) {
+            catchUp();
+          }
+        }
+        drain();
+      }, t -> {
+        LOG.errorv(t, "read gateway messages after {0} failed, continuing with live messages", after);
+        synchronized (this) {
+          reading = false;
+          catchUp();
+        }
+        drain();
+      });
+    }
+
+    private void catchUp() {
+      behind = false;
+      for (var delivery : live) {
+        if (!GatewayMessageStore.isStreamId(delivery.id()) || cursor == null
+            || GatewayMessageStore.compare(delivery.id(), cursor) > 0) {
+          queue.offer(delivery);
+        }
+      }
+      live.clear();
+    }
+  }
+}
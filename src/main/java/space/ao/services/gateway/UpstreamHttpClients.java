@@ -0,0 +1,118 @@
+/*
+ * Copyright (c) 2023 Institute of Software Chinese Academy of Sciences (ISCAS)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package space.ao.services.gateway;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.quarkus.runtime.StartupEvent;
+import jakarta.annotation.PostConstruct;
+import jakarta.enterprise.context.ApplicationScoped;
+import jakarta.enterprise.event.Observes;
+import jakarta.inject.Inject;
+import okhttp3.*;
+import org.jboss.logging.Logger;
+import space.ao.services.config.ApplicationProperties;
+import space.ao.services.support.HttpClientMetrics;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Selects the {@link OkHttpClient} used for an upstream host. Hosts listed in {@code app.gateway.http-client.hosts}
+ * get their own connection pool (and h2c protocol when configured); all other hosts share the default client.
+ * Clients derived here share the timeouts, event listener and {@code UpstreamBulkhead} of the default client.
+ */
+@ApplicationScoped
+public class UpstreamHttpClients {
+  static final Logger LOG = Logger.getLogger("app.log");
+
+  @Inject
+  OkHttpClient httpClient;
+  @Inject
+  ApplicationProperties properties;
+  @Inject
+  MeterRegistry registry;
+  @Inject
+  RouteRegistry routeRegistry;
+
+  private final Map<String, OkHttpClient> clients = new HashMap<>();
+
+  @PostConstruct
+  void init() {
+    properties.gatewayHttpClientHosts().forEach((host, config) -> {
+      var builder = httpClient.newBuilder()
+          .connectionPool(new ConnectionPool(
+              config.maxIdleConnections().orElse(properties.gatewayHttpClientMaxIdleConnections()),
+              Duration.parse("PT" + properties.gatewayHttpClientKeepAlive()).toMillis(), TimeUnit.MILLISECONDS));
+      if (config.h2c()) {
+        builder.protocols(List.of(Protocol.H2_PRIOR_KNOWLEDGE));
+      }
+      var client = builder.build();
+      HttpClientMetrics.bind(registry, client, host);
+      clients.put(host, client);
+    });
+  }
+
+  /**
+   * @return the client for the host of {@code url}.
+   */
+  public OkHttpClient forUrl(HttpUrl url) {
+    return clients.getOrDefault(url.host(), httpClient);
+  }
+
+  /**
+   * Opens the configured number of connections to each host so they are idle in the pool before the first
+   * requests. It is asynchronous, an unreachable upstream only logs a warning.
+   */
+  void onStart(@Observes StartupEvent ev) {
+    properties.gatewayHttpClientHosts().forEach((host, config) -> {
+      if (config.warmUpConnections() <= 0) {
+        return;
+      }
+      var url = routeRegistry.current().services().stream()
+          .flatMap(apis -> apis.values().stream())
+          .map(RouteTable.Route::url)
+          .filter(u -> u != null && u.host().equals(host))
+          .findFirst();
+      if (url.isEmpty()) {
+        LOG.warnv("no route found for upstream host {0}, skip warm-up", host);
+        return;
+      }
+      var request = new Request.Builder()
+          .url(url.get().newBuilder().encodedPath("/").query(null).build())
+          .head()
+          .build();
+      for (int i = 0; i < config.warmUpConnections(); i++) {
+        clients.get(host).newCall(request).enqueue(new Callback() {
+          @Override
+          public void onFailure(Call call, IOException e) {
+            LOG.warnv("warm-up connection to {0} failed: {1}", host, e.getMessage());
+          }
+
+          @Override
+          public void onResponse(Call call, Response response) {
+            response.close();
+          }
+        });
+      }
+      LOG.infov("warming up {0} connections to {1}", config.warmUpConnections(), host);
+    });
+  }
+}
@@ -16,9 +16,10 @@
 
 package space.ao.services.push.rest;
 
+import io.smallrye.common.annotation.Blocking;
+import io.smallrye.mutiny.Uni;
 import io.vertx.core.http.HttpServerRequest;
 import io.vertx.core.http.HttpServerResponse;
-import java.time.OffsetDateTime;
 import jakarta.inject.Inject;
 import jakarta.validation.Valid;
 import jakarta.ws.rs.GET;
@@ -34,7 +35,7 @@ import org.jboss.logging.Logger;
 import space.ao.services.account.authorizedterminalinfo.service.AuthorizedTerminalService;
 import space.ao.services.config.ApplicationProperties;
 import space.ao.services.push.services.NotificationService;
-import space.ao.services.push.services.RedisService;
+import space.ao.services.push.services.PresenceTracker;
 import space.ao.services.support.RestConfiguration;
 import space.ao.services.support.StringUtils;
 import space.ao.services.support.TokenUtils;
@@ -63,35 +64,39 @@ public class PollNotificationResource {
     HttpServerRequest request;
     @Inject
     AuthorizedTerminalService authorizedTerminalService;
+    @Inject
+    PresenceTracker presenceTracker;
     static final Logger LOG = Logger.getLogger("app.log");
 
     @GET
     @Produces(MediaType.APPLICATION_JSON)
     @Logged
     @Operation(description = "Try to poll the current Notification of server.")
-    public StatusResult poll(@Valid @HeaderParam(RestConfiguration.REQUEST_ID) String requestId,
-                             @QueryParam("accessToken") String accessToken, @QueryParam("count")String count) {
+    @Blocking
+    public Uni<StatusResult> poll(@Valid @HeaderParam(RestConfiguration.REQUEST_ID) String requestId,
+                                  @QueryParam("accessToken") String accessToken, @QueryParam("count")String count) {
         if(StringUtils.isBlank(accessToken)){
-            return StatusResult.of("ok", properties.version(),null, StatusResult.PlatformInfo.of(
+            return Uni.createFrom().item(StatusResult.of("ok", properties.version(),null, StatusResult.PlatformInfo.of(
                     properties.ssplatformUrl()
-            ));
+            )));
         } else {
             var token = tokenUtils.checkAccessToken(requestId, accessToken);
             var clientUUID = token.getClientUUID();
 
-            RedisService.setClientStatus(clientUUID, OffsetDateTime.now());
+            presenceTracker.heartbeat(clientUUID, token.getUserId());
             authorizedTerminalService.updateAuthorizedTerminalValidTime(requestId, token.getUserId(), clientUUID);
             //根据 response 获取 在线状态
             response.closeHandler(statusResponse->{
-                RedisService.setClientStatus(clientUUID, OffsetDateTime.MIN);
+                presenceTracker.offline(clientUUID, token.getUserId());
                 LOG.infov("连接被关闭");
             });
 
-            var notification = notificationService.poll(clientUUID + token.getUserId(), token.getUserId(), StringUtils.isBlank(count)? 1 : Integer.parseInt(count));
-            return StatusResult.of("ok", properties.version(), notification != null ?
-                    securityUtils.encryptWithSecret(notification, token.getSharedSecret(), token.getSharedInitializationVector()): "",StatusResult.PlatformInfo.of(
-                    properties.ssplatformUrl()
-            ));
+            // 请求挂起等待新消息期间不占用线程和 redis 连接
+            return notificationService.pollAsync(clientUUID + token.getUserId(), token.getUserId(), StringUtils.isBlank(count)? 1 : Integer.parseInt(count))
+                    .map(notification -> StatusResult.of("ok", properties.version(), notification != null ?
+                            securityUtils.encryptWithSecret(notification, token.getSharedSecret(), token.getSharedInitializationVector()): "",StatusResult.PlatformInfo.of(
+                            properties.ssplatformUrl()
+                    )));
         }
     }
 
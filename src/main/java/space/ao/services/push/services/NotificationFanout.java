@@ -0,0 +1,140 @@
+/*
+ * Copyright (c) 2023 Institute of Software Chinese Academy of Sciences (ISCAS)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package space.ao.services.push.services;
+
+import jakarta.enterprise.context.ApplicationScoped;
+import jakarta.inject.Inject;
+import org.jboss.logging.Logger;
+import space.ao.services.account.authorizedterminalinfo.entity.AuthorizedTerminalEntity;
+import space.ao.services.account.authorizedterminalinfo.entity.TerminalType;
+import space.ao.services.account.authorizedterminalinfo.repository.AuthorizedTerminalRepository;
+import space.ao.services.config.ApplicationProperties;
+import space.ao.services.push.dto.NotificationEnum;
+import space.ao.services.push.entity.NotificationEntity;
+import space.ao.services.support.platform.PlatformUtils;
+import space.ao.services.support.redis.message.RedisMessageService;
+import space.ao.services.support.redis.message.SendMessage;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Predicate;
+
+/**
+ * Sends one notification to many terminals. Terminals are read page by page in id order
+ * ({@code app.push.fanout.page-size}), and the messages of a page are written to the client queues with one
+ * pipelined batch of {@code XADD}. The platform push support is checked once per notification, the
+ * terminal type is taken from the page and the online status of a page is read with one query, so there is
+ * no per-terminal query.
+ */
+@ApplicationScoped
+public class NotificationFanout {
+  static final Logger LOG = Logger.getLogger("push_message.log");
+
+  @Inject
+  ApplicationProperties properties;
+  @Inject
+  AuthorizedTerminalRepository authorizedTerminalRepository;
+  @Inject
+  RedisMessageService redisMessageService;
+  @Inject
+  PresenceTracker presenceTracker;
+  @Inject
+  PlatformUtils platformUtils;
+  @Inject
+  PollWakeupRegistry pollWakeupRegistry;
+
+  /**
+   * Sends the notification to every authorized terminal accepted by the filter.
+   *
+   * @return the number of terminals the notification was sent to.
+   */
+  public int sendAllTerminal(NotificationEntity notification, Predicate<AuthorizedTerminalEntity> filter) {
+    var pageSize = properties.pushFanoutPageSize();
+    var stats = new Stats(platformUtils.isPlatformSupportPush());
+    Long lastId = null;
+    List<AuthorizedTerminalEntity> page;
+    do {
+      page = authorizedTerminalRepository.findTerminalsAfter(lastId, pageSize);
+      if (page.isEmpty()) {
+        break;
+      }
+      lastId = page.get(page.size() - 1).getId();
+      send(notification, page.stream().filter(filter).toList(), stats);
+    } while (page.size() == pageSize);
+    stats.log(notification);
+    return stats.sent;
+  }
+
+  /**
+   * Sends the notification to the given terminals.
+   *
+   * @return the number of terminals the notification was sent to.
+   */
+  public int send(NotificationEntity notification, List<AuthorizedTerminalEntity> terminals) {
+    var stats = new Stats(platformUtils.isPlatformSupportPush());
+    send(notification, terminals, stats);
+    stats.log(notification);
+    return stats.sent;
+  }
+
+  private void send(NotificationEntity notification, List<AuthorizedTerminalEntity> terminals, Stats stats) {
+    var prefix = properties.pushMqClientPrefix();
+    var onlyOnline = NotificationEnum.sendOnlyOnline().contains(notification.getOptType());
+    var messages = new ArrayList<Map.Entry<String, SendMessage>>(terminals.size());
+    var online = presenceTracker.online(terminals.stream()
+        .map(terminal -> PresenceTracker.key(terminal.getUuid(), terminal.getUserid().toString()))
+        .toList());
+    for (var terminal : terminals) {
+      var key = PresenceTracker.key(terminal.getUuid(), terminal.getUserid().toString());
+      if (!stats.keys.add(key)) {
+        continue;
+      }
+      if (onlyOnline || TerminalType.web.name().equalsIgnoreCase(terminal.getTerminalType())) {
+        stats.onlyOnline++;
+      }
+      if (online.contains(key)) {
+        stats.online++;
+      }
+      messages.add(Map.entry(prefix + key, new SendMessage(terminal.getUserid().toString(), terminal.getUuid(),
+          notification.getOptType(), notification.getRequestId(), notification.getData())));
+    }
+    redisMessageService.pushAll(messages);
+    pollWakeupRegistry.wakeUp(messages.stream().map(Map.Entry::getKey).toList());
+    stats.sent += messages.size();
+  }
+
+  private static final class Stats {
+    private final boolean platformSupportPush;
+    private final Set<String> keys = new HashSet<>();
+    private int sent;
+    private int online;
+    private int onlyOnline;
+
+    Stats(boolean platformSupportPush) {
+      this.platformSupportPush = platformSupportPush;
+    }
+
+    void log(NotificationEntity notification) {
+      LOG.infov("notification {0} ({1}) sent to {2} terminals, online: {3}, shouldSendOnlyOnline: {4}, "
+              + "isPlatformSupportMessagePush: {5}", notification.getRequestId(), notification.getOptType(),
+          sent, online, onlyOnline, platformSupportPush);
+    }
+  }
+}
@@ -20,6 +20,8 @@ import java.time.Duration;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.Objects;
+import io.smallrye.mutiny.Uni;
+import io.smallrye.mutiny.infrastructure.Infrastructure;
 import jakarta.enterprise.context.ApplicationScoped;
 import jakarta.inject.Inject;
 import org.jboss.logging.Logger;
@@ -53,17 +55,49 @@ public class NotificationService {
   UserInfoRepository userInfoRepository;
   @Inject
   NotificationRepository notificationRepository;
+  @Inject
+  PollWakeupRegistry pollWakeupRegistry;
   static final Logger LOG = Logger.getLogger("push_message.log");
   public static final String PUSH_NOTIFICATION_PLATFORM_KEY = "push_notification_platform";
 
-  @Logged
-  public String poll(String key, String userId, int count) {
-    long millis = Duration.parse(properties.pushTimeout()).toMillis();
-    var notification = redisMessageService.getMessage(properties.pushMqClientPrefix() + key, count, millis);
-    if(Objects.isNull(notification) || notification.isEmpty()){
+  /**
+   * Returns the notifications already queued for the client, or else parks until one arrives or
+   * {@code app.push.timeout} elapses, without holding a thread or a Redis connection meanwhile.
+   *
+   * @return the notifications, {@code null} if none arrived in time.
+   */
+  public Uni<String> pollAsync(String key, String userId, int count) {
+    var deadline = System.nanoTime() + Duration.parse(properties.pushTimeout()).toNanos();
+    return park(properties.pushMqClientPrefix() + key, userId, count, deadline);
+  }
+
+  /**
+   * Reads the queue, or waits for a wake-up and reads it again. A wake-up may find the queue empty, when another
+   * poll of the same client consumed the message first; the request then parks again until the deadline.
+   */
+  private Uni<String> park(String queue, String userId, int count, long deadline) {
+    var remaining = deadline - System.nanoTime();
+    if (remaining <= 0) {
+      return Uni.createFrom().nullItem();
+    }
+    var waiter = pollWakeupRegistry.register(queue);
+    var notification = consume(queue, userId, count);
+    if (notification != null) {
+      waiter.cancel();
+      return Uni.createFrom().item(notification);
+    }
+    return waiter.await(Duration.ofNanos(remaining))
+        .emitOn(Infrastructure.getDefaultWorkerPool())
+        .flatMap(woken -> Boolean.TRUE.equals(woken)
+            ? park(queue, userId, count, deadline) : Uni.createFrom().nullItem());
+  }
+
+  private String consume(String queue, String userId, int count) {
+    var notification = redisMessageService.getMessage(queue, count, null);
+    if (notification.isEmpty()) {
       return null;
     }
-    return notificationConsumer(notification,properties.pushMqClientPrefix() + key, userId).toString();
+    return notificationConsumer(notification, queue, userId).toString();
   }
 
   @Logged
@@ -0,0 +1,144 @@
+/*
+ * Copyright (c) 2023 Institute of Software Chinese Academy of Sciences (ISCAS)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package space.ao.services.push.services;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.quarkus.redis.datasource.ReactiveRedisDataSource;
+import io.quarkus.redis.datasource.pubsub.ReactivePubSubCommands;
+import io.quarkus.runtime.ShutdownEvent;
+import io.quarkus.runtime.Startup;
+import io.smallrye.mutiny.Uni;
+import jakarta.annotation.PostConstruct;
+import jakarta.enterprise.context.ApplicationScoped;
+import jakarta.enterprise.event.Observes;
+import jakarta.inject.Inject;
+import org.jboss.logging.Logger;
+
+import java.time.Duration;
+import java.util.Collection;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Parks long-poll requests until their client queue receives a message, instead of holding a thread and a
+ * Redis connection in {@code XREAD BLOCK} for each of them.
+ *
+ * <p>Writers of client queues call {@link #wakeUp} after {@code XADD}; it publishes the queue keys on the
+ * {@code push_notification_wakeup} channel, and every gateway instance completes the requests parked on those
+ * keys from its single channel subscription.
+ */
+@ApplicationScoped
+@Startup
+public class PollWakeupRegistry {
+  static final Logger LOG = Logger.getLogger("push_message.log");
+
+  static final String CHANNEL = "push_notification_wakeup";
+
+  @Inject
+  ReactiveRedisDataSource redisDataSource;
+  @Inject
+  MeterRegistry registry;
+
+  private final Map<String, Set<CompletableFuture<Boolean>>> waiters = new ConcurrentHashMap<>();
+  private ReactivePubSubCommands<String> pubSub;
+  private volatile ReactivePubSubCommands.ReactiveRedisSubscriber subscriber;
+
+  /**
+   * A request parked on a client queue.
+   */
+  public final class Waiter {
+    private final String key;
+    private final CompletableFuture<Boolean> future = new CompletableFuture<>();
+
+    private Waiter(String key) {
+      this.key = key;
+    }
+
+    /**
+     * @return true when the queue got a message, false when the timeout elapsed first.
+     */
+    public Uni<Boolean> await(Duration timeout) {
+      return Uni.createFrom().completionStage(future)
+          .ifNoItem().after(timeout).recoverWithItem(false)
+          .onTermination().invoke(this::cancel);
+    }
+
+    public void cancel() {
+      remove(key, future);
+    }
+  }
+
+  @PostConstruct
+  void init() {
+    pubSub = redisDataSource.pubsub(String.class);
+    // not waiting for the confirmation, it can arrive before the handler is set and be dropped, while the
+    // messages published afterwards are still handled
+    pubSub.subscribe(CHANNEL, this::onWakeUp).subscribe().with(
+        s -> subscriber = s,
+        t -> LOG.errorv(t, "subscribe {0} failed", CHANNEL));
+    Gauge.builder("push.poll.parked", waiters, w -> w.values().stream().mapToInt(Set::size).sum())
+        .description("long-poll requests waiting for a notification")
+        .register(registry);
+  }
+
+  void stop(@Observes ShutdownEvent event) {
+    if (subscriber != null) {
+      subscriber.unsubscribe().subscribe().with(ignored -> {}, t -> LOG.warnv(t, "unsubscribe {0} failed", CHANNEL));
+    }
+  }
+
+  /**
+   * Registers a request on the queue. Register before reading the queue, so a message added between the
+   * read and the wait still wakes the request.
+   */
+  public Waiter register(String key) {
+    var waiter = new Waiter(key);
+    waiters.computeIfAbsent(key, k -> ConcurrentHashMap.newKeySet()).add(waiter.future);
+    return waiter;
+  }
+
+  /**
+   * Wakes the requests parked on the queues, on every gateway instance.
+   */
+  public void wakeUp(Collection<String> keys) {
+    if (keys.isEmpty()) {
+      return;
+    }
+    pubSub.publish(CHANNEL, String.join("\n", keys)).subscribe().with(
+        ignored -> {},
+        t -> LOG.errorv(t, "publish wake up of {0} failed", keys));
+  }
+
+  private void onWakeUp(String message) {
+    for (var key : message.split("\n")) {
+      var parked = waiters.remove(key);
+      if (parked != null) {
+        parked.forEach(future -> future.complete(true));
+      }
+    }
+  }
+
+  private void remove(String key, CompletableFuture<Boolean> future) {
+    waiters.computeIfPresent(key, (k, set) -> {
+      set.remove(future);
+      return set.isEmpty() ? null : set;
+    });
+  }
+}
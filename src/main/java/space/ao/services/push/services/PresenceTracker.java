@@ -0,0 +1,170 @@
+/*
+ * Copyright (c) 2023 Institute of Software Chinese Academy of Sciences (ISCAS)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package space.ao.services.push.services;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.quarkus.redis.datasource.ReactiveRedisDataSource;
+import io.quarkus.redis.datasource.RedisDataSource;
+import io.quarkus.redis.datasource.pubsub.ReactivePubSubCommands;
+import io.quarkus.redis.datasource.sortedset.ReactiveSortedSetCommands;
+import io.quarkus.redis.datasource.sortedset.ScoreRange;
+import io.quarkus.redis.datasource.sortedset.SortedSetCommands;
+import io.quarkus.runtime.ShutdownEvent;
+import io.quarkus.scheduler.Scheduled;
+import jakarta.annotation.PostConstruct;
+import jakarta.enterprise.context.ApplicationScoped;
+import jakarta.enterprise.event.Observes;
+import jakarta.inject.Inject;
+import org.jboss.logging.Logger;
+import space.ao.services.config.ApplicationProperties;
+
+import java.time.Duration;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Online status of the clients, shared by all gateway instances. A client is online when it polled for
+ * notifications within {@code app.push.timeout} + 5 seconds.
+ *
+ * <p>Status is kept in the {@code push_presence} sorted set: the member is {@code clientUUID + userId}, the same
+ * key as the client notification queue, and the score is the last poll time in epoch millis. Heartbeats of
+ * a client are written at most once per {@code app.push.presence.heartbeat-interval}; the clients that
+ * polled this instance within that interval are answered from memory. Marking a client offline is published on
+ * the {@code push_presence_offline} channel, so every instance drops it from memory. Stale members are pruned
+ * every minute.
+ *
+ * <p>Notifications are queued whether the client is online or not; presence is reported in the push logs and
+ * fan-out stats.
+ */
+@ApplicationScoped
+public class PresenceTracker {
+  static final Logger LOG = Logger.getLogger("push_message.log");
+
+  static final String KEY = "push_presence";
+  static final String OFFLINE_CHANNEL = "push_presence_offline";
+
+  @Inject
+  ApplicationProperties properties;
+  @Inject
+  RedisDataSource redisDataSource;
+  @Inject
+  ReactiveRedisDataSource reactiveRedisDataSource;
+
+  private SortedSetCommands<String, String> sortedSet;
+  private ReactiveSortedSetCommands<String, String> reactiveSortedSet;
+  private Cache<String, Long> recentBeats;
+  private long ttlMillis;
+  private ReactivePubSubCommands<String> pubSub;
+  private volatile ReactivePubSubCommands.ReactiveRedisSubscriber subscriber;
+
+  @PostConstruct
+  void init() {
+    sortedSet = redisDataSource.sortedSet(String.class);
+    reactiveSortedSet = reactiveRedisDataSource.sortedSet(String.class);
+    ttlMillis = Duration.parse(properties.pushTimeout()).plusSeconds(5).toMillis();
+    var interval = Duration.parse("PT" + properties.pushPresenceHeartbeatInterval());
+    recentBeats = Caffeine.newBuilder()
+        .expireAfterWrite(interval.toMillis() < ttlMillis ? interval : Duration.ofMillis(ttlMillis))
+        .build();
+    pubSub = reactiveRedisDataSource.pubsub(String.class);
+    // not waiting for the confirmation, it can arrive before the handler is set and be dropped, while the
+    // messages published afterwards are still handled
+    pubSub.subscribe(OFFLINE_CHANNEL, recentBeats::invalidate).subscribe().with(
+        s -> subscriber = s,
+        t -> LOG.errorv(t, "subscribe {0} failed", OFFLINE_CHANNEL));
+  }
+
+  void stop(@Observes ShutdownEvent event) {
+    if (subscriber != null) {
+      subscriber.unsubscribe().subscribe().with(ignored -> {},
+          t -> LOG.warnv(t, "unsubscribe {0} failed", OFFLINE_CHANNEL));
+    }
+  }
+
+  public static String key(String clientUUID, String userId) {
+    return clientUUID + userId;
+  }
+
+  /**
+   * Marks the client online, called on every poll.
+   */
+  public void heartbeat(String clientUUID, String userId) {
+    var key = key(clientUUID, userId);
+    if (recentBeats.getIfPresent(key) != null) {
+      return;
+    }
+    var now = System.currentTimeMillis();
+    sortedSet.zadd(KEY, now, key);
+    recentBeats.put(key, now);
+  }
+
+  /**
+   * Marks the client offline on every instance, e.g. when its poll connection is closed or it logs out. Does
+   * not block, it can be called from the event loop.
+   */
+  public void offline(String clientUUID, String userId) {
+    var key = key(clientUUID, userId);
+    recentBeats.invalidate(key);
+    reactiveSortedSet.zrem(KEY, key)
+        .chain(() -> pubSub.publish(OFFLINE_CHANNEL, key))
+        .subscribe().with(
+            ignored -> {},
+            t -> LOG.errorv(t, "remove presence of {0} failed", key));
+  }
+
+  public boolean isOnline(String clientUUID, String userId) {
+    return !online(List.of(key(clientUUID, userId))).isEmpty();
+  }
+
+  /**
+   * @param keys {@code clientUUID + userId} of the clients.
+   * @return the keys of the clients that are online, with one {@code ZMSCORE} for those not seen locally.
+   */
+  public Set<String> online(Collection<String> keys) {
+    var result = new HashSet<String>();
+    var remote = keys.stream().filter(key -> {
+      if (recentBeats.getIfPresent(key) != null) {
+        result.add(key);
+        return false;
+      }
+      return true;
+    }).distinct().toList();
+    if (remote.isEmpty()) {
+      return result;
+    }
+    var since = System.currentTimeMillis() - ttlMillis;
+    var scores = sortedSet.zmscore(KEY, remote.toArray(String[]::new));
+    for (int i = 0; i < remote.size(); i++) {
+      var score = scores.get(i);
+      if (score.isPresent() && score.getAsDouble() > since) {
+        result.add(remote.get(i));
+      }
+    }
+    return result;
+  }
+
+  @Scheduled(every = "1m", delayed = "1m")
+  void prune() {
+    var removed = sortedSet.zremrangebyscore(KEY, ScoreRange.from(0, System.currentTimeMillis() - ttlMillis));
+    if (removed > 0) {
+      LOG.infov("pruned {0} offline clients from presence", removed);
+    }
+  }
+}
@@ -0,0 +1,150 @@
+/*
+ * Copyright (c) 2023 Institute of Software Chinese Academy of Sciences (ISCAS)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package space.ao.services.push.services;
+
+import io.quarkus.runtime.ShutdownEvent;
+import io.quarkus.runtime.Startup;
+import jakarta.annotation.PostConstruct;
+import jakarta.enterprise.context.ApplicationScoped;
+import jakarta.enterprise.event.Observes;
+import jakarta.inject.Inject;
+import org.jboss.logging.Logger;
+import space.ao.services.config.ApplicationProperties;
+import space.ao.services.support.redis.message.ReceiveMessage;
+import space.ao.services.support.redis.message.RedisMessageService;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Consumes the main push stream ({@code app.push.mq.main}) with a Redis consumer group and routes each
+ * notification to its client streams through {@link RedisService#sendNotification}.
+ *
+ * <p>{@code app.push.dispatcher.workers} threads read batches with {@code XREADGROUP}, and a batch is
+ * acknowledged and deleted once it has been routed. Gateway instances share the group, each with its own
+ * consumer name, so the stream is split between them. Messages left pending by a stopped consumer are taken
+ * over with {@code XAUTOCLAIM} after {@code app.push.dispatcher.claim-min-idle}; a claimed message that fails
+ * again is dropped.
+ */
+@ApplicationScoped
+@Startup
+public class PushDispatcher {
+  static final Logger LOG = Logger.getLogger("push_message.log");
+
+  @Inject
+  ApplicationProperties properties;
+  @Inject
+  RedisMessageService redisMessageService;
+  @Inject
+  RedisService redisService;
+
+  private final AtomicLong nextClaimAt = new AtomicLong();
+  private volatile boolean running;
+  private ExecutorService workers;
+  private String key;
+  private String group;
+  private String consumer;
+  private int batchSize;
+  private Duration block;
+  private Duration claimMinIdle;
+
+  @PostConstruct
+  void start() {
+    key = properties.pushMqMain();
+    group = properties.pushDispatcherGroup();
+    consumer = System.getenv().getOrDefault("HOSTNAME", "gateway") + "-" + UUID.randomUUID().toString().substring(0, 8);
+    batchSize = properties.pushDispatcherBatchSize();
+    block = Duration.parse("PT" + properties.pushDispatcherBlock());
+    claimMinIdle = Duration.parse("PT" + properties.pushDispatcherClaimMinIdle());
+
+    redisMessageService.createGroup(key, group);
+    running = true;
+    var count = properties.pushDispatcherWorkers();
+    var index = new AtomicInteger();
+    workers = Executors.newFixedThreadPool(count, r -> {
+      var thread = new Thread(r, "push-dispatcher-" + index.incrementAndGet());
+      thread.setDaemon(true);
+      return thread;
+    });
+    for (int i = 0; i < count; i++) {
+      workers.execute(this::work);
+    }
+    LOG.infov("push dispatcher started, key: {0}, group: {1}, consumer: {2}, workers: {3}", key, group, consumer, count);
+  }
+
+  void stop(@Observes ShutdownEvent event) {
+    // stops before the redis client is closed, interrupts the workers blocked in XREADGROUP
+    running = false;
+    workers.shutdownNow();
+  }
+
+  private void work() {
+    while (running) {
+      try {
+        var now = System.currentTimeMillis();
+        var claimAt = nextClaimAt.get();
+        if (now >= claimAt && nextClaimAt.compareAndSet(claimAt, now + claimMinIdle.toMillis())) {
+          dispatch(redisMessageService.autoClaim(key, group, consumer, claimMinIdle, batchSize), true);
+        }
+        dispatch(redisMessageService.readGroup(key, group, consumer, batchSize, block), false);
+      } catch (Exception e) {
+        if (!running) {
+          return;
+        }
+        LOG.errorv(e, "dispatch push notifications failed, key: {0}", key);
+        sleep();
+      }
+    }
+  }
+
+  /**
+   * @param claimed whether the messages are delivered for the second time, they are acknowledged even if
+   *                routing them fails.
+   */
+  private void dispatch(List<ReceiveMessage> messages, boolean claimed) {
+    if (messages.isEmpty()) {
+      return;
+    }
+    var done = new ArrayList<String>(messages.size());
+    for (var message : messages) {
+      try {
+        redisService.getNotificationEntityByReceiveMessage(List.of(message)).forEach(redisService::sendNotification);
+        done.add(message.messageId());
+      } catch (Exception e) {
+        LOG.errorv(e, "send notification {0} failed, claimed: {1}", message.messageId(), claimed);
+        if (claimed) {
+          done.add(message.messageId());
+        }
+      }
+    }
+    redisMessageService.ack(key, group, done);
+  }
+
+  private static void sleep() {
+    try {
+      Thread.sleep(1000);
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    }
+  }
+}
@@ -18,8 +18,6 @@ package space.ao.services.push.services;
 
 
 import io.quarkus.logging.Log;
-import io.quarkus.runtime.Startup;
-import lombok.Getter;
 import org.jboss.logging.Logger;
 import space.ao.services.account.authorizedterminalinfo.entity.TerminalType;
 import space.ao.services.support.log.Logged;
@@ -34,22 +32,16 @@ import space.ao.services.push.dto.Message;
 import space.ao.services.push.dto.NotificationEnum;
 import space.ao.services.push.entity.NotificationEntity;
 
-import jakarta.annotation.PostConstruct;
 import jakarta.enterprise.context.ApplicationScoped;
 import jakarta.inject.Inject;
 import space.ao.services.support.redis.message.ReceiveMessage;
 import space.ao.services.support.redis.message.RedisMessageService;
 
-import java.time.Duration;
-import java.time.OffsetDateTime;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.Objects;
-import java.util.concurrent.ConcurrentHashMap;
-import java.util.concurrent.ConcurrentMap;
 
 @ApplicationScoped
-@Startup
 public class RedisService {
 
   @Inject
@@ -66,26 +58,15 @@ public class RedisService {
   RedisCommonStringService redisCommonStringService;
   @Inject
   PlatformUtils platformUtils;
+  @Inject
+  NotificationFanout notificationFanout;
+  @Inject
+  PollWakeupRegistry pollWakeupRegistry;
+  @Inject
+  PresenceTracker presenceTracker;
   static final Logger LOG = Logger.getLogger("push_message.log");
-  @Getter
-  private static final ConcurrentMap<String, OffsetDateTime> clientUUIDCacheMap = new ConcurrentHashMap<>(); // clientUUID , status 请求时间 缓存
-
-  /**
-   *
-   * @param flag flag = clientUUID + userId
-   * @param offsetDateTime time
-   */
-  public static void setClientStatus(String flag, OffsetDateTime offsetDateTime){
-    clientUUIDCacheMap.put(flag, offsetDateTime);
-  }
 
 
-  @PostConstruct
-  @SuppressWarnings("unused") // 启动程序时开启启动队列消费
-  public void pushService() {
-    new Thread(() -> blockingSubscribeMain(properties.pushMqMain())).start();
-  }
-
   @Logged
   public String pushMessage(Message message){
     return redisMessageService.push(properties.pushMqMain(),
@@ -112,25 +93,23 @@ public class RedisService {
   @Logged
   public void sendClientUUID(NotificationEntity notification) {
 
-    final String PUSH_TIMEOUT = properties.pushTimeout();
     final String PUSH_MQ_CLIENT_PREFIX = properties.pushMqClientPrefix();
 
     var key = notification.getClientUUID() + notification.getUserid();
-    var now = OffsetDateTime.now();
 
     boolean isPlatformSupportMessagePush = platformUtils.isPlatformSupportPush();
 
     boolean shouldSendOnlyOnline = sendOnlyOnline(notification);
 
     // 判断是否在线
-    var clientStatus = clientUUIDCacheMap.get(key);
-    var isClientOnline = Objects.nonNull(clientStatus) && clientStatus.isAfter(now.minusSeconds(Duration.parse(PUSH_TIMEOUT).getSeconds() + 5));
+    var isClientOnline = presenceTracker.isOnline(notification.getClientUUID(), notification.getUserid().toString());
 
-    LOG.infov("client key {0} 对应的消息队列状态: {1}, isPlatformSupportMessagePush: {2}, shouldSendOnlyOnline: {3}, isClientOnline: {4}",
-            key, clientStatus, isPlatformSupportMessagePush, shouldSendOnlyOnline, isClientOnline);
+    LOG.infov("client key {0}, isPlatformSupportMessagePush: {1}, shouldSendOnlyOnline: {2}, isClientOnline: {3}",
+            key, isPlatformSupportMessagePush, shouldSendOnlyOnline, isClientOnline);
 
     redisMessageService.push(PUSH_MQ_CLIENT_PREFIX + key, new SendMessage(notification.getUserid()
               .toString(), notification.getClientUUID(), notification.getOptType(), notification.getRequestId(), notification.getData()));
+    pollWakeupRegistry.wakeUp(List.of(PUSH_MQ_CLIENT_PREFIX + key));
 
 
   }
@@ -152,27 +131,6 @@ public class RedisService {
     return result;
   }
 
-  /**
-   * 阻塞式异步消费, 没有消息是阻塞，收到消息发送到对应客户端队列 然后开启下一次阻塞式读
-   * @param key 对应客户端队列 client prefix + clientUUID
-   */
-  @Logged
-  public void blockingSubscribeMain(String key) {
-    while (Objects.equals(key, properties.pushMqMain())){
-      var notifications = getNotificationEntity(key, null, 60000L);
-      LOG.infov("get notifications from redis, notifications is: " + notifications);
-      for (var notification :notifications) {
-        sendNotification(notification);
-        redisMessageService.del(key, notification.getMessageId());
-      }
-    }
-  }
-
-  public List<NotificationEntity> getNotificationEntity(String key, Integer count, Long milliseconds) {
-      var response = redisMessageService.getMessage(key, count, milliseconds);
-      return getNotificationEntityByReceiveMessage(response);
-  }
-
   public Integer increaseFailedLoginCounter(String errorCounterKey, String userId, String clientUUID){
     var key = errorCounterKey + userId + clientUUID;
     int count;
@@ -199,15 +157,9 @@ public class RedisService {
 
   @Logged
   public void sendAllTerminalExcludeAdmin(NotificationEntity notificationEntity) {
-    var authors =  authorizedTerminalRepository.findAllTerminal();
     var adminBinder = userInfoRepository.findByRole(Role.ADMINISTRATOR);
-    for (var client: authors){
-      if(!client.getUuid().equals(adminBinder.getClientUUID())){
-        notificationEntity.setUserid(client.getUserid().intValue());
-        notificationEntity.setClientUUID(client.getUuid());
-        sendClientUUID(notificationEntity);
-      }
-    }
+    notificationFanout.sendAllTerminal(notificationEntity,
+        client -> adminBinder == null || !client.getUuid().equals(adminBinder.getClientUUID()));
   }
 
   @Logged
@@ -215,22 +167,13 @@ public class RedisService {
     if(NotificationEnum.ABILITY_CHANGE.getType().equals(notificationEntity.getOptType())){
       platformUtils.queryPlatformAbility();
     }
-    var authors =  authorizedTerminalRepository.findAllTerminal();
-    for (var client: authors){
-      notificationEntity.setUserid(client.getUserid().intValue());
-      notificationEntity.setClientUUID(client.getUuid());
-      sendClientUUID(notificationEntity);
-    }
+    notificationFanout.sendAllTerminal(notificationEntity, client -> true);
   }
 
   @Logged
   public void sendAllTerminalByUserId(NotificationEntity notificationEntity) {
-    var authors =  authorizedTerminalRepository.findByUserid(Long.valueOf(notificationEntity.getUserid()));
-    for (var client: authors){
-      notificationEntity.setUserid(client.getUserid().intValue());
-      notificationEntity.setClientUUID(client.getUuid());
-      sendClientUUID(notificationEntity);
-    }
+    notificationFanout.send(notificationEntity,
+        authorizedTerminalRepository.findByUserid(Long.valueOf(notificationEntity.getUserid())));
   }
 
   @Logged
@@ -0,0 +1,82 @@
+/*
+ * Copyright (c) 2023 Institute of Software Chinese Academy of Sciences (ISCAS)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package space.ao.services.support;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Tags;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.binder.okhttp3.OkHttpConnectionPoolMetrics;
+import okhttp3.Call;
+import okhttp3.EventListener;
+import okhttp3.OkHttpClient;
+import okhttp3.Protocol;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.Proxy;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Micrometer metrics of the gateway {@link OkHttpClient}s: active/idle connections of the pool and the time spent
+ * to connect to an upstream host. In-flight and queued requests are measured by {@link UpstreamBulkhead}.
+ */
+public final class HttpClientMetrics {
+  public static final String PREFIX = "gateway.http-client";
+
+  private HttpClientMetrics() {
+  }
+
+  /**
+   * Binds the connection pool gauges of the client, tagged with {@code pool}.
+   */
+  public static void bind(MeterRegistry registry, OkHttpClient client, String pool) {
+    new OkHttpConnectionPoolMetrics(client.connectionPool(), PREFIX, Tags.of("pool", pool)).bindTo(registry);
+  }
+
+  /**
+   * Records the duration of each new connection as {@code gateway.http-client.connect}, tagged with upstream host
+   * and outcome. Reused connections are not recorded.
+   */
+  public static EventListener.Factory connectTimer(MeterRegistry registry) {
+    return call -> new EventListener() {
+      private long connectStart;
+
+      @Override
+      public void connectStart(Call call, InetSocketAddress address, Proxy proxy) {
+        connectStart = System.nanoTime();
+      }
+
+      @Override
+      public void connectEnd(Call call, InetSocketAddress address, Proxy proxy, Protocol protocol) {
+        record(call, "success");
+      }
+
+      @Override
+      public void connectFailed(Call call, InetSocketAddress address, Proxy proxy, Protocol protocol,
+                                IOException ioe) {
+        record(call, "failure");
+      }
+
+      private void record(Call call, String outcome) {
+        Timer.builder(PREFIX + ".connect")
+            .tags("host", call.request().url().host(), "outcome", outcome)
+            .register(registry)
+            .record(System.nanoTime() - connectStart, TimeUnit.NANOSECONDS);
+      }
+    };
+  }
+}
@@ -0,0 +1,128 @@
+/*
+ * Copyright (c) 2023 Institute of Software Chinese Academy of Sciences (ISCAS)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package space.ao.services.support;
+
+import io.quarkus.runtime.StartupEvent;
+import jakarta.enterprise.context.ApplicationScoped;
+import jakarta.enterprise.event.Observes;
+import jakarta.enterprise.inject.Any;
+import jakarta.enterprise.inject.spi.BeanManager;
+import jakarta.inject.Inject;
+import jakarta.ws.rs.HeaderParam;
+import jakarta.ws.rs.Path;
+import org.jboss.logging.Logger;
+import space.ao.services.support.limit.LimitReq;
+import space.ao.services.support.limit.LimitTarget;
+import space.ao.services.support.platform.check.CheckApiStatus;
+import space.ao.services.support.platform.check.CheckPlatformStatus;
+
+import java.lang.annotation.Annotation;
+import java.lang.reflect.Method;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Metadata of the methods intercepted by {@link CheckApiStatus}, {@link CheckPlatformStatus} and {@link LimitReq}:
+ * the binding annotation (on the method or its class) and the parameters, resolved once at startup for the
+ * methods of all beans so that the interceptors do not use reflection per invocation.
+ */
+@ApplicationScoped
+public class InterceptorMetadata {
+  static final Logger LOG = Logger.getLogger("app.log");
+
+  private static final List<Class<? extends Annotation>> BINDINGS =
+      List.of(CheckApiStatus.class, CheckPlatformStatus.class, LimitReq.class);
+
+  @Inject
+  BeanManager beanManager;
+
+  private final Map<Method, MethodMetadata> methods = new ConcurrentHashMap<>();
+
+  void onStart(@Observes StartupEvent ev) {
+    for (var bean : beanManager.getBeans(Object.class, Any.Literal.INSTANCE)) {
+      for (var type = bean.getBeanClass(); type != null && type != Object.class; type = type.getSuperclass()) {
+        for (var method : type.getDeclaredMethods()) {
+          if (BINDINGS.stream().anyMatch(binding -> find(method, binding) != null)) {
+            methods.computeIfAbsent(method, MethodMetadata::of);
+          }
+        }
+      }
+    }
+    LOG.infov("interceptor metadata of {0} methods resolved", methods.size());
+  }
+
+  /**
+   * @return the metadata of the intercepted method, resolved on first use if it was not found at startup.
+   */
+  public MethodMetadata get(Method method) {
+    return methods.computeIfAbsent(method, MethodMetadata::of);
+  }
+
+  private static <A extends Annotation> A find(Method method, Class<A> type) {
+    var annotation = method.getAnnotation(type);
+    return annotation != null ? annotation : method.getDeclaringClass().getAnnotation(type);
+  }
+
+  /**
+   * @param bindings       the binding annotations present on the method or its class
+   * @param parameterNames the parameter names, {@code argN} if they are not compiled with {@code -parameters}
+   * @param requestIdIndex the index of the request id parameter ({@code requestId} or
+   *                       {@code @HeaderParam("Request-Id")}), -1 if there is none
+   * @param limitTarget    the {@link LimitReq} configuration, null if the method is not limited or misses the
+   *                       {@code @Path} annotation on the class or the method
+   */
+  public record MethodMetadata(Method method, Map<Class<? extends Annotation>, Annotation> bindings,
+                               String[] parameterNames, int requestIdIndex, LimitTarget limitTarget) {
+    static MethodMetadata of(Method method) {
+      var bindings = new HashMap<Class<? extends Annotation>, Annotation>();
+      for (var type : BINDINGS) {
+        var annotation = find(method, type);
+        if (annotation != null) {
+          bindings.put(type, annotation);
+        }
+      }
+      var params = method.getParameters();
+      var names = new String[params.length];
+      var requestIdIndex = -1;
+      for (int idx = 0; idx < params.length; idx++) {
+        names[idx] = params[idx].getName();
+        var header = params[idx].getAnnotation(HeaderParam.class);
+        if (requestIdIndex < 0 && ("requestId".equalsIgnoreCase(names[idx])
+            || (header != null && "Request-Id".equalsIgnoreCase(header.value())))) {
+          requestIdIndex = idx;
+        }
+      }
+      var pathClass = method.getDeclaringClass().getAnnotation(Path.class);
+      var pathMethod = method.getAnnotation(Path.class);
+      var path = pathClass != null && pathMethod != null ? pathClass.value() + pathMethod.value() : null;
+      return new MethodMetadata(method, Map.copyOf(bindings), names, requestIdIndex,
+          LimitTarget.of((LimitReq) bindings.get(LimitReq.class), path, names));
+    }
+
+    public <A extends Annotation> A binding(Class<A> type) {
+      return type.cast(bindings.get(type));
+    }
+
+    public String requestId(Object[] params, String defaultValue) {
+      if (requestIdIndex < 0 || params[requestIdIndex] == null) {
+        return defaultValue;
+      }
+      return params[requestIdIndex].toString();
+    }
+  }
+}
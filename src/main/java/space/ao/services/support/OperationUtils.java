@@ -19,9 +19,7 @@ package space.ao.services.support;
 import com.fasterxml.jackson.core.JsonProcessingException;
 import com.fasterxml.jackson.core.type.TypeReference;
 import com.fasterxml.jackson.databind.ObjectMapper;
-import com.google.common.io.ByteStreams;
 import com.google.common.io.CharStreams;
-import java.lang.reflect.Method;
 import java.math.BigInteger;
 import java.net.InetAddress;
 import java.net.UnknownHostException;
@@ -38,12 +36,10 @@ import org.apache.commons.codec.binary.Hex;
 import org.jboss.logging.Logger;
 import org.jose4j.json.JsonUtil;
 import org.jose4j.lang.JoseException;
-import org.lionsoul.ip2region.DataBlock;
-import org.lionsoul.ip2region.DbConfig;
-import org.lionsoul.ip2region.DbSearcher;
-import org.lionsoul.ip2region.Util;
 import space.ao.services.config.ApplicationProperties;
+import space.ao.services.support.ip.IpRegionSearcher;
 import space.ao.services.support.model.OfficialPlatform;
+import space.ao.services.support.security.CryptoPool;
 import space.ao.services.support.service.ServiceError;
 import space.ao.services.support.service.ServiceOperationException;
 
@@ -67,6 +63,9 @@ public class OperationUtils {
   @Inject
   ApplicationProperties properties;
 
+  @Inject
+  IpRegionSearcher ipRegionSearcher;
+
   @Getter
   public PublicKey clientPublicKey;
 
@@ -142,7 +141,7 @@ public class OperationUtils {
             .replace("-----BEGIN PUBLIC KEY-----", "")
             .replace("-----END PUBLIC KEY-----", "");
 
-    KeyFactory keyFactory = KeyFactory.getInstance("RSA");
+    KeyFactory keyFactory = CryptoPool.keyFactory("RSA");
     X509EncodedKeySpec keySpec = new X509EncodedKeySpec(Base64.getDecoder().decode(pem));
     return (RSAPublicKey) keyFactory.generatePublic(keySpec);
   }
@@ -157,6 +156,18 @@ public class OperationUtils {
     return objectMapper.readValue(json, clz);
   }
 
+  @SneakyThrows
+  public <T> T jsonToObject(InputStream json, Class<T> clz) {
+    return objectMapper.readValue(json, clz);
+  }
+
+  /**
+   * Converts a deserialized object (e.g. a {@code Map}) to another type without writing it as JSON text.
+   */
+  public <T> T convertValue(Object object, Class<T> clz) {
+    return objectMapper.convertValue(object, clz);
+  }
+
   @SneakyThrows
   public <T> T mapToObject(Map<String, String> map, Class<T> clz) {
     var json = objectMapper.writeValueAsString(map);
@@ -320,58 +331,7 @@ public class OperationUtils {
    * @return 城市
    */
   public String getCityInfo(String ip) {
-    //db
-    String dbPath = Objects.requireNonNull(
-        OperationUtils.class.getResource(properties.ip2regionLocation())).getPath();
-    var file = new File(dbPath);
-
-    if (!file.exists()) {
-      LOG.info("地址库文件不存在,进行其他处理");
-      
-      String tmpDir = System.getProperties().getProperty("java.io.tmpdir");
-      dbPath = tmpDir + File.separator + "ip2region.db";
-      LOG.infov("临时文件路径:{0}", dbPath);
-      
-      file = new File(dbPath);
-      if (!file.exists() || (System.currentTimeMillis() - file.lastModified() > 86400000L)) {
-        LOG.info("文件不存在或者文件存在时间超过1天进入...");
-        try (var inputStream = getClass().getResourceAsStream(properties.ip2regionLocation())) {
-          if(inputStream == null) {
-            return null;
-          }
-          try (OutputStream stream = new FileOutputStream(file)){
-            ByteStreams.copy(inputStream, stream);
-          } catch (IOException ioe) {
-            LOG.error(ioe);
-          }
-        } catch (IOException ioe) {
-          LOG.error(ioe);
-        }
-      }
-    }
-
-    //查询算法
-    //B-tree
-    //DbSearcher.BINARY_ALGORITHM //Binary
-    //DbSearcher.MEMORY_ALGORITYM //Memory
-    try {
-      var config = new DbConfig();
-      var searcher = new DbSearcher(config, file.getPath());
-      Method method;
-      method = searcher.getClass().getMethod("btreeSearch", String.class);
-      DataBlock dataBlock;
-      if (!Util.isIpAddress(ip)) {
-        LOG.error("Error: Invalid ip address");
-        return null;
-      }
-      dataBlock  = (DataBlock) method.invoke(searcher, ip);
-      LOG.infov("result : {0}", dataBlock.getRegion());
-      return dataBlock.getRegion();
-    } catch (Exception e) {
-      LOG.error(e);
-
-    }
-    return null;
+    return ipRegionSearcher.search(ip);
   }
 
   public long get100YearSeconds(){
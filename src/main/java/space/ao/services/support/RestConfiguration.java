@@ -18,18 +18,24 @@ package space.ao.services.support;
 
 import com.google.common.base.Stopwatch;
 import com.google.common.base.Strings;
+import io.micrometer.core.instrument.MeterRegistry;
 import io.vertx.core.http.HttpServerRequest;
 import io.vertx.core.http.HttpServerResponse;
+import okhttp3.ConnectionPool;
 import okhttp3.OkHttpClient;
+import org.eclipse.microprofile.config.ConfigProvider;
 import org.jboss.logging.Logger;
 import space.ao.services.account.support.service.ServiceError;
 import space.ao.services.config.ApplicationProperties;
+import space.ao.services.support.limit.RateLimitedException;
+import space.ao.services.support.log.StructuredLog;
 import space.ao.services.support.response.ResponseBase;
 import space.ao.services.support.service.ServiceOperationException;
 
 import jakarta.enterprise.context.ApplicationScoped;
 import jakarta.enterprise.inject.Produces;
 import jakarta.inject.Inject;
+import jakarta.inject.Singleton;
 import jakarta.validation.ConstraintViolationException;
 import jakarta.ws.rs.WebApplicationException;
 import jakarta.ws.rs.container.ContainerRequestContext;
@@ -37,12 +43,15 @@ import jakarta.ws.rs.container.ContainerRequestFilter;
 import jakarta.ws.rs.container.ContainerResponseContext;
 import jakarta.ws.rs.container.ContainerResponseFilter;
 import jakarta.ws.rs.core.Context;
+import jakarta.ws.rs.core.HttpHeaders;
 import jakarta.ws.rs.core.Response;
 import jakarta.ws.rs.core.UriInfo;
 import jakarta.ws.rs.ext.ExceptionMapper;
 import jakarta.ws.rs.ext.Provider;
 import java.time.Duration;
+import java.util.Optional;
 import java.util.Set;
+import java.util.concurrent.TimeUnit;
 
 /**
  * It provides application scoped {@code Mappers}, {@code Filters} etc. configurations
@@ -63,13 +72,41 @@ public class RestConfiguration {
   @Inject
   ApplicationProperties properties;
 
+  @Inject
+  MeterRegistry registry;
+
+  /**
+   * The default upstream client. Hosts with their own settings in {@code app.gateway.http-client.hosts}
+   * get a derived client, see {@code UpstreamHttpClients}.
+   */
   @Produces
+  @Singleton
   @SuppressWarnings("unused") // Used by DIC framework
   public OkHttpClient httpClient() {
-    return new OkHttpClient.Builder()
+    var hosts = properties.gatewayHttpClientHosts();
+    var bulkhead = new UpstreamBulkhead(registry, properties.gatewayHttpClientMaxRequests(),
+        host -> Optional.ofNullable(hosts.get(host)).flatMap(ApplicationProperties.UpstreamHost::maxRequests)
+            .orElse(properties.gatewayHttpClientMaxRequestsPerHost()),
+        Duration.parse("PT" + properties.gatewayHttpClientQueueTimeout()));
+    hosts.keySet().forEach(bulkhead::bind);
+    // the upstream calls are synchronous, each one holds a worker thread until its body is transferred
+    var workers = ConfigProvider.getConfig().getOptionalValue("quarkus.thread-pool.max-threads", Integer.class);
+    if (workers.isPresent() && workers.get() <= properties.gatewayHttpClientMaxRequests()) {
+      LOG.warnv("app.gateway.http-client.max-requests ({0}) is not below quarkus.thread-pool.max-threads ({1}), "
+          + "upstream transfers can occupy every worker thread", properties.gatewayHttpClientMaxRequests(),
+          workers.get());
+    }
+    var client = new OkHttpClient.Builder()
+        .connectTimeout(Duration.parse("PT" + properties.gatewayHttpClientConnectTimeout()))
         .readTimeout(Duration.parse("PT" + properties.gatewayHttpClientReadTimeout()))
         .writeTimeout(Duration.parse("PT" + properties.gatewayHttpClientWriteTimeout()))
+        .connectionPool(new ConnectionPool(properties.gatewayHttpClientMaxIdleConnections(),
+            Duration.parse("PT" + properties.gatewayHttpClientKeepAlive()).toMillis(), TimeUnit.MILLISECONDS))
+        .addInterceptor(bulkhead)
+        .eventListenerFactory(HttpClientMetrics.connectTimer(registry))
         .build();
+    HttpClientMetrics.bind(registry, client, "default");
+    return client;
   }
 
   /**
@@ -154,7 +191,7 @@ public class RestConfiguration {
               .toResponse();
     }
 
-    return ResponseBase.fromErrorCode(
+    var response = ResponseBase.fromErrorCode(
         errCode != null ? errCode : status.getStatusCode())
         .requestId(requestId)
         .message(
@@ -162,9 +199,22 @@ public class RestConfiguration {
         .context(context)
         .build()
         .toResponse();
+    if (exception instanceof RateLimitedException) {
+      return Response.fromResponse(response)
+          .header(HttpHeaders.RETRY_AFTER, ((RateLimitedException) exception).getRetryAfterSeconds())
+          .build();
+    }
+    return response;
   }
 
   private final static String STOPWATCH = "stopwatch";
+  private final static String STARTED = "started";
+  private final static String SAMPLED = "sampled";
+
+  private static String requestId(HttpServerRequest request) {
+    var requestId = request.getHeader(REQUEST_ID);
+    return (requestId == null) ? request.getParam(REQUEST_ID) : requestId;
+  }
 
   /**
    * It provides an access log recording for all REST requests. For more information:
@@ -179,8 +229,21 @@ public class RestConfiguration {
     @Context
     HttpServerRequest request;
 
+    @Inject
+    StructuredLog structuredLog;
+
     @Override
     public void filter(ContainerRequestContext context) {
+      if (structuredLog.enabled()) {
+        context.setProperty(STARTED, System.nanoTime());
+        if (LOG.isInfoEnabled() && structuredLog.sampled()) {
+          context.setProperty(SAMPLED, Boolean.TRUE);
+          LOG.infov("[Request] method={0} path={1} ip={2} params={3} req-id={4}",
+              context.getMethod(), info.getPath(), request.remoteAddress(),
+              request.params().isEmpty() ? "{}" : structuredLog.value(request.params()), requestId(request));
+        }
+        return;
+      }
       context.setProperty(STOPWATCH, Stopwatch.createStarted());
       var requestId = request.getHeader(REQUEST_ID);
       requestId = ((requestId == null) ? request.getParam(REQUEST_ID) : requestId);
@@ -221,11 +284,29 @@ public class RestConfiguration {
     @Context
     HttpServerRequest request;
 
+    @Inject
+    StructuredLog structuredLog;
+
     @Override
     public void filter(
         ContainerRequestContext requestContext, ContainerResponseContext responseContext) {
-      var requestId = request.getHeader(REQUEST_ID);
-      requestId = ((requestId == null) ? request.getParam(REQUEST_ID) : requestId);
+      var requestId = requestId(request);
+      if (structuredLog.enabled()) {
+        var started = (Long) requestContext.getProperty(STARTED);
+        var statusCode = response.headWritten() ? response.getStatusCode() : responseContext.getStatus();
+        // the responses of sampled requests and all error responses
+        if (requestContext.getProperty(SAMPLED) != null || (statusCode >= 400 && LOG.isInfoEnabled())) {
+          LOG.infov("[Response] method={0} path={1} status={2} elapsed={3}ms req-id={4}",
+              requestContext.getMethod(), info.getPath(), String.valueOf(statusCode),
+              started == null ? "-" : String.valueOf((System.nanoTime() - started) / 1_000_000), requestId);
+        }
+        requestContext.removeProperty(STARTED);
+        requestContext.removeProperty(SAMPLED);
+        if (!Strings.isNullOrEmpty(requestId)) {
+          responseContext.getHeaders().add(REQUEST_ID, requestId);
+        }
+        return;
+      }
       var stopwatch = (Stopwatch) requestContext.getProperty(STOPWATCH);
       var method = requestContext.getMethod();
       var status = responseContext.getStatusInfo();
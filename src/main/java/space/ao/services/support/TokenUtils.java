@@ -34,20 +34,22 @@ import org.eclipse.microprofile.jwt.JsonWebToken;
 import org.jboss.logging.Logger;
 import space.ao.services.config.ApplicationProperties;
 import space.ao.services.gateway.auth.CreateTokenResult;
+import space.ao.services.support.cache.AccessTokenCache;
 import space.ao.services.support.jwt.JwtUtils;
 import space.ao.services.support.log.Logged;
 import space.ao.services.support.model.AccessToken;
 import space.ao.services.support.model.AlgorithmConfig;
 import space.ao.services.support.model.RefreshToken;
 import space.ao.services.support.redis.RedisTokenService;
+import space.ao.services.support.security.CryptoPool;
 import space.ao.services.support.security.SecurityUtils;
+import space.ao.services.support.security.TokenInfoCipher;
 import space.ao.services.support.service.ServiceError;
 import space.ao.services.support.service.ServiceOperationException;
 
 import javax.annotation.Nullable;
 import javax.crypto.Cipher;
 import javax.crypto.spec.IvParameterSpec;
-import javax.crypto.spec.SecretKeySpec;
 import java.nio.charset.StandardCharsets;
 import java.security.SecureRandom;
 import java.time.Duration;
@@ -72,6 +74,8 @@ public class TokenUtils {
   private static final String OPEN_API_APPLET_ID = "open-api-appletID";
   private static final String OPEN_API_APPLET_VER = "open-api-appletVER";
   private static final String OPEN_API_SCOPES = "open-api-scopes";
+
+  private static final String TOKEN_VERIFY_MODE_AES = "aes";
   
   @Inject
   SecurityUtils securityUtils;
@@ -87,8 +91,10 @@ public class TokenUtils {
   JWTParser jwtParser;
   @Inject
   ObjectMapper objectMapper;
-
-  private static final Map<String, AccessToken> accessTokenMap = new HashMap<>();
+  @Inject
+  AccessTokenCache accessTokenCache;
+  @Inject
+  TokenInfoCipher tokenInfoCipher;
 
   @Logged
   public String createAccessToken(String requestId, String userId, ZonedDateTime expiresAt, String secret,
@@ -98,8 +104,7 @@ public class TokenUtils {
             .issuer(properties.boxEndpoint())
             .issuedAt(ZonedDateTime.now().toInstant())
             .expiresAt(expiresAt.toInstant())
-            .claim(INFO, securityUtils.getSecurityProvider().encryptUsingBoxPublicKey(requestId,
-                    userId + ","+ clientUUID +","+ secret))
+            .claim(INFO, encryptInfoClaim(requestId, userId + ","+ clientUUID +","+ secret))
             .claim(AccessToken.SHARED_IV_KEY, iv);
 
     return claimOpenApiAndSign(requestId, openApiArg, builder, ACCESS_TOKEN_TYPE, OPEN_API_ACCESS_TOKEN_TYPE);
@@ -158,8 +163,9 @@ public class TokenUtils {
   public @Nullable
   AccessToken verifyAccessToken(String requestId, String token) {
 
-    if(accessTokenMap.containsKey(token)){
-      return accessTokenMap.get(token);
+    var cached = accessTokenCache.get(token);
+    if (cached != null) {
+      return cached;
     }
 
     try {
@@ -185,7 +191,7 @@ public class TokenUtils {
         LOG.infov("requestId:{0}, verifyAccessToken jwt.containsClaim(INFO): {1}", requestId, jwt.containsClaim(INFO));
         return null;
       } else {
-        var info = securityUtils.getSecurityProvider().decryptUsingBoxPrivateKey(requestId, jwt.getClaim(INFO));
+        var info = decryptInfoClaim(requestId, jwt);
         builder.userId(info.split(",")[0])
                 .clientUUID(info.split(",")[1])
                 .sharedSecret(info.split(",")[2]);
@@ -227,7 +233,7 @@ public class TokenUtils {
       }
 
       var result = builder.build();
-      accessTokenMap.put(token, result);
+      accessTokenCache.put(result);
       return result;
 
     } catch (Exception e) {
@@ -235,6 +241,29 @@ public class TokenUtils {
       return null;
     }
   }
+  /**
+   * Encrypts the info claim of access token, with the box symmetric token key in aes mode, otherwise with the box
+   * public key.
+   */
+  private String encryptInfoClaim(String requestId, String info) {
+    if (TOKEN_VERIFY_MODE_AES.equals(properties.gatewayAuthTokenVerifyMode())) {
+      return tokenInfoCipher.encrypt(requestId, info);
+    }
+    return securityUtils.getSecurityProvider().encryptUsingBoxPublicKey(requestId, info);
+  }
+
+  /**
+   * Decrypts the info claim of access token. Both encodings are accepted whatever the mode, so the tokens issued
+   * before the mode changed stay valid.
+   */
+  private String decryptInfoClaim(String requestId, JsonWebToken jwt) {
+    String info = jwt.getClaim(INFO);
+    if (TokenInfoCipher.isEncrypted(info)) {
+      return tokenInfoCipher.decrypt(requestId, info);
+    }
+    return securityUtils.getSecurityProvider().decryptUsingBoxPrivateKey(requestId, info);
+  }
+
   public AccessToken checkAccessToken(String requestId, String accessToken) {
     return Optional.ofNullable(verifyAccessToken(requestId, accessToken))
             .orElseThrow(
@@ -309,12 +338,14 @@ public class TokenUtils {
     }
   }
 
+  /**
+   * Creates a dedicated cipher for streaming (upload/download) bodies. The cipher outlives the call, so it is
+   * not taken from {@link CryptoPool}; only the secret key spec is shared.
+   */
   @SneakyThrows
   public Cipher createAndInitCipherWithAccessToken(AccessToken accessToken, int mode) {
-    var secretKey = new SecretKeySpec(
-            accessToken.getSharedSecret().getBytes(StandardCharsets.UTF_8),
-            properties.gatewayAlgInfoTransportationAlgorithm()
-    );
+    var secretKey = CryptoPool.secretKey(accessToken.getSharedSecret(),
+            properties.gatewayAlgInfoTransportationAlgorithm());
     var cipher = Cipher.getInstance(properties.gatewayAlgInfoTransportationTransformation());
     cipher.init(mode, secretKey, accessToken.getSharedInitializationVector());
     return cipher;
@@ -389,8 +420,7 @@ public class TokenUtils {
   @SuppressWarnings("unused") // Executing a Scheduled Task
   void cleanupCacheTokenData() {
     Stopwatch stopwatch = Stopwatch.createStarted();
-    accessTokenMap.values().forEach(
-            accessToken -> accessTokenMap.entrySet().removeIf(d ->  accessToken.getExpiresAt().toEpochSecond() < ZonedDateTime.now().toEpochSecond()));
+    accessTokenCache.cleanUp();
     LOG.info("regularly clean token cache completed - " + stopwatch.elapsed(TimeUnit.SECONDS));
   }
 }
@@ -0,0 +1,160 @@
+/*
+ * Copyright (c) 2023 Institute of Software Chinese Academy of Sciences (ISCAS)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package space.ao.services.support;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import okhttp3.Interceptor;
+import okhttp3.Response;
+import okhttp3.ResponseBody;
+import okio.ForwardingSource;
+import okio.Okio;
+import space.ao.services.support.service.ServiceError;
+import space.ao.services.support.service.ServiceOperationException;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.ToIntFunction;
+
+/**
+ * Limits the concurrent upstream requests, in total and per host. OkHttp only applies the limits of its
+ * {@code Dispatcher} to asynchronous calls, while the gateway executes its calls synchronously, so the limits are
+ * enforced here for both.
+ *
+ * <p>A request waits at most {@code timeout} for a permit, then fails with {@link ServiceError#TOO_MANY_REQUESTS}.
+ * The permits are held until the response body is closed, so a streamed download counts until it is transferred.
+ */
+public final class UpstreamBulkhead implements Interceptor {
+  static final String ALL = "all";
+
+  private final MeterRegistry registry;
+  private final Semaphore total;
+  private final ToIntFunction<String> hostLimit;
+  private final long timeoutNanos;
+  private final Map<String, Limit> hosts = new ConcurrentHashMap<>();
+
+  private record Limit(Semaphore permits, int size) {
+    int inFlight() {
+      return size - permits.availablePermits();
+    }
+  }
+
+  /**
+   * @param maxRequests max concurrent requests to all hosts.
+   * @param hostLimit max concurrent requests to a host.
+   * @param timeout max time a request waits for a permit.
+   */
+  public UpstreamBulkhead(MeterRegistry registry, int maxRequests, ToIntFunction<String> hostLimit,
+                          Duration timeout) {
+    this.registry = registry;
+    this.total = new Semaphore(maxRequests, true);
+    this.hostLimit = hostLimit;
+    this.timeoutNanos = timeout.toNanos();
+    register(ALL, new Limit(total, maxRequests));
+  }
+
+  /**
+   * @return the limit of the host, its gauges are registered on first use.
+   */
+  private Limit limit(String host) {
+    return hosts.computeIfAbsent(host, h -> {
+      var size = hostLimit.applyAsInt(h);
+      return register(h, new Limit(new Semaphore(size, true), size));
+    });
+  }
+
+  private Limit register(String host, Limit limit) {
+    Gauge.builder(HttpClientMetrics.PREFIX + ".requests.in-flight", limit, Limit::inFlight)
+        .tags("host", host)
+        .description("Upstream requests holding a permit")
+        .register(registry);
+    Gauge.builder(HttpClientMetrics.PREFIX + ".requests.queued", limit.permits(), Semaphore::getQueueLength)
+        .tags("host", host)
+        .description("Upstream requests waiting for a permit")
+        .register(registry);
+    return limit;
+  }
+
+  /**
+   * Registers the gauges of a host before its first request.
+   */
+  public void bind(String host) {
+    limit(host);
+  }
+
+  @Override
+  public Response intercept(Chain chain) throws IOException {
+    var host = limit(chain.request().url().host()).permits();
+    // the host permit first, so requests queued on a saturated host do not hold permits the other hosts need
+    acquire(host);
+    try {
+      acquire(total);
+    } catch (RuntimeException e) {
+      host.release();
+      throw e;
+    }
+    var released = new AtomicBoolean();
+    Runnable release = () -> {
+      if (released.compareAndSet(false, true)) {
+        host.release();
+        total.release();
+      }
+    };
+
+    Response response;
+    try {
+      response = chain.proceed(chain.request());
+    } catch (IOException | RuntimeException e) {
+      release.run();
+      throw e;
+    }
+    var body = response.body();
+    if (body == null) {
+      release.run();
+      return response;
+    }
+    var source = new ForwardingSource(body.source()) {
+      @Override
+      public void close() throws IOException {
+        try {
+          super.close();
+        } finally {
+          release.run();
+        }
+      }
+    };
+    return response.newBuilder()
+        .body(ResponseBody.create(body.contentType(), body.contentLength(), Okio.buffer(source)))
+        .build();
+  }
+
+  private void acquire(Semaphore permits) {
+    try {
+      if (!permits.tryAcquire(timeoutNanos, TimeUnit.NANOSECONDS)) {
+        throw new ServiceOperationException(ServiceError.TOO_MANY_REQUESTS);
+      }
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new ServiceOperationException(ServiceError.TOO_MANY_REQUESTS);
+    }
+  }
+}
@@ -0,0 +1,113 @@
+/*
+ * Copyright (c) 2023 Institute of Software Chinese Academy of Sciences (ISCAS)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package space.ao.services.support.cache;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.Expiry;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import jakarta.annotation.PostConstruct;
+import jakarta.enterprise.context.ApplicationScoped;
+import jakarta.inject.Inject;
+import org.jboss.logging.Logger;
+import space.ao.services.config.ApplicationProperties;
+import space.ao.services.support.model.AccessToken;
+
+import javax.annotation.Nullable;
+import java.time.ZonedDateTime;
+import java.util.Objects;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Verified access token cache, keyed by the original token string.
+ *
+ * <p>Entries expire at {@link AccessToken#getExpiresAt()}, the cache is bounded by
+ * {@code app.gateway.cache.access-token.max-size} (W-TinyLFU eviction) and reads are lock-free.
+ * Hit/miss/eviction statistics are exposed as {@code cache.*{cache=gateway.access-token}} metrics.
+ */
+@ApplicationScoped
+public class AccessTokenCache {
+  static final Logger LOG = Logger.getLogger("app.log");
+
+  private static final String CACHE_NAME = "gateway.access-token";
+
+  @Inject
+  ApplicationProperties properties;
+  @Inject
+  MeterRegistry registry;
+
+  private Cache<String, AccessToken> cache;
+
+  @PostConstruct
+  void init() {
+    cache = Caffeine.newBuilder()
+        .maximumSize(properties.gatewayCacheAccessTokenMaxSize())
+        .expireAfter(new Expiry<String, AccessToken>() {
+          @Override
+          public long expireAfterCreate(String key, AccessToken value, long currentTime) {
+            return remainingNanos(value);
+          }
+
+          @Override
+          public long expireAfterUpdate(String key, AccessToken value, long currentTime, long currentDuration) {
+            return remainingNanos(value);
+          }
+
+          @Override
+          public long expireAfterRead(String key, AccessToken value, long currentTime, long currentDuration) {
+            return currentDuration;
+          }
+        })
+        .recordStats()
+        .build();
+    CaffeineCacheMetrics.monitor(registry, cache, CACHE_NAME);
+  }
+
+  private static long remainingNanos(AccessToken token) {
+    var seconds = token.getExpiresAt().toEpochSecond() - ZonedDateTime.now().toEpochSecond();
+    return seconds <= 0 ? 0 : TimeUnit.SECONDS.toNanos(seconds);
+  }
+
+  public @Nullable AccessToken get(String token) {
+    return cache.getIfPresent(token);
+  }
+
+  public void put(AccessToken accessToken) {
+    cache.put(accessToken.getToken(), accessToken);
+  }
+
+  /**
+   * Invalidates all cached tokens of the user, used when the user's clients have been revoked.
+   */
+  public void invalidateUser(String userId) {
+    cache.asMap().values().removeIf(token -> Objects.equals(token.getUserId(), userId));
+  }
+
+  /**
+   * Invalidates all cached tokens issued to the given client of the user.
+   */
+  public void invalidateClient(String userId, String clientUUID) {
+    cache.asMap().values().removeIf(token -> Objects.equals(token.getUserId(), userId)
+        && Objects.equals(token.getClientUUID(), clientUUID));
+  }
+
+  public void cleanUp() {
+    cache.cleanUp();
+    LOG.infov("access token cache cleaned, size: {0}, stats: {1}", cache.estimatedSize(), cache.stats());
+  }
+}
@@ -0,0 +1,127 @@
+/*
+ * Copyright (c) 2023 Institute of Software Chinese Academy of Sciences (ISCAS)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package space.ao.services.support.cache;
+
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.LoadingCache;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import jakarta.annotation.PostConstruct;
+import jakarta.enterprise.context.ApplicationScoped;
+import jakarta.inject.Inject;
+import jakarta.transaction.Status;
+import jakarta.transaction.Synchronization;
+import jakarta.transaction.TransactionSynchronizationRegistry;
+import space.ao.services.account.authorizedterminalinfo.entity.AuthorizedTerminalEntity;
+import space.ao.services.account.authorizedterminalinfo.repository.AuthorizedTerminalRepository;
+import space.ao.services.account.personalinfo.repository.UserInfoRepository;
+import space.ao.services.config.ApplicationProperties;
+
+import java.time.Duration;
+import java.time.OffsetDateTime;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Read-through cache of what the gateway checks on every proxied call: the bound client of a user and the
+ * expiry of its authorized terminals, keyed by userId.
+ *
+ * <p>Repositories invalidate a user when its row or terminals are written, once more after the transaction
+ * completes so a concurrent read can not put the old rows back. Writes that bypass the repositories are
+ * picked up after {@code app.gateway.cache.user-access.expire-after-write}.
+ */
+@ApplicationScoped
+public class UserAccessCache {
+
+  private static final String CACHE_NAME = "gateway.user-access";
+
+  /**
+   * @param clientUUID the client bound to the user.
+   * @param hasAuthKey whether the bound client still has an auth key.
+   * @param terminals expiry of the authorized terminals, keyed by terminal uuid.
+   */
+  public record UserAccess(Long userId, String clientUUID, boolean hasAuthKey, Long spaceLimit,
+                           Map<String, OffsetDateTime> terminals) {
+  }
+
+  @Inject
+  ApplicationProperties properties;
+  @Inject
+  MeterRegistry registry;
+  @Inject
+  UserInfoRepository userInfoRepository;
+  @Inject
+  AuthorizedTerminalRepository authorizedTerminalRepository;
+  @Inject
+  TransactionSynchronizationRegistry transactionRegistry;
+
+  private LoadingCache<Long, UserAccess> cache;
+
+  @PostConstruct
+  void init() {
+    cache = Caffeine.newBuilder()
+        .maximumSize(properties.gatewayCacheUserAccessMaxSize())
+        .expireAfterWrite(Duration.parse("PT" + properties.gatewayCacheUserAccessExpireAfterWrite()))
+        .recordStats()
+        .build(this::load);
+    CaffeineCacheMetrics.monitor(registry, cache, CACHE_NAME);
+  }
+
+  /**
+   * @return the access info of user, {@code null} if the user does not exist.
+   */
+  public UserAccess get(Long userId) {
+    return cache.get(userId);
+  }
+
+  public void invalidateUser(Long userId) {
+    cache.invalidate(userId);
+    if (transactionRegistry.getTransactionStatus() == Status.STATUS_ACTIVE) {
+      transactionRegistry.registerInterposedSynchronization(new Synchronization() {
+        @Override
+        public void beforeCompletion() {
+        }
+
+        @Override
+        public void afterCompletion(int status) {
+          cache.invalidate(userId);
+        }
+      });
+    }
+  }
+
+  public void invalidateAll() {
+    cache.invalidateAll();
+  }
+
+  private UserAccess load(Long userId) {
+    var user = userInfoRepository.findByUserId(userId);
+    if (user == null) {
+      return null;
+    }
+    var terminals = new HashMap<String, OffsetDateTime>();
+    for (AuthorizedTerminalEntity terminal : authorizedTerminalRepository.findByUserid(userId)) {
+      if (terminal.getUuid() != null) {
+        // keep the first one, the same terminal verifyClient used to find in the list
+        terminals.putIfAbsent(terminal.getUuid(), terminal.getExpireAt());
+      }
+    }
+    return new UserAccess(user.getId(), user.getClientUUID(), user.getAuthKey() != null, user.getSpaceLimit(),
+        Collections.unmodifiableMap(terminals));
+  }
+}
@@ -0,0 +1,136 @@
+/*
+ * Copyright (c) 2023 Institute of Software Chinese Academy of Sciences (ISCAS)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package space.ao.services.support.ip;
+
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Immutable in-heap index of an ip2region (1.x) db, safe to share between threads.
+ *
+ * <p>The db starts with the pointers of its first and last index blocks; each index block is
+ * {@code start ip, end ip, data pointer} (little endian, 4 bytes each, the high byte of the data pointer is the data
+ * length), and a data block is {@code city id} followed by the UTF-8 region. The start and end ips of the index
+ * blocks are copied into primitive arrays at load time, so a lookup is a binary search over an {@code int[]} with
+ * no I/O and no allocation but the region string.
+ */
+public final class IpRegionIndex {
+  private static final int INDEX_BLOCK_LENGTH = 12;
+
+  private final byte[] db;
+  // ips are unsigned, stored with the sign bit flipped so that signed comparison keeps their order
+  private final int[] starts;
+  private final int[] ends;
+  private final int[] dataPointers;
+
+  private IpRegionIndex(byte[] db, int[] starts, int[] ends, int[] dataPointers) {
+    this.db = db;
+    this.starts = starts;
+    this.ends = ends;
+    this.dataPointers = dataPointers;
+  }
+
+  /**
+   * @throws IllegalArgumentException if the content is not an ip2region db.
+   */
+  public static IpRegionIndex load(byte[] db) {
+    if (db.length < 8) {
+      throw new IllegalArgumentException("invalid ip2region db, length " + db.length);
+    }
+    var first = readInt(db, 0);
+    var last = readInt(db, 4);
+    if (first < 8 || last < first || last + INDEX_BLOCK_LENGTH > db.length
+        || (last - first) % INDEX_BLOCK_LENGTH != 0) {
+      throw new IllegalArgumentException("invalid ip2region db index [" + first + ", " + last + "]");
+    }
+    var count = (last - first) / INDEX_BLOCK_LENGTH + 1;
+    var starts = new int[count];
+    var ends = new int[count];
+    var dataPointers = new int[count];
+    for (int i = 0, p = first; i < count; i++, p += INDEX_BLOCK_LENGTH) {
+      starts[i] = readInt(db, p) ^ Integer.MIN_VALUE;
+      ends[i] = readInt(db, p + 4) ^ Integer.MIN_VALUE;
+      dataPointers[i] = readInt(db, p + 8);
+    }
+    return new IpRegionIndex(db, starts, ends, dataPointers);
+  }
+
+  public int size() {
+    return starts.length;
+  }
+
+  /**
+   * @param ip the ipv4 address as an unsigned int, see {@link #parseIpv4}.
+   * @return the region, like {@code 中国|0|上海|上海市|电信}, or null if the ip is not covered.
+   */
+  public String search(int ip) {
+    var key = ip ^ Integer.MIN_VALUE;
+    // branch-free lower bound: the last block whose start is <= key
+    int base = 0;
+    int n = starts.length;
+    while (n > 1) {
+      int half = n >>> 1;
+      base = starts[base + half] <= key ? base + half : base;
+      n -= half;
+    }
+    if (starts[base] > key || ends[base] < key) {
+      return null;
+    }
+    var pointer = dataPointers[base];
+    var length = (pointer >>> 24) & 0xFF;
+    var offset = pointer & 0x00FFFFFF;
+    if (length <= 4 || offset + length > db.length) {
+      return null;
+    }
+    return new String(db, offset + 4, length - 4, StandardCharsets.UTF_8);
+  }
+
+  /**
+   * Parses a dotted ipv4 address without regular expressions or allocation.
+   *
+   * @return the address as an unsigned int in a long, or -1 if it is not an ipv4 address.
+   */
+  public static long parseIpv4(String ip) {
+    if (ip == null || ip.isEmpty() || ip.length() > 15) {
+      return -1;
+    }
+    long address = 0;
+    int part = 0;
+    int digits = 0;
+    int parts = 0;
+    for (int i = 0; i <= ip.length(); i++) {
+      var c = i == ip.length() ? '.' : ip.charAt(i);
+      if (c == '.') {
+        if (digits == 0 || part > 255 || ++parts > 4) {
+          return -1;
+        }
+        address = (address << 8) | part;
+        part = 0;
+        digits = 0;
+      } else if (c >= '0' && c <= '9' && digits < 3) {
+        part = part * 10 + (c - '0');
+        digits++;
+      } else {
+        return -1;
+      }
+    }
+    return parts == 4 ? address : -1;
+  }
+
+  private static int readInt(byte[] b, int offset) {
+    return (b[offset] & 0xFF) | (b[offset + 1] & 0xFF) << 8 | (b[offset + 2] & 0xFF) << 16 | (b[offset + 3] & 0xFF) << 24;
+  }
+}
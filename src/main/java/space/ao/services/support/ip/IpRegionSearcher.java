@@ -0,0 +1,95 @@
+/*
+ * Copyright (c) 2023 Institute of Software Chinese Academy of Sciences (ISCAS)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package space.ao.services.support.ip;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import jakarta.annotation.PostConstruct;
+import jakarta.enterprise.context.ApplicationScoped;
+import jakarta.inject.Inject;
+import org.jboss.logging.Logger;
+import space.ao.services.config.ApplicationProperties;
+
+import java.io.IOException;
+
+/**
+ * Resolves the region of an ipv4 address from the ip2region db ({@code app.ip2region.location}).
+ *
+ * <p>The db is read once into an {@link IpRegionIndex} shared by all requests, and the regions of the recently
+ * searched ips are cached, the same clients logging in repeatedly.
+ */
+@ApplicationScoped
+public class IpRegionSearcher {
+  static final Logger LOG = Logger.getLogger("app.log");
+
+  @Inject
+  ApplicationProperties properties;
+
+  private volatile IpRegionIndex index;
+  private final Cache<Integer, String> recent = Caffeine.newBuilder().maximumSize(1024).build();
+
+  @PostConstruct
+  void init() {
+    try (var inputStream = IpRegionSearcher.class.getResourceAsStream(properties.ip2regionLocation())) {
+      if (inputStream == null) {
+        LOG.warnv("地址库文件不存在: {0}", properties.ip2regionLocation());
+        return;
+      }
+      index = IpRegionIndex.load(inputStream.readAllBytes());
+      LOG.infov("地址库加载完成, {0} 条记录", index.size());
+    } catch (IOException | IllegalArgumentException e) {
+      LOG.errorv(e, "地址库加载失败: {0}", properties.ip2regionLocation());
+    }
+  }
+
+  /**
+   * @return the region, like {@code 中国|0|上海|上海市|电信}, or null if the db is not available, the ip is not an
+   * ipv4 address or not covered by the db.
+   */
+  public String search(String ip) {
+    var current = index;
+    if (current == null) {
+      return null;
+    }
+    var address = IpRegionIndex.parseIpv4(ip);
+    if (address < 0) {
+      LOG.errorv("Error: Invalid ip address: {0}", ip);
+      return null;
+    }
+    var key = (int) address;
+    var region = recent.getIfPresent(key);
+    if (region == null) {
+      region = current.search(key);
+      if (region != null) {
+        recent.put(key, region);
+      }
+    }
+    return region;
+  }
+
+  /**
+   * Used by tests.
+   *
+   * @return the index used before.
+   */
+  IpRegionIndex use(IpRegionIndex index) {
+    var previous = this.index;
+    this.index = index;
+    recent.invalidateAll();
+    return previous;
+  }
+}
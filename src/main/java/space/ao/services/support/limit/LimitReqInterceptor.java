@@ -17,22 +17,22 @@
 package space.ao.services.support.limit;
 
 
+import io.quarkus.vertx.http.runtime.CurrentVertxRequest;
 import lombok.SneakyThrows;
 import org.jboss.logging.Logger;
 import space.ao.services.gateway.auth.qrcode.dto.EncryptAuthInfo;
-import space.ao.services.support.redis.RedisCommonStringService;
+import space.ao.services.support.InterceptorMetadata;
+import space.ao.services.support.StringUtils;
 import space.ao.services.support.security.SecurityUtils;
 import space.ao.services.account.support.service.ServiceError;
 import space.ao.services.account.support.service.ServiceOperationException;
+import space.ao.services.config.ApplicationProperties;
 import jakarta.annotation.Priority;
 import jakarta.inject.Inject;
 import jakarta.interceptor.AroundInvoke;
 import jakarta.interceptor.Interceptor;
 import jakarta.interceptor.InvocationContext;
-import jakarta.ws.rs.Path;
 
-import java.lang.reflect.Parameter;
-import java.util.Objects;
 /**
  *
  * 请求频率限制的注解
@@ -46,101 +46,109 @@ import java.util.Objects;
 public class LimitReqInterceptor {
     static final Logger LOG = Logger.getLogger("app.log");
 
+    // 未加密的 clientUUID, bkey 都是 UUID, 更长的是用盒子公钥加密过的
+    private static final int UUID_LENGTH = 36;
+
+    @Inject
+    RateLimiter rateLimiter;
     @Inject
-    RedisCommonStringService redisCommonStringService;
+    CurrentVertxRequest currentVertxRequest;
+    @Inject
+    InterceptorMetadata interceptorMetadata;
     @Inject
     SecurityUtils securityUtils;
 
+    @Inject
+    ApplicationProperties properties;
+
     @AroundInvoke
     Object limitReqInvocation(InvocationContext context) {
-        Object ret;
-
-        final LimitReq limitReq = context.getMethod().getAnnotation(LimitReq.class);
-
-        // 这里取类上面的 Path 注解中的路径.
-        String pathClass = null;
-        Path annotationClass = context.getMethod().getDeclaringClass().getAnnotation(Path.class);
-        if(annotationClass != null){
-            pathClass = annotationClass.value();
+        var metadata = interceptorMetadata.get(context.getMethod());
+        var target = metadata.limitTarget();
+        if (target != null) {
+            // 这里 key 的生成方式写在了拦截器内部，这样实现不太好。
+            // 更好的方式应该是外部传入，这样不同的模块使用本拦截器时可以自己根据业务需要来定义 key，
+            // 但是目前注解的形式使用本拦截器可能不支持以变量方式传入，故暂时就用 http 请求的完整的路径加上一个前缀来作为 key。
+            var params = context.getParameters();
+            acquire(target.keyPrefix() + subject(target, params, metadata.requestId(params, "")), target.max(),
+                    target);
         }
+        return doSneakyThrowsInvoke(context);
+    }
 
-        // 取函数上面的 Path  注解中的路径.
-        String pathMethod =null;
-        Path annotationMethod = context.getMethod().getAnnotation(Path.class);
-        if(annotationMethod != null){
-            pathMethod = annotationMethod.value();
+    private void acquire(String key, int max, LimitTarget target) {
+        var wait = rateLimiter.acquireStrict(key, max, target.window());
+        if (wait > 0) {
+            LOG.warnv("{0} over request limit, retry after {1}ms", key, String.valueOf(wait));
+            throw new ServiceOperationException(ServiceError.REQ_RATE_OVER_LIMIT);
         }
+    }
 
-        var clientUUid = "";
-        var requestId = "";
-        Parameter[] paramsName = context.getMethod().getParameters();
-        Object[] paramsValues = context.getParameters();
-        for (int idx=0;idx<paramsName.length;idx++) {
-            var parmName = paramsName[idx];
-            LOG.info("parmName: " + parmName.getName());
-            switch (parmName.getName().toLowerCase()) {
-                case "requestid" -> {
-                    requestId = (String) paramsValues[idx];
-                }
-                case "clientuuid" -> {
-                    clientUUid = (String) paramsValues[idx];
-                }
-                case "encryptauthinfo" -> {
-                    clientUUid = ((EncryptAuthInfo) paramsValues[idx]).getClientUUID();
-                    if (clientUUid.length() > 36) {
-                        clientUUid = securityUtils.getSecurityProvider().decryptUsingBoxPrivateKey(requestId, clientUUid);
-                    }
-                }
-                default -> {
-                }
-            }
+    /**
+     * 限流对象, 即被尝试的目标. 不能是调用方可以随意变换的值, 用盒子公钥加密的值每次的密文都不同, 所以要解密后使用:
+     * userId (网关根据 access token 填入) > clientUUID > EncryptAuthInfo 中的 bkey 或 spaceId > 客户端地址.
+     */
+    private String subject(LimitTarget target, Object[] params, String requestId) {
+        if (target.userIdIndex() >= 0 && params[target.userIdIndex()] != null) {
+            return "user-" + params[target.userIdIndex()];
         }
-
-        LOG.debugv("clientUUid", clientUUid);
-
-        if (Objects.nonNull(pathClass) && Objects.nonNull(pathMethod)) {
-            String fullPath = pathClass+pathMethod; // http restful 路径
-            // 这里 key 的生成方式写在了拦截器内部，这样实现不太好。
-            // 更好的方式应该是外部传入，这样不同的模块使用本拦截器时可以自己根据业务需要来定义 key，
-            // 但是目前注解的形式使用本拦截器可能不支持以变量方式传入，故暂时就用 http 请求的完整的路径加上一个前缀来作为 key。
-            String key = limitReq.keyPrefix()+fullPath+"-"+clientUUid;
-            // 存入 redis
-            LOG.infov("limit key is: {0}",key);
-            var reqTimes = increaseCounter(key, limitReq.interval());
-            LOG.warnv("request limit! reqTimes={0}", reqTimes);
-
-            if (reqTimes>limitReq.max()) {
-                LOG.warnv("fullPath over request limit! reqTimes={0}", reqTimes);
-                throw new ServiceOperationException(ServiceError.REQ_RATE_OVER_LIMIT);
+        if (target.clientUUIDIndex() >= 0 && params[target.clientUUIDIndex()] != null) {
+            return (String) params[target.clientUUIDIndex()];
+        }
+        if (target.encryptAuthInfoIndex() >= 0 && params[target.encryptAuthInfoIndex()] != null) {
+            var authInfo = (EncryptAuthInfo) params[target.encryptAuthInfoIndex()];
+            var bkey = authInfo.getBkey();
+            if (bkey != null && bkey.length() <= UUID_LENGTH && !StringUtils.isBlank(bkey)) {
+                return "bkey-" + bkey;
+            }
+            // 每次的密文都不同, 解密 (RSA) 前先按客户端地址限流, 随意变换密文的请求在解密前就被拒绝
+            var address = clientAddress();
+            if (!address.isEmpty()) {
+                acquire(target.keyPrefix() + "addr-" + address,
+                        target.max() * properties.gatewayLimitReqAddressFactor(), target);
+            }
+            bkey = decrypt(requestId, bkey);
+            if (!StringUtils.isBlank(bkey)) {
+                return "bkey-" + bkey;
+            }
+            var spaceId = decrypt(requestId, authInfo.getSpaceId());
+            if (!StringUtils.isBlank(spaceId)) {
+                return "space-" + spaceId;
             }
         }
+        return target.encryptAuthInfoIndex() >= 0 ? clientAddress() : "";
+    }
 
+    /**
+     * @return 解密后的值, 为空或者无法解密时返回 null.
+     */
+    private String decrypt(String requestId, String encrypted) {
+        if (StringUtils.isBlank(encrypted)) {
+            return null;
+        }
         try {
-            ret = doSneakyThrowsInvoke(context);
-        } catch (Exception rethrow) {
-            LOG.errorv(rethrow,"[Throw] method: {0}(), exception");
-            throw rethrow;
-        } finally {
-            LOG.warnv("request ", pathClass);
+            return securityUtils.getSecurityProvider().decryptUsingBoxPrivateKey(requestId, encrypted);
+        } catch (Exception e) {
+            LOG.warnv("requestId: {0}, decrypt limit subject failed: {1}", requestId, e.getMessage());
+            return null;
         }
-        LOG.warnv("request ", pathClass);
+    }
 
-        return ret;
+    private String clientAddress() {
+        var context = currentVertxRequest.getCurrent();
+        if (context == null) {
+            return "";
+        }
+        var request = context.request();
+        var xForwardedFor = request.getHeader("X-Forwarded-For");
+        if (xForwardedFor != null && !xForwardedFor.isBlank()) {
+            return xForwardedFor.split(",")[0].trim();
+        }
+        return request.remoteAddress() == null ? "" : request.remoteAddress().host();
     }
 
     @SneakyThrows
     Object doSneakyThrowsInvoke(InvocationContext context) {
         return context.proceed();
     }
-
-    public Integer increaseCounter(String key, int expiredSeconds){
-        int count = (int) redisCommonStringService.incr(key);
-        if (count==1) {
-            redisCommonStringService.expire(key, expiredSeconds);
-        }
-        return count;
-    }
-    public void resetCounter(String key){
-        redisCommonStringService.del(key);
-    }
-}
\ No newline at end of file
+}
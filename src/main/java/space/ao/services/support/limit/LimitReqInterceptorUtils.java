@@ -18,15 +18,14 @@ package space.ao.services.support.limit;
 
 import jakarta.inject.Singleton;
 import jakarta.inject.Inject;
-import space.ao.services.support.redis.RedisCommonStringService;
 
 @Singleton
 public class LimitReqInterceptorUtils {
   @Inject
-  RedisCommonStringService redisCommonStringService;
+  RateLimiter rateLimiter;
 
   public void resetCounter(String key){
-    redisCommonStringService.del(key);
+    rateLimiter.reset(key);
   }
 
 }
@@ -0,0 +1,52 @@
+/*
+ * Copyright (c) 2023 Institute of Software Chinese Academy of Sciences (ISCAS)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package space.ao.services.support.limit;
+
+import java.time.Duration;
+
+/**
+ * 方法上的限流配置, 和拦截器的其他元数据一起只解析一次.
+ *
+ * @param keyPrefix   {@code LimitReq.keyPrefix() + 完整路径 + "-"}
+ * @param userIdIndex userId 参数的位置, 没有时为 -1; clientUUID, encryptAuthInfo 参数同理
+ */
+public record LimitTarget(String keyPrefix, int max, Duration window, int userIdIndex, int clientUUIDIndex,
+                          int encryptAuthInfoIndex) {
+
+    /**
+     * @param path           类上面和函数上面的 Path 注解中的路径
+     * @param parameterNames 方法的参数名
+     * @return 限流配置, 没有 LimitReq 或 Path 注解时为 null, 不限流
+     */
+    public static LimitTarget of(LimitReq limitReq, String path, String[] parameterNames) {
+        if (limitReq == null || path == null) {
+            return null;
+        }
+        return new LimitTarget(limitReq.keyPrefix() + path + "-", limitReq.max(),
+                Duration.ofSeconds(limitReq.interval()), indexOf(parameterNames, "userid"),
+                indexOf(parameterNames, "clientuuid"), indexOf(parameterNames, "encryptauthinfo"));
+    }
+
+    private static int indexOf(String[] parameterNames, String name) {
+        for (int idx = 0; idx < parameterNames.length; idx++) {
+            if (parameterNames[idx].equalsIgnoreCase(name)) {
+                return idx;
+            }
+        }
+        return -1;
+    }
+}
@@ -0,0 +1,36 @@
+/*
+ * Copyright (c) 2023 Institute of Software Chinese Academy of Sciences (ISCAS)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package space.ao.services.support.limit;
+
+import space.ao.services.support.service.ServiceError;
+import space.ao.services.support.service.ServiceOperationException;
+
+/**
+ * Request rejected by a rate limit, mapped to {@code 429 Too Many Requests} with a {@code Retry-After} header.
+ */
+public class RateLimitedException extends ServiceOperationException {
+  private final long retryAfterSeconds;
+
+  public RateLimitedException(long retryAfterMillis, Object... parameters) {
+    super(ServiceError.TOO_MANY_REQUESTS, parameters);
+    this.retryAfterSeconds = Math.max(1, (retryAfterMillis + 999) / 1000);
+  }
+
+  public long getRetryAfterSeconds() {
+    return retryAfterSeconds;
+  }
+}
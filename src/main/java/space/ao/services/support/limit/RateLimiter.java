@@ -0,0 +1,231 @@
+/*
+ * Copyright (c) 2023 Institute of Software Chinese Academy of Sciences (ISCAS)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package space.ao.services.support.limit;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.quarkus.redis.datasource.RedisDataSource;
+import jakarta.annotation.PostConstruct;
+import jakarta.enterprise.context.ApplicationScoped;
+import jakarta.inject.Inject;
+import org.jboss.logging.Logger;
+
+import java.time.Duration;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Two tier request rate limiter.
+ *
+ * <p>The global limit is a sliding window log kept in a redis sorted set (one member per accepted request,
+ * scored by its time), checked and updated by a single lua script, so concurrent gateways never exceed
+ * the limit and the key always carries a TTL.
+ * In front of it every gateway keeps a local token bucket per key with the same rate: once the bucket is empty,
+ * or redis has rejected the key, further requests of the burst are rejected locally without a redis round-trip.
+ */
+@ApplicationScoped
+public class RateLimiter {
+  static final Logger LOG = Logger.getLogger("app.log");
+
+  // KEYS[1] = key, ARGV = now(ms), window(ms), max, member. Returns 0 if accepted,
+  // otherwise the milliseconds until the oldest request leaves the window.
+  private static final String SLIDING_WINDOW = """
+      if redis.call('TYPE', KEYS[1]).ok == 'string' then
+        redis.call('DEL', KEYS[1])
+      end
+      local now = tonumber(ARGV[1])
+      local window = tonumber(ARGV[2])
+      redis.call('ZREMRANGEBYSCORE', KEYS[1], '-inf', now - window)
+      if redis.call('ZCARD', KEYS[1]) >= tonumber(ARGV[3]) then
+        local oldest = redis.call('ZRANGE', KEYS[1], 0, 0, 'WITHSCORES')
+        return math.max(1, tonumber(oldest[2]) + window - now)
+      end
+      redis.call('ZADD', KEYS[1], now, ARGV[4])
+      redis.call('PEXPIRE', KEYS[1], window)
+      return 0
+      """;
+
+  @Inject
+  RedisDataSource redisDataSource;
+  @Inject
+  MeterRegistry registry;
+
+  private final Cache<String, TokenBucket> buckets = Caffeine.newBuilder()
+      .maximumSize(100_000)
+      .expireAfterAccess(Duration.ofHours(1))
+      .build();
+  private volatile String scriptSha;
+  private Counter localRejected;
+  private Counter redisRejected;
+
+  @PostConstruct
+  void init() {
+    localRejected = Counter.builder("limit.rejected").tag("tier", "local")
+        .description("requests rejected by the local token bucket")
+        .register(registry);
+    redisRejected = Counter.builder("limit.rejected").tag("tier", "redis")
+        .description("requests rejected by the redis sliding window")
+        .register(registry);
+  }
+
+  /**
+   * Takes one permit of the key. When redis is unavailable the local bucket alone limits this gateway.
+   *
+   * @param key redis key of the limit
+   * @param max requests allowed in the window
+   * @param window length of the sliding window
+   * @return 0 if the request is allowed, otherwise the milliseconds to wait before retrying.
+   */
+  public long acquire(String key, int max, Duration window) {
+    return acquire(key, max, window, true);
+  }
+
+  /**
+   * Same as {@link #acquire}, but the request is rejected when redis is unavailable. Used for the limits against
+   * brute force, where a per-gateway bucket would multiply the attempts by the number of gateways and restarts.
+   */
+  public long acquireStrict(String key, int max, Duration window) {
+    return acquire(key, max, window, false);
+  }
+
+  private long acquire(String key, int max, Duration window, boolean failOpen) {
+    var now = System.currentTimeMillis();
+    var bucket = bucket(key, max, window);
+    var wait = bucket.tryTake(now);
+    if (wait > 0) {
+      localRejected.increment();
+      return wait;
+    }
+    try {
+      wait = slidingWindow(key, now, window.toMillis(), max);
+    } catch (RuntimeException e) {
+      if (failOpen) {
+        // redis unavailable, the local bucket alone limits this gateway
+        LOG.warnv("rate limit of {0} checked locally only: {1}", key, e.getMessage());
+        return 0;
+      }
+      LOG.errorv("rate limit of {0} can not be checked, request rejected: {1}", key, e.getMessage());
+      return window.toMillis();
+    }
+    if (wait > 0) {
+      bucket.drain(now);
+      redisRejected.increment();
+    }
+    return wait;
+  }
+
+  /**
+   * Takes one permit of the key from the local token bucket only, the limit applies to each gateway.
+   *
+   * @return 0 if the request is allowed, otherwise the milliseconds to wait before retrying.
+   */
+  public long acquireLocal(String key, int max, Duration window) {
+    var wait = bucket(key, max, window).tryTake(System.currentTimeMillis());
+    if (wait > 0) {
+      localRejected.increment();
+    }
+    return wait;
+  }
+
+  /**
+   * Clears both tiers of the key.
+   */
+  public void reset(String key) {
+    buckets.invalidate(key);
+    redisDataSource.key().del(key);
+  }
+
+  private TokenBucket bucket(String key, int max, Duration window) {
+    var bucket = buckets.get(key, k -> new TokenBucket(max, window.toMillis()));
+    if (bucket.capacity != max || bucket.windowMillis != window.toMillis()) {
+      // the limit has been reconfigured (e.g. routes reloaded)
+      bucket = new TokenBucket(max, window.toMillis());
+      buckets.put(key, bucket);
+    }
+    return bucket;
+  }
+
+  private long slidingWindow(String key, long now, long windowMillis, int max) {
+    var args = new String[]{"1", key, String.valueOf(now), String.valueOf(windowMillis), String.valueOf(max),
+        now + "-" + Long.toHexString(ThreadLocalRandom.current().nextLong())};
+    var sha = scriptSha;
+    if (sha == null) {
+      sha = scriptSha = redisDataSource.execute("SCRIPT", "LOAD", SLIDING_WINDOW).toString();
+    }
+    try {
+      return redisDataSource.execute("EVALSHA", prepend(sha, args)).toLong();
+    } catch (RuntimeException e) {
+      if (e.getMessage() == null || !e.getMessage().contains("NOSCRIPT")) {
+        throw e;
+      }
+      // script cache flushed (redis restarted or failed over)
+      scriptSha = null;
+      return redisDataSource.execute("EVAL", prepend(SLIDING_WINDOW, args)).toLong();
+    }
+  }
+
+  private static String[] prepend(String first, String[] rest) {
+    var all = new String[rest.length + 1];
+    all[0] = first;
+    System.arraycopy(rest, 0, all, 1, rest.length);
+    return all;
+  }
+
+  /**
+   * Token bucket refilled continuously at {@code capacity / window}.
+   */
+  static final class TokenBucket {
+    private final int capacity;
+    private final long windowMillis;
+    private final double tokensPerMillis;
+    private double tokens;
+    private long refilledAt;
+
+    TokenBucket(int capacity, long windowMillis) {
+      this.capacity = capacity;
+      this.windowMillis = windowMillis;
+      this.tokensPerMillis = (double) capacity / Math.max(1, windowMillis);
+      this.tokens = capacity;
+      this.refilledAt = System.currentTimeMillis();
+    }
+
+    /**
+     * @return 0 if a token was taken, otherwise the milliseconds until the next token.
+     */
+    synchronized long tryTake(long now) {
+      refill(now);
+      if (tokens >= 1) {
+        tokens -= 1;
+        return 0;
+      }
+      return Math.max(1, (long) Math.ceil((1 - tokens) / tokensPerMillis));
+    }
+
+    synchronized void drain(long now) {
+      refill(now);
+      tokens = 0;
+    }
+
+    private void refill(long now) {
+      if (now > refilledAt) {
+        tokens = Math.min(capacity, tokens + (now - refilledAt) * tokensPerMillis);
+        refilledAt = now;
+      }
+    }
+  }
+}
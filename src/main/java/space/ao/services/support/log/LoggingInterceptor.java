@@ -26,7 +26,11 @@ import jakarta.inject.Inject;
 import jakarta.interceptor.AroundInvoke;
 import jakarta.interceptor.Interceptor;
 import jakarta.interceptor.InvocationContext;
+import java.lang.reflect.Method;
+import java.lang.reflect.Parameter;
 import java.util.Arrays;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 
 /**
  * Provides the logging joint point to intercept the invocation of method or class
@@ -48,8 +52,17 @@ public class LoggingInterceptor {
   @Inject
   OperationUtils utils;
 
+  @Inject
+  StructuredLog structuredLog;
+
+  // 每个方法的参数名只解析一次
+  private final Map<Method, String[]> parameterNames = new ConcurrentHashMap<>();
+
   @AroundInvoke
   Object logInvocation(InvocationContext context) {
+    if (structuredLog.enabled()) {
+      return logStructured(context);
+    }
     final Logged logged = context.getMethod().getAnnotation(Logged.class);
     final String mn = context.getMethod().getName();
 
@@ -87,6 +100,37 @@ public class LoggingInterceptor {
     return ret;
   }
 
+  /**
+   * Structured mode: arguments and result are rendered (capped and redacted) only when the record is written,
+   * and the records of successful invocations are sampled.
+   */
+  private Object logStructured(InvocationContext context) {
+    final Logged logged = context.getMethod().getAnnotation(Logged.class);
+    final String mn = context.getMethod().getName();
+    final boolean sampled = LOG.isInfoEnabled() && structuredLog.sampled();
+    if (sampled && logged.enablePreLog()) {
+      var names = parameterNames.computeIfAbsent(context.getMethod(),
+          method -> Arrays.stream(method.getParameters()).map(Parameter::getName).toArray(String[]::new));
+      LOG.infov("[Invoke] method={0} args={1}", mn, structuredLog.args(names, context.getParameters()));
+    }
+    final long started = System.nanoTime();
+    Object ret;
+    try {
+      ret = doSneakyThrowsInvoke(context);
+    } catch (Exception rethrow) {
+      LOG.errorv(rethrow, "[Throw] method={0} elapsed={1}ms", mn, elapsedMillis(started));
+      throw rethrow;
+    }
+    if (sampled && logged.enableAfterLog()) {
+      LOG.infov("[Return] method={0} result={1} elapsed={2}ms", mn, structuredLog.value(ret), elapsedMillis(started));
+    }
+    return ret;
+  }
+
+  private static String elapsedMillis(long started) {
+    return String.valueOf((System.nanoTime() - started) / 1_000_000);
+  }
+
   @SneakyThrows
   Object doSneakyThrowsInvoke(InvocationContext context) {
     return context.proceed();
@@ -0,0 +1,182 @@
+/*
+ * Copyright (c) 2023 Institute of Software Chinese Academy of Sciences (ISCAS)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package space.ao.services.support.log;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.enterprise.context.ApplicationScoped;
+import jakarta.inject.Inject;
+import space.ao.services.config.ApplicationProperties;
+
+import java.util.Arrays;
+import java.util.Locale;
+import java.util.TreeMap;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.function.Supplier;
+
+/**
+ * Rendering rules of the structured log mode ({@code app.gateway.log.structured}).
+ *
+ * <p>Values are wrapped in objects rendered by {@code toString()}, so nothing is formatted unless the log
+ * record is actually written. A rendered value is cut to {@code max-field-length} characters, and the values
+ * of the {@code redact} fields ({@code name=value} or {@code "name":"value"}) are masked.
+ */
+@ApplicationScoped
+public class StructuredLog {
+  static final String MASK = "***";
+
+  @Inject
+  ApplicationProperties properties;
+
+  private boolean enabled;
+  private int maxLength;
+  private double sampleRate;
+  private String[] redacted;
+
+  @PostConstruct
+  void init() {
+    enabled = properties.gatewayLogStructuredEnabled();
+    maxLength = properties.gatewayLogStructuredMaxFieldLength();
+    sampleRate = properties.gatewayLogStructuredSampleRate();
+    redacted = properties.gatewayLogStructuredRedact().stream()
+        .map(field -> field.trim().toLowerCase(Locale.ROOT))
+        .filter(field -> !field.isEmpty())
+        .toArray(String[]::new);
+  }
+
+  public boolean enabled() {
+    return enabled;
+  }
+
+  /**
+   * @return whether the informational records of this request or invocation are written.
+   */
+  public boolean sampled() {
+    return sampleRate >= 1 || ThreadLocalRandom.current().nextDouble() < sampleRate;
+  }
+
+  /**
+   * @return a value rendering {@code value} capped and redacted.
+   */
+  public Object value(Object value) {
+    return new Lazy(() -> render(value));
+  }
+
+  /**
+   * @return a value rendering the arguments as {@code {name=value, ...}}, capped and redacted per argument.
+   */
+  public Object args(String[] names, Object[] values) {
+    return new Lazy(() -> {
+      var sb = new StringBuilder().append('{');
+      for (int i = 0; i < values.length; i++) {
+        if (i > 0) {
+          sb.append(", ");
+        }
+        var name = i < names.length ? names[i] : "arg" + i;
+        sb.append(name).append('=').append(isRedacted(name) ? MASK : render(values[i]));
+      }
+      return sb.append('}').toString();
+    });
+  }
+
+  String render(Object value) {
+    if (value == null) {
+      return "null";
+    }
+    var text = value instanceof Object[] array ? Arrays.toString(array) : String.valueOf(value);
+    if (text.length() > maxLength) {
+      text = text.substring(0, maxLength) + "...(" + text.length() + " chars)";
+    }
+    return redact(text);
+  }
+
+  private boolean isRedacted(String name) {
+    var lower = name.toLowerCase(Locale.ROOT);
+    for (var field : redacted) {
+      if (lower.equals(field)) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  /**
+   * Masks {@code field=value} and {@code "field":value} of the redacted fields, the text is already capped.
+   */
+  private String redact(String text) {
+    var lower = text.toLowerCase(Locale.ROOT);
+    var masks = new TreeMap<Integer, Integer>();
+    for (var field : redacted) {
+      var from = 0;
+      int at;
+      while ((at = lower.indexOf(field, from)) >= 0) {
+        from = at + field.length();
+        var start = valueStart(lower, at, from);
+        if (start < 0) {
+          continue;
+        }
+        var end = start;
+        while (end < text.length() && ",)}]&\"".indexOf(text.charAt(end)) < 0) {
+          end++;
+        }
+        if (end > start) {
+          masks.merge(start, end, Math::max);
+        }
+        from = end;
+      }
+    }
+    if (masks.isEmpty()) {
+      return text;
+    }
+    var sb = new StringBuilder(text.length());
+    var copied = 0;
+    for (var mask : masks.entrySet()) {
+      if (mask.getKey() >= copied) {
+        sb.append(text, copied, mask.getKey()).append(MASK);
+        copied = mask.getValue();
+      } else if (mask.getValue() > copied) {
+        copied = mask.getValue();
+      }
+    }
+    return sb.append(text, copied, text.length()).toString();
+  }
+
+  // index of the value following the field name found at [at, end), or -1 if it is not a field name
+  private static int valueStart(String text, int at, int end) {
+    if (at > 0 && Character.isLetterOrDigit(text.charAt(at - 1))) {
+      return -1;
+    }
+    var i = end;
+    if (i < text.length() && text.charAt(i) == '"') {
+      i++;
+    }
+    if (i >= text.length() || (text.charAt(i) != '=' && text.charAt(i) != ':')) {
+      return -1;
+    }
+    i++;
+    while (i < text.length() && (text.charAt(i) == ' ' || text.charAt(i) == '"')) {
+      i++;
+    }
+    return i;
+  }
+
+  private record Lazy(Supplier<String> supplier) {
+    @Override
+    public String toString() {
+      return supplier.get();
+    }
+  }
+}
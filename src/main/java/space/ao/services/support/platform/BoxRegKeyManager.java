@@ -0,0 +1,258 @@
+/*
+ * Copyright (c) 2023 Institute of Software Chinese Academy of Sciences (ISCAS)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package space.ao.services.support.platform;
+
+import io.quarkus.runtime.ShutdownEvent;
+import jakarta.annotation.PostConstruct;
+import jakarta.enterprise.context.ApplicationScoped;
+import jakarta.enterprise.event.Observes;
+import jakarta.inject.Inject;
+import org.jboss.logging.Logger;
+import space.ao.services.config.ApplicationProperties;
+import space.ao.services.support.platform.info.token.TokenCreateResults;
+import space.ao.services.support.platform.info.token.TokenResult;
+import space.ao.services.support.service.ServiceError;
+import space.ao.services.support.service.ServiceOperationException;
+
+import java.time.Duration;
+import java.time.OffsetDateTime;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
+
+/**
+ * Keeps the Box-Reg-Key of each platform service.
+ *
+ * <p>A key is created on first use, concurrent requests missing the key wait for the same creation. Afterwards the
+ * key is refreshed in the background {@code app.ssplatform.box-reg-key.refresh-ahead} before it expires, so the
+ * requests keep using the current key; a failed refresh is retried with a jittered backoff while the current key
+ * is still valid. The keys of a creation that was in progress when {@link #invalidate} was called are not kept.
+ */
+@ApplicationScoped
+public class BoxRegKeyManager {
+  static final Logger LOG = Logger.getLogger("app.log");
+
+  // a key expiring sooner is not used anymore
+  private static final Duration MIN_VALIDITY = Duration.ofSeconds(30);
+  private static final long RETRY_DELAY_MILLIS = 1000;
+
+  @Inject
+  ApplicationProperties properties;
+
+  private final ConcurrentMap<String, TokenResult> tokens = new ConcurrentHashMap<>();
+  private final ConcurrentMap<String, Function<String, TokenCreateResults>> creators = new ConcurrentHashMap<>();
+  private final ConcurrentMap<String, CompletableFuture<TokenResult>> creating = new ConcurrentHashMap<>();
+  private final ConcurrentMap<String, ScheduledFuture<?>> refreshes = new ConcurrentHashMap<>();
+  // bumped by invalidate, also used as the lock between storing created keys and invalidating them
+  private final AtomicLong generation = new AtomicLong();
+  private ScheduledExecutorService scheduler;
+  private Duration refreshAhead;
+  private Duration timeout;
+  private long retryMaxMillis;
+
+  @PostConstruct
+  void init() {
+    var index = new AtomicInteger();
+    scheduler = Executors.newScheduledThreadPool(2, r -> {
+      var thread = new Thread(r, "box-reg-key-" + index.incrementAndGet());
+      thread.setDaemon(true);
+      return thread;
+    });
+    refreshAhead = Duration.parse("PT" + properties.ssplatformBoxRegKeyRefreshAhead());
+    timeout = Duration.parse("PT" + properties.ssplatformBoxRegKeyTimeout());
+    retryMaxMillis = Duration.parse("PT" + properties.ssplatformBoxRegKeyRetryMax()).toMillis();
+  }
+
+  void stop(@Observes ShutdownEvent event) {
+    scheduler.shutdownNow();
+  }
+
+  /**
+   * @param creator requests the keys from the platform, called with a request id.
+   * @return the current key of the service, waiting for its creation only if there is no valid key.
+   */
+  public String get(String requestId, String serviceId, Function<String, TokenCreateResults> creator) {
+    creators.putIfAbsent(serviceId, creator);
+    var token = tokens.get(serviceId);
+    var now = OffsetDateTime.now();
+    if (token != null && token.expiresAt().isAfter(now.plus(MIN_VALIDITY))) {
+      if (!token.expiresAt().isAfter(now.plus(refreshAhead))) {
+        refreshNow(serviceId);
+      }
+      return token.boxRegKey();
+    }
+    try {
+      return create(requestId, serviceId).get(timeout.toMillis(), TimeUnit.MILLISECONDS).boxRegKey();
+    } catch (ExecutionException e) {
+      if (e.getCause() instanceof RuntimeException cause) {
+        throw cause;
+      }
+      throw new ServiceOperationException(e.getCause(), ServiceError.UNKNOWN);
+    } catch (TimeoutException e) {
+      LOG.errorv("create boxRegKey of {0} timed out, request-id: {1}", serviceId, requestId);
+      throw new ServiceOperationException(e, ServiceError.UNKNOWN);
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new ServiceOperationException(e, ServiceError.UNKNOWN);
+    }
+  }
+
+  public TokenResult getTokenResult(String serviceId) {
+    return tokens.get(serviceId);
+  }
+
+  /**
+   * Caches keys created outside of the manager.
+   */
+  public void put(TokenResult token) {
+    tokens.put(token.serviceId(), token);
+  }
+
+  /**
+   * Drops the key of the service, e.g. when the platform changed.
+   */
+  public void invalidate(String serviceId) {
+    synchronized (generation) {
+      generation.incrementAndGet();
+      tokens.remove(serviceId);
+      // the next request starts a new creation instead of waiting for the one in progress
+      creating.remove(serviceId);
+      var refresh = refreshes.remove(serviceId);
+      if (refresh != null) {
+        refresh.cancel(false);
+      }
+    }
+  }
+
+  /**
+   * @return the creation in progress of the service, if any. Used by tests.
+   */
+  CompletableFuture<TokenResult> pending(String serviceId) {
+    return creating.get(serviceId);
+  }
+
+  // single flight: the callers of the same service share the creation in progress
+  private CompletableFuture<TokenResult> create(String requestId, String serviceId) {
+    var future = new CompletableFuture<TokenResult>();
+    var existing = creating.putIfAbsent(serviceId, future);
+    if (existing != null) {
+      return existing;
+    }
+    var started = generation.get();
+    try {
+      scheduler.execute(() -> {
+        try {
+          future.complete(createToken(requestId, serviceId, started));
+        } catch (Throwable t) {
+          future.completeExceptionally(t);
+        } finally {
+          creating.remove(serviceId, future);
+        }
+      });
+    } catch (RuntimeException e) {
+      creating.remove(serviceId, future);
+      future.completeExceptionally(e);
+    }
+    return future;
+  }
+
+  private TokenResult createToken(String requestId, String serviceId, long started) {
+    var results = creators.get(serviceId).apply(requestId);
+    if (results == null || results.tokenResults() == null || results.tokenResults().isEmpty()) {
+      throw new ServiceOperationException(ServiceError.UNKNOWN);
+    }
+    TokenResult token = null;
+    for (var result : results.tokenResults()) {
+      if (token == null || serviceId.equals(result.serviceId())) {
+        token = result;
+      }
+    }
+    synchronized (generation) {
+      if (generation.get() != started) {
+        LOG.infov("boxRegKey of {0} created before invalidation is not kept, request-id: {1}", serviceId, requestId);
+        return token;
+      }
+      for (var result : results.tokenResults()) {
+        LOG.infov("service id {0} create new boxRegKey, request-id: {1}", result.serviceId(), requestId);
+        tokens.put(result.serviceId(), result);
+      }
+      tokens.put(serviceId, token);
+      schedule(serviceId, refreshDelay(token), 0);
+    }
+    return token;
+  }
+
+  private void refreshNow(String serviceId) {
+    var refresh = refreshes.get(serviceId);
+    if ((refresh == null || refresh.isDone()) && !creating.containsKey(serviceId)) {
+      schedule(serviceId, 0, 0);
+    }
+  }
+
+  private void schedule(String serviceId, long delayMillis, int attempt) {
+    var task = scheduler.schedule(() -> refresh(serviceId, attempt), delayMillis, TimeUnit.MILLISECONDS);
+    var previous = refreshes.put(serviceId, task);
+    if (previous != null && previous != task) {
+      previous.cancel(false);
+    }
+  }
+
+  private void refresh(String serviceId, int attempt) {
+    var requestId = UUID.randomUUID().toString();
+    create(requestId, serviceId).whenComplete((token, t) -> {
+      if (t == null) {
+        return;
+      }
+      var current = tokens.get(serviceId);
+      if (current == null || !current.expiresAt().isAfter(OffsetDateTime.now())) {
+        // expired, the next request creates the key again
+        LOG.errorv("refresh boxRegKey of {0} failed, request-id: {1}, error: {2}", serviceId, requestId, t.getMessage());
+        return;
+      }
+      var delay = retryDelay(attempt);
+      LOG.warnv("refresh boxRegKey of {0} failed, retry in {1} ms, request-id: {2}, error: {3}",
+          serviceId, String.valueOf(delay), requestId, t.getMessage());
+      schedule(serviceId, delay, attempt + 1);
+    });
+  }
+
+  // refresh-ahead before the expiry, minus up to a tenth of it so that the services do not refresh together
+  private long refreshDelay(TokenResult token) {
+    var ahead = refreshAhead.toMillis();
+    var jitter = ThreadLocalRandom.current().nextLong(ahead / 10 + 1);
+    var remaining = Duration.between(OffsetDateTime.now(), token.expiresAt()).toMillis();
+    var delay = remaining - ahead - jitter;
+    // short-lived keys are refreshed halfway
+    return delay > 0 ? delay : Math.max(0, remaining / 2);
+  }
+
+  // exponential backoff, jittered in [delay / 2, delay]
+  private long retryDelay(int attempt) {
+    var delay = Math.min(retryMaxMillis, RETRY_DELAY_MILLIS << Math.min(attempt, 20));
+    return delay / 2 + ThreadLocalRandom.current().nextLong(delay / 2 + 1);
+  }
+}
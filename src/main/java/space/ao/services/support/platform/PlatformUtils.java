@@ -19,8 +19,6 @@ package space.ao.services.support.platform;
 import java.nio.charset.StandardCharsets;
 import java.time.OffsetDateTime;
 import java.util.*;
-import java.util.concurrent.ConcurrentHashMap;
-import java.util.concurrent.ConcurrentMap;
 import java.util.concurrent.TimeUnit;
 import jakarta.annotation.PostConstruct;
 import jakarta.enterprise.context.ApplicationScoped;
@@ -30,6 +28,8 @@ import com.google.common.base.Stopwatch;
 import lombok.Getter;
 import org.eclipse.microprofile.rest.client.inject.RestClient;
 import org.jboss.logging.Logger;
+import space.ao.services.support.platform.check.PlatformHealthMonitor;
+import space.ao.services.support.platform.check.PlatformTypeEnum;
 import space.ao.services.support.platform.info.ServiceEnum;
 import space.ao.services.support.platform.info.ability.PlatformApis;
 import space.ao.services.support.platform.info.token.TokenCreateResults;
@@ -64,45 +64,39 @@ public class PlatformUtils {
   SecurityUtils securityUtils;
   @Getter
   private PlatformApis platformApis;
-  static final ConcurrentMap<String, TokenResult> boxRegKeyCache = new ConcurrentHashMap<>();
+  @Inject
+  BoxRegKeyManager boxRegKeyManager;
+  @Inject
+  PlatformHealthMonitor platformHealthMonitor;
 
   public void setRegistryServiceRestClient(PlatformRegistryServiceRestClient platformRegistryServiceRestClient){
     this.platformRegistryServiceRestClient = platformRegistryServiceRestClient;
+    boxRegKeyManager.invalidate(ServiceEnum.REGISTRY.getServiceId());
+    platformHealthMonitor.probeAsync(PlatformTypeEnum.SPACE);
   }
   public String createRegistryBoxRegKey(String requestId){
-    var token = boxRegKeyCache.get(ServiceEnum.REGISTRY.getServiceId());
-    if (Objects.nonNull(token) && token.expiresAt().isAfter(OffsetDateTime.now().plusMinutes(5))){
-      return token.boxRegKey();
-    }
-    var serviceIds = new ArrayList<String>();
-    serviceIds.add(ServiceEnum.REGISTRY.getServiceId());
-    return createBoxRegKey(requestId, serviceIds).tokenResults().get(0).boxRegKey();
+    return boxRegKeyManager.get(requestId, ServiceEnum.REGISTRY.getServiceId(),
+            id -> createBoxRegKey(id, List.of(ServiceEnum.REGISTRY.getServiceId())));
   }
 
 
   @Logged
   public String createOpstageBoxRegKey(String requestId){
-    var token = boxRegKeyCache.get(ServiceEnum.OPSTAGE.getServiceId());
-    if (Objects.nonNull(token) && token.expiresAt().isAfter(OffsetDateTime.now().plusMinutes(5))){
-      return token.boxRegKey();
-    }
-    var serviceIds = new ArrayList<String>();
-    serviceIds.add(ServiceEnum.OPSTAGE.getServiceId());
-    TokenCreateResults tokenResults = null;
     try {
-      var sign = securityUtils.getSecurityProvider().signUsingBoxPrivateKey(requestId,
-              Base64.getEncoder().encodeToString(
-                      utils.objectToJson(TokenVerifySignInfo.of(properties.boxUuid(), serviceIds))
-                              .getBytes(StandardCharsets.UTF_8)));
-
-      tokenResults= platformOpstageBoxRegKeyServiceRestClient.createTokens(TokenInfo.of(properties.boxUuid(), serviceIds, sign), requestId);
-      for (var opstageToken : tokenResults.tokenResults()) {
-        boxRegKeyCache.put(opstageToken.serviceId(), opstageToken);
-      }
+      return boxRegKeyManager.get(requestId, ServiceEnum.OPSTAGE.getServiceId(), this::createOpstageTokens);
     } catch (Exception e){
       LOG.errorv("createOpstageBoxRegKey error: {0}", e.getMessage());
     }
-    return tokenResults == null ? null : tokenResults.tokenResults().get(0).boxRegKey();
+    return null;
+  }
+
+  private TokenCreateResults createOpstageTokens(String requestId){
+    var serviceIds = List.of(ServiceEnum.OPSTAGE.getServiceId());
+    var sign = securityUtils.getSecurityProvider().signUsingBoxPrivateKey(requestId,
+            Base64.getEncoder().encodeToString(
+                    utils.objectToJson(TokenVerifySignInfo.of(properties.boxUuid(), serviceIds))
+                            .getBytes(StandardCharsets.UTF_8)));
+    return platformOpstageBoxRegKeyServiceRestClient.createTokens(TokenInfo.of(properties.boxUuid(), serviceIds, sign), requestId);
   }
 
   /**
@@ -118,40 +112,40 @@ public class PlatformUtils {
                             .getBytes(StandardCharsets.UTF_8)));
     var tokenResults= platformRegistryServiceRestClient.createTokens(TokenInfo.of(properties.boxUuid(), serviceIds, sign), requestId);
     for (var token : tokenResults.tokenResults()) {
-      LOG.infov("service id {0} create new boxRegKey, {1}", token.serviceId(), token.boxRegKey());
-      boxRegKeyCache.put(token.serviceId(), token);
+      boxRegKeyManager.put(token);
     }
     return tokenResults;
   }
 
   public TokenResult getTokenResult(String serviceId){
-    return boxRegKeyCache.get(serviceId);
+    return boxRegKeyManager.getTokenResult(serviceId);
   }
   /**
-   * 查询空间服务平台是否可用
+   * 查询空间服务平台是否可用, 读取后台检测的结果
    */
   public boolean isRegistryPlatformAvailable(String requestId) {
-    try {
-      platformRegistryServiceRestClient.status(requestId);
-    } catch (Exception e){
-      LOG.errorv("Registry Service Platform is not available - request-id: {0}, error: {1}, utils.getEnableInternetAccess(): {2}",
-              requestId, e.getMessage(), utils.getEnableInternetAccess());
-      return false;
-    }
-    return true;
+    return platformHealthMonitor.isAvailable(PlatformTypeEnum.SPACE);
   }
 
   /**
-   * 查询产品运营平台是否可用
+   * 查询产品运营平台是否可用, 读取后台检测的结果
    */
   public boolean isOpstagePlatformAvailable(String requestId) {
-    try {
-      platformOpstageServiceRestClient.status(requestId);
-      return true;
-    } catch (Exception e){
-      LOG.warnv("Opstage Platform V2 is not available - request-id: {0}, error: {1}", requestId, e.getMessage());
-    }
-    return false;
+    return platformHealthMonitor.isAvailable(PlatformTypeEnum.PRODUCT);
+  }
+
+  /**
+   * 检测空间服务平台, 不可用时抛出异常
+   */
+  public void probeRegistryPlatform(String requestId) {
+    platformRegistryServiceRestClient.status(requestId);
+  }
+
+  /**
+   * 检测产品运营平台, 不可用时抛出异常
+   */
+  public void probeOpstagePlatform(String requestId) {
+    platformOpstageServiceRestClient.status(requestId);
   }
 
   /**
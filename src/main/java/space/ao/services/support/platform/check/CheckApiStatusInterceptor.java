@@ -39,9 +39,8 @@ import jakarta.interceptor.Interceptor;
 import jakarta.interceptor.InvocationContext;
 import lombok.SneakyThrows;
 import org.jboss.logging.Logger;
+import space.ao.services.support.InterceptorMetadata;
 import space.ao.services.support.platform.PlatformUtils;
-import java.lang.reflect.Parameter;
-import java.util.Arrays;
 import java.util.Objects;
 
 @CheckApiStatus
@@ -52,18 +51,13 @@ public class CheckApiStatusInterceptor {
   static final Logger LOG = Logger.getLogger("app.log");
   @Inject
   PlatformUtils platformUtils;
+  @Inject
+  InterceptorMetadata interceptorMetadata;
   @AroundInvoke
   Object checkApiStatus(InvocationContext context) {
-    final CheckApiStatus checkApiStatus = context.getMethod().getAnnotation(CheckApiStatus.class);
-
-    Parameter[] paramsName = context.getMethod().getParameters();
-    Object[] paramsValues = context.getParameters();
-
-    String requestId = Arrays.stream(paramsName)
-            .filter(param -> "Request-Id".equals(param.getName()))
-            .findFirst()
-            .map(param -> paramsValues[Arrays.asList(paramsName).indexOf(param)].toString())
-            .orElse("CheckPlatformStatus");
+    var metadata = interceptorMetadata.get(context.getMethod());
+    final CheckApiStatus checkApiStatus = metadata.binding(CheckApiStatus.class);
+    String requestId = metadata.requestId(context.getParameters(), "CheckPlatformStatus");
     if(Objects.isNull(platformUtils.getPlatformApis())){
       platformUtils.queryPlatformAbility();
     }
@@ -41,13 +41,12 @@ import lombok.SneakyThrows;
 import org.jboss.logging.Logger;
 import space.ao.services.support.response.ResponseBase;
 import space.ao.services.support.response.ResponseBaseEnum;
+import space.ao.services.support.InterceptorMetadata;
 import space.ao.services.support.OperationUtils;
 import space.ao.services.support.platform.PlatformUtils;
 import space.ao.services.support.service.ServiceError;
 import space.ao.services.support.service.ServiceOperationException;
 
-import java.lang.reflect.Parameter;
-import java.util.Arrays;
 
 /**
  * @author zhichuang
@@ -64,19 +63,13 @@ public class CheckPlatformStatusInterceptor {
   PlatformUtils platformUtils;
   @Inject
   OperationUtils operationUtils;
+  @Inject
+  InterceptorMetadata interceptorMetadata;
   @AroundInvoke
   Object checkPlatformStatus(InvocationContext context) {
-    final CheckPlatformStatus checkPlatformStatus = context.getMethod().getAnnotation(CheckPlatformStatus.class);
-
-    Parameter[] paramsName = context.getMethod().getParameters();
-    Object[] paramsValues = context.getParameters();
-
-    String requestId = Arrays.stream(paramsName)
-            .filter(param -> "RequestId".equalsIgnoreCase(param.getName()))
-            .findFirst()
-            .map(param -> paramsValues[Arrays.asList(paramsName).indexOf(param)].toString())
-            .orElse("CheckPlatformStatus");
-
+    var metadata = interceptorMetadata.get(context.getMethod());
+    final CheckPlatformStatus checkPlatformStatus = metadata.binding(CheckPlatformStatus.class);
+    String requestId = metadata.requestId(context.getParameters(), "CheckPlatformStatus");
 
     switch (checkPlatformStatus.type()) {
       case SPACE -> {
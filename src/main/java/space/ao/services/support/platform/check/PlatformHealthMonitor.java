@@ -0,0 +1,202 @@
+/*
+ * Copyright (c) 2023 Institute of Software Chinese Academy of Sciences (ISCAS)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package space.ao.services.support.platform.check;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.quarkus.runtime.ShutdownEvent;
+import io.quarkus.runtime.Startup;
+import jakarta.annotation.PostConstruct;
+import jakarta.enterprise.context.ApplicationScoped;
+import jakarta.enterprise.event.Observes;
+import jakarta.inject.Inject;
+import org.jboss.logging.Logger;
+import space.ao.services.config.ApplicationProperties;
+import space.ao.services.support.platform.PlatformUtils;
+
+import java.time.Duration;
+import java.util.EnumMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Availability of the platforms, probed in the background with their {@code status} api so that the requests read
+ * the last known state instead of calling the platform.
+ *
+ * <p>Each platform has a circuit breaker: it is {@link State#CLOSED} (available) until
+ * {@code app.platform.health.failure-threshold} probes in a row failed, then {@link State#OPEN} (not available).
+ * An open platform is probed every {@code open-probe-interval} ({@link State#HALF_OPEN} during the probe) and closed
+ * again as soon as a probe succeeds; a closed platform is probed every {@code probe-interval}.
+ *
+ * <p>A platform starts {@link State#UNKNOWN} (not available) until the first probe, started at startup, answers;
+ * a single failure then opens it. The requests never wait for a probe. Whether internet access is enabled is left to
+ * the callers.
+ */
+@ApplicationScoped
+@Startup
+public class PlatformHealthMonitor {
+  static final Logger LOG = Logger.getLogger("app.log");
+
+  public enum State {
+    CLOSED, HALF_OPEN, OPEN, UNKNOWN
+  }
+
+  @Inject
+  ApplicationProperties properties;
+  @Inject
+  PlatformUtils platformUtils;
+  @Inject
+  MeterRegistry registry;
+
+  private final Map<PlatformTypeEnum, Breaker> breakers = new EnumMap<>(PlatformTypeEnum.class);
+  private ScheduledExecutorService scheduler;
+  private long probeIntervalMillis;
+  private long openProbeIntervalMillis;
+  private int failureThreshold;
+
+  @PostConstruct
+  void init() {
+    probeIntervalMillis = Duration.parse("PT" + properties.platformHealthProbeInterval()).toMillis();
+    openProbeIntervalMillis = Duration.parse("PT" + properties.platformHealthOpenProbeInterval()).toMillis();
+    failureThreshold = Math.max(1, properties.platformHealthFailureThreshold());
+    var index = new AtomicInteger();
+    scheduler = Executors.newScheduledThreadPool(PlatformTypeEnum.values().length, r -> {
+      var thread = new Thread(r, "platform-health-" + index.incrementAndGet());
+      thread.setDaemon(true);
+      return thread;
+    });
+    for (var type : PlatformTypeEnum.values()) {
+      var breaker = new Breaker(type);
+      breakers.put(type, breaker);
+      Gauge.builder("platform.health.state", breaker, b -> b.state.ordinal())
+          .description("platform circuit breaker state, 0 closed, 1 half open, 2 open, 3 unknown")
+          .tag("platform", breaker.name)
+          .register(registry);
+      scheduler.execute(() -> probeAndSchedule(breaker));
+    }
+  }
+
+  void stop(@Observes ShutdownEvent event) {
+    scheduler.shutdownNow();
+  }
+
+  public boolean isAvailable(PlatformTypeEnum type) {
+    return breakers.get(type).state == State.CLOSED;
+  }
+
+  public State getState(PlatformTypeEnum type) {
+    return breakers.get(type).state;
+  }
+
+  /**
+   * Probes the platform now, e.g. after its address changed.
+   *
+   * @return whether the platform is available.
+   */
+  public boolean probe(PlatformTypeEnum type) {
+    var breaker = breakers.get(type);
+    synchronized (breaker) {
+      probe(breaker, UUID.randomUUID().toString());
+    }
+    return breaker.state == State.CLOSED;
+  }
+
+  /**
+   * Probes the platform in the background, e.g. after its address changed, so that the caller does not wait for a
+   * probe in progress.
+   */
+  public void probeAsync(PlatformTypeEnum type) {
+    var breaker = breakers.get(type);
+    breaker.reprobe = CompletableFuture.supplyAsync(() -> probe(type), scheduler);
+  }
+
+  /**
+   * Used by tests.
+   */
+  boolean awaitProbe(PlatformTypeEnum type) {
+    var reprobe = breakers.get(type).reprobe;
+    return reprobe == null || reprobe.join();
+  }
+
+  private void probeAndSchedule(Breaker breaker) {
+    try {
+      synchronized (breaker) {
+        probe(breaker, UUID.randomUUID().toString());
+      }
+    } finally {
+      if (!scheduler.isShutdown()) {
+        scheduler.schedule(() -> probeAndSchedule(breaker),
+            breaker.state == State.OPEN ? openProbeIntervalMillis : probeIntervalMillis, TimeUnit.MILLISECONDS);
+      }
+    }
+  }
+
+  private void probe(Breaker breaker, String requestId) {
+    if (breaker.state == State.OPEN) {
+      transition(breaker, State.HALF_OPEN, null);
+    }
+    try {
+      switch (breaker.type) {
+        case SPACE -> platformUtils.probeRegistryPlatform(requestId);
+        case PRODUCT -> platformUtils.probeOpstagePlatform(requestId);
+      }
+      breaker.failures = 0;
+      transition(breaker, State.CLOSED, null);
+    } catch (Exception e) {
+      breaker.failures++;
+      if (breaker.state == State.HALF_OPEN || breaker.state == State.UNKNOWN || breaker.failures >= failureThreshold) {
+        transition(breaker, State.OPEN, e);
+      } else {
+        LOG.warnv("{0} platform probe failed ({1}/{2}) - request-id: {3}, error: {4}", breaker.name,
+            breaker.failures, failureThreshold, requestId, e.getMessage());
+      }
+    }
+  }
+
+  private void transition(Breaker breaker, State to, Exception e) {
+    var from = breaker.state;
+    if (from == to) {
+      return;
+    }
+    breaker.state = to;
+    registry.counter("platform.health.transitions", "platform", breaker.name, "from", from.name(),
+        "to", to.name()).increment();
+    if (to == State.OPEN && from != State.HALF_OPEN) {
+      LOG.errorv("{0} platform is not available - error: {1}", breaker.name, e == null ? null : e.getMessage());
+    } else if (to == State.CLOSED && from != State.UNKNOWN) {
+      LOG.infov("{0} platform is available again", breaker.name);
+    }
+  }
+
+  private static final class Breaker {
+    final PlatformTypeEnum type;
+    final String name;
+    volatile State state = State.UNKNOWN;
+    volatile CompletableFuture<Boolean> reprobe;
+    int failures;
+
+    Breaker(PlatformTypeEnum type) {
+      this.type = type;
+      this.name = type.name().toLowerCase(Locale.ROOT);
+    }
+  }
+}
@@ -17,6 +17,7 @@
 package space.ao.services.support.redis;
 
 import space.ao.services.support.OperationUtils;
+import space.ao.services.support.cache.AccessTokenCache;
 import space.ao.services.support.model.AccessToken;
 
 import jakarta.enterprise.context.ApplicationScoped;
@@ -43,6 +44,8 @@ public class RedisTokenService {
 
   @Inject
   RedisCommonStringService redisCommonStringService;
+  @Inject
+  AccessTokenCache accessTokenCache;
   /**
    * set token to redis
    * @param token TOKEN key TOKEN-AOID-md5(secret)
@@ -62,6 +65,11 @@ public class RedisTokenService {
   public void deleteByAoid(String aoid) {
     var keys = redisCommonStringService.keys(KEY_PREFIX + aoid + "*");
     for (var key: keys) {
+      var value = redisCommonStringService.get(key);
+      if (value != null) {
+        var info = utils.jsonToObject(value, UserIdAndClientUUID.class);
+        accessTokenCache.invalidateClient(info.getUserId(), info.getClientUUID());
+      }
       redisCommonStringService.del(key);
     }
   }
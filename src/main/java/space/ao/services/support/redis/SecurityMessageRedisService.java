@@ -67,4 +67,12 @@ public class SecurityMessageRedisService {
   public void ltrim(String k, long start, long stop) {
     listCommands.ltrim(k, start, stop);
   }
+
+  /**
+   * Removes and returns up to count elements from the head of the list, atomically.
+   */
+  public List<String> lpop(String k, int count) {
+    var values = listCommands.lpop(k, count);
+    return values == null ? List.of() : values;
+  }
 }
@@ -16,10 +16,14 @@
 
 package space.ao.services.support.redis.message;
 
+import io.quarkus.redis.datasource.ReactiveRedisDataSource;
 import io.quarkus.redis.datasource.RedisDataSource;
 import io.quarkus.redis.datasource.stream.StreamCommands;
 import io.quarkus.redis.datasource.stream.StreamMessage;
+import io.quarkus.redis.datasource.stream.XGroupCreateArgs;
 import io.quarkus.redis.datasource.stream.XReadArgs;
+import io.quarkus.redis.datasource.stream.XReadGroupArgs;
+import io.smallrye.mutiny.Uni;
 import jakarta.enterprise.context.ApplicationScoped;
 import org.apache.commons.codec.binary.Base64;
 import org.jboss.logging.Logger;
@@ -29,6 +33,7 @@ import java.time.Duration;
 import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 
 @ApplicationScoped
 public class RedisMessageService {
@@ -36,13 +41,34 @@ public class RedisMessageService {
   static final Logger LOG = Logger.getLogger("redis_message.log");
 
   private final StreamCommands<String, String, String> streamCommands;
+  private final ReactiveRedisDataSource reactiveDataSource;
 
-  public RedisMessageService(RedisDataSource ds) {
+  public RedisMessageService(RedisDataSource ds, ReactiveRedisDataSource reactiveDataSource) {
     streamCommands = ds.stream(String.class);
+    this.reactiveDataSource = reactiveDataSource;
   }
 
   public String push(String key, SendMessage message) {
+    return streamCommands.xadd(key, toPayload(message));
+  }
 
+  /**
+   * 批量推送消息, 所有 XADD 在同一个连接上以 pipeline 方式发送, 只等待一次往返
+   * @param messages 队列 key 及对应的消息
+   */
+  public void pushAll(List<Map.Entry<String, SendMessage>> messages) {
+    if (messages.isEmpty()) {
+      return;
+    }
+    reactiveDataSource.withConnection(connection -> {
+      var commands = connection.stream(String.class);
+      return Uni.join().all(messages.stream()
+          .map(entry -> commands.xadd(entry.getKey(), toPayload(entry.getValue())))
+          .toList()).andCollectFailures().replaceWithVoid();
+    }).await().indefinitely();
+  }
+
+  private static Map<String, String> toPayload(SendMessage message) {
     var map = new HashMap<String, String>();
     map.put(RedisArgsConstant.USERID.key, message.userId());
     map.put(RedisArgsConstant.CLIENT_UUID.key, message.clientUUID());
@@ -57,8 +83,7 @@ public class RedisMessageService {
       messageData = message.data();
     }
     map.put(RedisArgsConstant.DATA.key, base64.encodeToString(messageData.getBytes(StandardCharsets.UTF_8)));
-
-    return streamCommands.xadd(key, map);
+    return map;
   }
 
   /**
@@ -73,25 +98,76 @@ public class RedisMessageService {
       if(milliseconds != null) {
         xReadArgs.block(Duration.ofMillis(milliseconds));
       }
-      var messages = streamCommands.xread(key, "0", xReadArgs);
-      var result = new ArrayList<ReceiveMessage>();
-      for (StreamMessage<String, String, String> message: messages) {
-        var messageData = message.payload().get(RedisArgsConstant.DATA.key);
-        if (messageData != null) {
-          var base64 = new Base64();
-          message.payload().put(RedisArgsConstant.DATA.key, new String(base64.decode(messageData), StandardCharsets.UTF_8));
-        }
-        result.add(new ReceiveMessage(message.id(), message.payload().get(RedisArgsConstant.USERID.key),
-                message.payload().get(RedisArgsConstant.CLIENT_UUID.key), message.payload().get(RedisArgsConstant.OPT_TYPE.key),
-                message.payload().get(RedisArgsConstant.REQUEST_ID.key), message.payload().get(RedisArgsConstant.DATA.key)));
-      }
-      return result;
+      return toReceiveMessages(streamCommands.xread(key, "0", xReadArgs));
     } catch (Exception e) {
       LOG.errorv("获取消息异常 {0}", e);
       return new ArrayList<>();
     }
   }
 
+  /**
+   * 创建消费组, 从 stream 的第一条消息开始消费, 消费组已存在时忽略
+   */
+  public void createGroup(String key, String group) {
+    try {
+      streamCommands.xgroupCreate(key, group, "0", new XGroupCreateArgs().mkstream());
+      LOG.infov("创建消费组 key {0}, group {1} 成功", key, group);
+    } catch (Exception e) {
+      if (e.getMessage() == null || !e.getMessage().contains("BUSYGROUP")) {
+        throw e;
+      }
+    }
+  }
+
+  /**
+   * 以消费组方式获取新消息, 获取的消息在 {@link #ack} 之前处于 pending 状态
+   */
+  public List<ReceiveMessage> readGroup(String key, String group, String consumer, int count, Duration block) {
+    return toReceiveMessages(streamCommands.xreadgroup(group, consumer, key, ">",
+        new XReadGroupArgs().count(count).block(block)));
+  }
+
+  /**
+   * 将其他消费者 pending 超过 minIdle 的消息转移给 consumer, 用于消费者异常退出后恢复消息
+   */
+  public List<ReceiveMessage> autoClaim(String key, String group, String consumer, Duration minIdle, int count) {
+    var result = new ArrayList<ReceiveMessage>();
+    var start = "0-0";
+    do {
+      var claimed = streamCommands.xautoclaim(key, group, consumer, minIdle, start, count);
+      result.addAll(toReceiveMessages(claimed.getMessages()));
+      start = claimed.getId();
+    } while (start != null && !"0-0".equals(start) && result.size() < count);
+    return result;
+  }
+
+  /**
+   * 确认并删除已处理的消息
+   */
+  public void ack(String key, String group, List<String> messageIds) {
+    if (messageIds.isEmpty()) {
+      return;
+    }
+    var ids = messageIds.toArray(String[]::new);
+    streamCommands.xack(key, group, ids);
+    streamCommands.xdel(key, ids);
+  }
+
+  private List<ReceiveMessage> toReceiveMessages(List<StreamMessage<String, String, String>> messages) {
+    var result = new ArrayList<ReceiveMessage>();
+    for (StreamMessage<String, String, String> message: messages) {
+      var messageData = message.payload().get(RedisArgsConstant.DATA.key);
+      if (messageData != null) {
+        var base64 = new Base64();
+        message.payload().put(RedisArgsConstant.DATA.key, new String(base64.decode(messageData), StandardCharsets.UTF_8));
+      }
+      result.add(new ReceiveMessage(message.id(), message.payload().get(RedisArgsConstant.USERID.key),
+              message.payload().get(RedisArgsConstant.CLIENT_UUID.key), message.payload().get(RedisArgsConstant.OPT_TYPE.key),
+              message.payload().get(RedisArgsConstant.REQUEST_ID.key), message.payload().get(RedisArgsConstant.DATA.key)));
+    }
+    return result;
+  }
+
   /**
    * 删除消息
    */
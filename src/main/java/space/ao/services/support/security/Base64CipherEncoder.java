@@ -0,0 +1,74 @@
+/*
+ * Copyright (c) 2023 Institute of Software Chinese Academy of Sciences (ISCAS)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package space.ao.services.support.security;
+
+import lombok.SneakyThrows;
+
+import javax.crypto.Cipher;
+import java.util.Base64;
+
+/**
+ * Incremental "encrypt then BASE64" encoder. Feeding all chunks through {@link #update} and then calling
+ * {@link #doFinal()} produces the same text as {@code Base64(cipher.doFinal(whole body))}, while only the
+ * current chunk is kept in memory.
+ *
+ * <p>Not thread-safe, one instance per stream.
+ */
+public class Base64CipherEncoder {
+  private final Cipher cipher;
+  // encrypted bytes that have not been BASE64 encoded yet (BASE64 works on 3 bytes groups)
+  private final byte[] carry = new byte[2];
+  private int carryLength;
+
+  public Base64CipherEncoder(Cipher cipher) {
+    this.cipher = cipher;
+  }
+
+  /**
+   * Encrypts the chunk and returns the BASE64 text (ASCII bytes) that can be emitted so far.
+   */
+  public byte[] update(byte[] input, int offset, int length) {
+    var encrypted = cipher.update(input, offset, length);
+    return encode(encrypted == null ? new byte[0] : encrypted, false);
+  }
+
+  /**
+   * Finishes the encryption and returns the remaining BASE64 text, including padding.
+   */
+  @SneakyThrows
+  public byte[] doFinal() {
+    var encrypted = cipher.doFinal();
+    return encode(encrypted == null ? new byte[0] : encrypted, true);
+  }
+
+  private byte[] encode(byte[] encrypted, boolean last) {
+    var total = carryLength + encrypted.length;
+    var length = last ? total : total - total % 3;
+    if (length == 0) {
+      System.arraycopy(encrypted, 0, carry, carryLength, encrypted.length);
+      carryLength = total;
+      return new byte[0];
+    }
+    var block = new byte[length];
+    System.arraycopy(carry, 0, block, 0, carryLength);
+    System.arraycopy(encrypted, 0, block, carryLength, length - carryLength);
+    var rest = total - length;
+    System.arraycopy(encrypted, encrypted.length - rest, carry, 0, rest);
+    carryLength = rest;
+    return Base64.getEncoder().encode(block);
+  }
+}
@@ -0,0 +1,91 @@
+/*
+ * Copyright (c) 2023 Institute of Software Chinese Academy of Sciences (ISCAS)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package space.ao.services.support.security;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+
+import javax.crypto.Cipher;
+import javax.crypto.spec.SecretKeySpec;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.security.KeyFactory;
+import java.security.Signature;
+import java.time.Duration;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Per-thread pool of {@link Cipher}, {@link Signature} and {@link KeyFactory} instances keyed by
+ * transformation/algorithm, plus a shared cache of {@link SecretKeySpec} per secret.
+ *
+ * <p>Instances returned by this pool belong to the calling thread and must be fully used (init, update, doFinal)
+ * before the thread does any other crypto work. Do not hand them over to another thread or keep them
+ * across a streaming body; create a dedicated instance for that.
+ */
+public final class CryptoPool {
+
+  private static final ThreadLocal<Map<String, Cipher>> CIPHERS = ThreadLocal.withInitial(HashMap::new);
+  private static final ThreadLocal<Map<String, Signature>> SIGNATURES = ThreadLocal.withInitial(HashMap::new);
+  private static final ThreadLocal<Map<String, KeyFactory>> KEY_FACTORIES = ThreadLocal.withInitial(HashMap::new);
+
+  private static final Cache<String, SecretKeySpec> SECRET_KEYS = Caffeine.newBuilder()
+      .maximumSize(10_000)
+      .expireAfterAccess(Duration.ofHours(1))
+      .build();
+
+  private CryptoPool() {
+  }
+
+  public static Cipher cipher(String transformation) throws GeneralSecurityException {
+    var ciphers = CIPHERS.get();
+    var cipher = ciphers.get(transformation);
+    if (cipher == null) {
+      cipher = Cipher.getInstance(transformation);
+      ciphers.put(transformation, cipher);
+    }
+    return cipher;
+  }
+
+  public static Signature signature(String algorithm) throws GeneralSecurityException {
+    var signatures = SIGNATURES.get();
+    var signature = signatures.get(algorithm);
+    if (signature == null) {
+      signature = Signature.getInstance(algorithm);
+      signatures.put(algorithm, signature);
+    }
+    return signature;
+  }
+
+  public static KeyFactory keyFactory(String algorithm) throws GeneralSecurityException {
+    var keyFactories = KEY_FACTORIES.get();
+    var keyFactory = keyFactories.get(algorithm);
+    if (keyFactory == null) {
+      keyFactory = KeyFactory.getInstance(algorithm);
+      keyFactories.put(algorithm, keyFactory);
+    }
+    return keyFactory;
+  }
+
+  /**
+   * Returns the (immutable, thread-safe) secret key spec of a shared secret.
+   */
+  public static SecretKeySpec secretKey(String secret, String algorithm) {
+    return SECRET_KEYS.get(algorithm + ":" + secret,
+        k -> new SecretKeySpec(secret.getBytes(StandardCharsets.UTF_8), algorithm));
+  }
+}
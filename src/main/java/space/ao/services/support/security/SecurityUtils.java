@@ -124,10 +124,8 @@ public class SecurityUtils {
 
   @SneakyThrows
   public String decryptWithSecret(String body, String secret, IvParameterSpec iv) {
-    byte[] key = secret.getBytes(StandardCharsets.UTF_8);
-    SecretKeySpec secretKey = new SecretKeySpec(key,
-            properties.gatewayAlgInfoTransportationAlgorithm());
-    Cipher cipher = Cipher.getInstance(properties.gatewayAlgInfoTransportationTransformation());
+    SecretKeySpec secretKey = CryptoPool.secretKey(secret, properties.gatewayAlgInfoTransportationAlgorithm());
+    Cipher cipher = CryptoPool.cipher(properties.gatewayAlgInfoTransportationTransformation());
     byte[] result = new byte[0];
     try {
       cipher.init(Cipher.DECRYPT_MODE, secretKey, iv);
@@ -141,10 +139,8 @@ public class SecurityUtils {
 
   @SneakyThrows
   public String encryptWithSecret(String body, String secret, IvParameterSpec iv) {
-    byte[] key = secret.getBytes(StandardCharsets.UTF_8);
-    SecretKeySpec secretKey = new SecretKeySpec(key,
-            properties.gatewayAlgInfoTransportationAlgorithm());
-    Cipher cipher = Cipher.getInstance(properties.gatewayAlgInfoTransportationTransformation());
+    SecretKeySpec secretKey = CryptoPool.secretKey(secret, properties.gatewayAlgInfoTransportationAlgorithm());
+    Cipher cipher = CryptoPool.cipher(properties.gatewayAlgInfoTransportationTransformation());
     cipher.init(Cipher.ENCRYPT_MODE, secretKey, iv);
     return Base64.getEncoder()
             .encodeToString(cipher.doFinal(body.getBytes(StandardCharsets.UTF_8)));
@@ -152,7 +148,7 @@ public class SecurityUtils {
 
   @SneakyThrows
   public String encryptUsingClientPublicKey(String body) {
-    final Cipher dc = Cipher.getInstance(properties.gatewayAlgInfoPublicKeyAlgorithm());
+    final Cipher dc = CryptoPool.cipher(properties.gatewayAlgInfoPublicKeyAlgorithm());
     dc.init(Cipher.ENCRYPT_MODE, getAdminClientPublicKey());
     final byte[] encrypted = dc.doFinal(body.getBytes(StandardCharsets.UTF_8));
     return Base64.getEncoder().encodeToString(encrypted);
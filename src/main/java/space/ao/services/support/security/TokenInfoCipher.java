@@ -0,0 +1,94 @@
+/*
+ * Copyright (c) 2023 Institute of Software Chinese Academy of Sciences (ISCAS)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package space.ao.services.support.security;
+
+import jakarta.inject.Inject;
+import jakarta.inject.Singleton;
+import lombok.SneakyThrows;
+
+import javax.crypto.Cipher;
+import javax.crypto.spec.GCMParameterSpec;
+import javax.crypto.spec.SecretKeySpec;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.SecureRandom;
+import java.util.Base64;
+
+/**
+ * Symmetric encryption of the info claim of access tokens, so that verifying a token does not need a box private
+ * key decryption.
+ *
+ * <p>The AES-256-GCM key is the SHA-256 of the box private key signature of a fixed label. The signature is
+ * deterministic, so every gateway instance of the box derives the same key, also after a restart and with the keys
+ * in a security chip, and nobody without the box private key can derive it. Encrypted values start with
+ * {@link #PREFIX}, which never occurs in the base64 of the box public key encryption used by older tokens.
+ */
+@Singleton
+public class TokenInfoCipher {
+  public static final String PREFIX = "aes:";
+
+  private static final String TRANSFORMATION = "AES/GCM/NoPadding";
+  private static final String LABEL = "ao-space-gateway token info key v1";
+  private static final int IV_LENGTH = 12;
+  private static final int TAG_LENGTH = 128;
+
+  @Inject
+  SecurityUtils securityUtils;
+
+  private final SecureRandom random = new SecureRandom();
+  private volatile SecretKeySpec key;
+
+  public static boolean isEncrypted(String value) {
+    return value != null && value.startsWith(PREFIX);
+  }
+
+  @SneakyThrows
+  public String encrypt(String requestId, String value) {
+    var iv = new byte[IV_LENGTH];
+    random.nextBytes(iv);
+    var cipher = CryptoPool.cipher(TRANSFORMATION);
+    cipher.init(Cipher.ENCRYPT_MODE, key(requestId), new GCMParameterSpec(TAG_LENGTH, iv));
+    var encrypted = cipher.doFinal(value.getBytes(StandardCharsets.UTF_8));
+    return PREFIX + Base64.getEncoder().encodeToString(
+        ByteBuffer.allocate(iv.length + encrypted.length).put(iv).put(encrypted).array());
+  }
+
+  /**
+   * @throws javax.crypto.AEADBadTagException if the value was not encrypted with the key of this box.
+   */
+  @SneakyThrows
+  public String decrypt(String requestId, String value) {
+    var bytes = Base64.getDecoder().decode(value.substring(PREFIX.length()));
+    var cipher = CryptoPool.cipher(TRANSFORMATION);
+    cipher.init(Cipher.DECRYPT_MODE, key(requestId), new GCMParameterSpec(TAG_LENGTH, bytes, 0, IV_LENGTH));
+    return new String(cipher.doFinal(bytes, IV_LENGTH, bytes.length - IV_LENGTH), StandardCharsets.UTF_8);
+  }
+
+  @SneakyThrows
+  private SecretKeySpec key(String requestId) {
+    var current = key;
+    if (current == null) {
+      var signature = securityUtils.getSecurityProvider().signUsingBoxPrivateKey(requestId,
+          Base64.getEncoder().encodeToString(LABEL.getBytes(StandardCharsets.UTF_8)));
+      current = new SecretKeySpec(MessageDigest.getInstance("SHA-256")
+          .digest(Base64.getDecoder().decode(signature)), "AES");
+      key = current;
+    }
+    return current;
+  }
+}
@@ -70,7 +70,8 @@ public enum ServiceError {
   UNSUPPORTED_ALGORITHM(3404, "TOTP algorithm not supported"),
   PLATFORM_TYPE_ERROR(404, "platform type error"),
   PLATFORM_SERVICE_NOT_FOUND(404, "platform service not found"),
-  PLATFORM_API_NOT_FOUND(404, "platform api not found")
+  PLATFORM_API_NOT_FOUND(404, "platform api not found"),
+  TOO_MANY_REQUESTS(429, "too many requests")
 
   ;
   /**
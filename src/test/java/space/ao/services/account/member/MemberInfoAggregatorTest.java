@@ -0,0 +1,63 @@
+/*
+ * Copyright (c) 2023 Institute of Software Chinese Academy of Sciences (ISCAS)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package space.ao.services.account.member;
+
+import io.quarkus.test.junit.QuarkusTest;
+import jakarta.inject.Inject;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import space.ao.services.account.member.service.MemberInfoAggregator;
+import space.ao.services.account.personalinfo.entity.UserEntity;
+import space.ao.services.support.file.MockFileServiceRestClient;
+
+import java.util.List;
+
+@QuarkusTest
+class MemberInfoAggregatorTest {
+  @Inject
+  MemberInfoAggregator memberInfoAggregator;
+
+  private static UserEntity user(long id, Long spaceLimit) {
+    var user = new UserEntity(UserEntity.Role.GUEST, "member-" + id, "domain.eulix.xyz", "aoid-" + id);
+    user.setId(id);
+    user.setSpaceLimit(spaceLimit);
+    return user;
+  }
+
+  @Test
+  void testAggregate() {
+    var results = memberInfoAggregator.aggregate("request-1", List.of(user(1, null), user(2, 1024L)));
+    Assertions.assertEquals(2, results.size());
+    Assertions.assertEquals("aoid-1", results.get(0).getAoId());
+    // device total storage of the mocked system agent
+    Assertions.assertEquals("36", results.get(0).getTotalStorage());
+    Assertions.assertEquals("1024", results.get(1).getTotalStorage());
+    // the mocked system agent has no DID document, the member is still returned
+    Assertions.assertNull(results.get(1).getDid());
+  }
+
+  @Test
+  void testAggregatePartial() {
+    var unavailable = Long.parseLong(MockFileServiceRestClient.UNAVAILABLE_STORAGE_USER);
+    var results = memberInfoAggregator.aggregate("request-1", List.of(user(1, null), user(unavailable, null)));
+    // the member whose storage failed is still returned, without its used storage
+    Assertions.assertEquals(2, results.size());
+    Assertions.assertEquals("aoid-" + unavailable, results.get(1).getAoId());
+    Assertions.assertNull(results.get(1).getUserStorage());
+    Assertions.assertEquals("36", results.get(1).getTotalStorage());
+  }
+}
@@ -25,7 +25,6 @@ import io.quarkus.test.junit.QuarkusTest;
 import io.restassured.http.ContentType;
 import io.restassured.response.Response;
 
-import java.time.OffsetDateTime;
 import java.util.HashMap;
 import java.util.Objects;
 
@@ -49,7 +48,7 @@ import space.ao.services.gateway.auth.qrcode.dto.EncryptAuthInfo;
 import space.ao.services.gateway.auth.qrcode.dto.TotpAuthCode;
 import space.ao.services.gateway.auth.qrcode.dto.v2.BkeyInfo;
 import space.ao.services.gateway.auth.qrcode.dto.v2.CreateAuthCodeResult;
-import space.ao.services.push.services.RedisService;
+import space.ao.services.push.services.PresenceTracker;
 import space.ao.services.support.OperationUtils;
 import space.ao.services.support.TokenUtils;
 import space.ao.services.support.response.ResponseBase;
@@ -69,6 +68,8 @@ class AuthorizedTerminalInfoResourceTest {
   TestUtils testUtils;
   @Inject
   TokenUtils tokenUtils;
+  @Inject
+  PresenceTracker presenceTracker;
   UserEntity userEntity;
   @BeforeEach
   @Transactional
@@ -98,7 +99,7 @@ class AuthorizedTerminalInfoResourceTest {
             .contentType(ContentType.JSON)
             .when()
             .post("/v1/api/gateway/auth/token/create");
-    RedisService.setClientStatus(clientUUID+userId, OffsetDateTime.now());
+    presenceTracker.heartbeat(clientUUID, userId);
     given().when().header("Request-Id", utils.createRandomType4UUID())
             .contentType(ContentType.JSON)
             .queryParam("userId", userId)
@@ -114,7 +115,7 @@ class AuthorizedTerminalInfoResourceTest {
     String clientUUID = "2222-2222-3333-3331";
     String userId = userEntity.getId().toString();
     String aoid = userEntity.getAoId();
-    RedisService.setClientStatus(clientUUID+userId, OffsetDateTime.now());
+    presenceTracker.heartbeat(clientUUID, userId);
     given().when().header("Request-Id", utils.createRandomType4UUID())
             .contentType(ContentType.JSON)
             .queryParam("userId", userId)
@@ -141,7 +142,7 @@ class AuthorizedTerminalInfoResourceTest {
             .when()
             .post("/v1/api/gateway/auth/token/create");
 
-    RedisService.setClientStatus(clientUUID+userId, OffsetDateTime.now());
+    presenceTracker.heartbeat(clientUUID, userId);
     given().when().header("Request-Id", utils.createRandomType4UUID())
             .contentType(ContentType.JSON)
             .queryParam("aoid", aoid)
@@ -167,7 +168,7 @@ class AuthorizedTerminalInfoResourceTest {
             .when()
             .post("/v1/api/gateway/auth/token/create");
 
-    RedisService.setClientStatus(clientUUID+userId, OffsetDateTime.now());
+    presenceTracker.heartbeat(clientUUID, userId);
     given().when().header("Request-Id", utils.createRandomType4UUID())
             .contentType(ContentType.JSON)
             .queryParam("userId", userId)
@@ -0,0 +1,86 @@
+/*
+ * Copyright (c) 2023 Institute of Software Chinese Academy of Sciences (ISCAS)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package space.ao.services.account.security;
+
+import io.quarkus.test.junit.QuarkusTest;
+import jakarta.inject.Inject;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import space.ao.services.account.security.dto.SecurityMessageRsp;
+import space.ao.services.account.security.dto.SecurityMessageStore;
+import space.ao.services.account.security.service.SecurityMessageService;
+import space.ao.services.push.services.PollWakeupRegistry;
+
+import java.time.Duration;
+import java.time.ZonedDateTime;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+@QuarkusTest
+class SecurityMessageServiceTest {
+  @Inject
+  SecurityMessageService securityMessageService;
+  @Inject
+  PollWakeupRegistry pollWakeupRegistry;
+
+  private static SecurityMessageStore message(String applyId) {
+    return new SecurityMessageStore(SecurityMessageRsp.of("SecurityPasswdModifyAccept", null, "client-1",
+        true, "request-1", applyId), ZonedDateTime.now().plusMinutes(10));
+  }
+
+  @Test
+  void testPollWakeUp() {
+    var clientUUID = UUID.randomUUID().toString();
+    var started = System.nanoTime();
+    var pending = securityMessageService.poll("request-1", "1", clientUUID, null)
+        .subscribeAsCompletionStage();
+    Assertions.assertFalse(pending.isDone());
+
+    securityMessageService.storeMessage(clientUUID, message("apply-1"));
+    var response = pending.toCompletableFuture().orTimeout(10, TimeUnit.SECONDS).join();
+    Assertions.assertEquals(1, response.results().size());
+    Assertions.assertEquals("apply-1", response.results().get(0).getApplyId());
+    Assertions.assertTrue(Duration.ofNanos(System.nanoTime() - started).toSeconds() < 10);
+  }
+
+  @Test
+  void testPollParksAgainWhenWokenWithoutMessage() {
+    var clientUUID = UUID.randomUUID().toString();
+    var pending = securityMessageService.poll("request-1", "1", clientUUID, null)
+        .subscribeAsCompletionStage();
+    // e.g. another poll of the same client took the message first
+    pollWakeupRegistry.wakeUp(List.of("SCP-" + clientUUID));
+
+    Assertions.assertThrows(TimeoutException.class,
+        () -> pending.toCompletableFuture().get(500, TimeUnit.MILLISECONDS));
+    pending.toCompletableFuture().cancel(true);
+  }
+
+  @Test
+  void testRetrieveOnce() {
+    var clientUUID = UUID.randomUUID().toString();
+    for (int i = 0; i < 150; i++) {
+      securityMessageService.storeMessage(clientUUID, message("apply-" + i));
+    }
+    var messages = securityMessageService.retriveMessage(clientUUID);
+    Assertions.assertEquals(150, messages.size());
+    Assertions.assertEquals("apply-149", messages.get(149).getSecurityMessageRsp().getApplyId());
+    Assertions.assertTrue(securityMessageService.retriveMessage(clientUUID).isEmpty());
+  }
+}
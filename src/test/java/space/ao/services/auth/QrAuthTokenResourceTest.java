@@ -229,6 +229,50 @@ class QrAuthTokenResourceTest {
 
   }
 
+  @Test
+  void loginLimitReEncryptedTest() {
+    var requestId = utils.createRandomType4UUID();
+    // 公钥加密每次的密文都不同, 限流按解密后的 spaceId 计数
+    var spaceId = "limit-" + utils.createRandomType4UUID();
+    for (int i = 0; i < 6; i++) {
+      var encryptAuthInfo = new EncryptAuthInfo();
+      encryptAuthInfo.setAuthCode(testUtils.encryptUsingBoxPublicKey(requestId, utils.createRandomNumbers(6)));
+      encryptAuthInfo.setTmpEncryptedSecret(testUtils.encryptUsingBoxPublicKey(requestId, utils.createRandomNumbers(16)));
+      encryptAuthInfo.setSpaceId(testUtils.encryptUsingBoxPublicKey(requestId, spaceId));
+      encryptAuthInfo.setClientUUID(testUtils.encryptUsingBoxPublicKey(requestId, utils.createRandomType4UUID()));
+      encryptAuthInfo.setTerminalMode("HUAWEI P40");
 
+      given()
+              .header(REQUEST_ID, utils.createRandomType4UUID())
+              .body(encryptAuthInfo)
+              .when()
+              .contentType(MediaType.APPLICATION_JSON)
+              .post("/v1/api/gateway/totp/bkey/verify")
+              .then().statusCode(200).body(containsString(i < 5 ? "GW-4023" : "GW-410"));
+    }
+  }
 
+  @Test
+  void loginLimitByAddressTest() {
+    var requestId = utils.createRandomType4UUID();
+    // 每次都换一个 spaceId, 解密前按客户端地址限流: 注解 max (5) * address-factor (4)
+    var address = "10.0." + (int) (Math.random() * 255) + "." + (int) (Math.random() * 255);
+    for (int i = 0; i < 21; i++) {
+      var encryptAuthInfo = new EncryptAuthInfo();
+      encryptAuthInfo.setAuthCode(testUtils.encryptUsingBoxPublicKey(requestId, utils.createRandomNumbers(6)));
+      encryptAuthInfo.setTmpEncryptedSecret(testUtils.encryptUsingBoxPublicKey(requestId, utils.createRandomNumbers(16)));
+      encryptAuthInfo.setSpaceId(testUtils.encryptUsingBoxPublicKey(requestId, "limit-" + utils.createRandomType4UUID()));
+      encryptAuthInfo.setClientUUID(testUtils.encryptUsingBoxPublicKey(requestId, utils.createRandomType4UUID()));
+      encryptAuthInfo.setTerminalMode("HUAWEI P40");
+
+      given()
+              .header(REQUEST_ID, utils.createRandomType4UUID())
+              .header("X-Forwarded-For", address)
+              .body(encryptAuthInfo)
+              .when()
+              .contentType(MediaType.APPLICATION_JSON)
+              .post("/v1/api/gateway/totp/bkey/verify")
+              .then().statusCode(200).body(containsString(i < 20 ? "GW-4023" : "GW-410"));
+    }
+  }
 }
@@ -0,0 +1,64 @@
+/*
+ * Copyright (c) 2023 Institute of Software Chinese Academy of Sciences (ISCAS)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package space.ao.services.gateway;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.quarkus.test.junit.QuarkusTest;
+import jakarta.inject.Inject;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import space.ao.services.support.limit.RateLimitedException;
+import space.ao.services.support.model.AccessToken;
+
+import java.util.Map;
+import java.util.UUID;
+
+@QuarkusTest
+class GatewayRateLimiterTest {
+  @Inject
+  GatewayRateLimiter gatewayRateLimiter;
+  @Inject
+  MeterRegistry registry;
+
+  private static AccessToken token(boolean openApi, String appletId) {
+    return AccessToken.builder().userId("1").clientUUID("client-1").openApi(openApi).openApiAppletId(appletId).build();
+  }
+
+  @Test
+  void testRouteRateLimit() {
+    var router = new Routers.Router("call", "GET", "HTTP", "http://localhost:8080/space/v1/api/personal/info",
+        null, new Routers.OpenApi("userinfo_read", 5));
+    var route = new RouteTable(new Routers("1", Map.of("eulixspace-account-service", Map.of("personalinfo_show", router))),
+        "http://localhost").get("eulixspace-account-service", "personalinfo_show");
+    var applet = token(true, UUID.randomUUID().toString());
+    for (int i = 0; i < 5; i++) {
+      gatewayRateLimiter.check(route, applet);
+    }
+    var e = Assertions.assertThrows(RateLimitedException.class, () -> gatewayRateLimiter.check(route, applet));
+    Assertions.assertEquals(429, e.getErrorCode());
+    Assertions.assertTrue(e.getRetryAfterSeconds() >= 1);
+    Assertions.assertTrue(registry.get("gateway.route.throttled")
+        .tag("route", "eulixspace-account-service/personalinfo_show").tag("quota", "route").counter().count() >= 1);
+
+    // quotas are per applet
+    gatewayRateLimiter.check(route, token(true, UUID.randomUUID().toString()));
+    // and only apply to open api tokens
+    for (int i = 0; i < 10; i++) {
+      gatewayRateLimiter.check(route, token(false, null));
+    }
+  }
+}
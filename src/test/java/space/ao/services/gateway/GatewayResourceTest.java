@@ -36,12 +36,15 @@ import jakarta.inject.Inject;
 import jakarta.transaction.Transactional;
 import jakarta.ws.rs.core.MediaType;
 
+import java.util.Arrays;
 import java.util.Base64;
 import java.util.HashMap;
 import java.util.Objects;
 
 import static io.restassured.RestAssured.given;
 import static jakarta.ws.rs.core.Response.Status.BAD_REQUEST;
+import static org.hamcrest.CoreMatchers.is;
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
 import static org.junit.jupiter.api.Assertions.assertEquals;
 import static space.ao.services.support.RestConfiguration.REQUEST_ID;
 
@@ -106,6 +109,82 @@ class GatewayResourceTest {
     assertEquals("Hello", greeting);
   }
 
+  @Test
+  void testCallLargeBodyOk() {
+    final CreateTokenInfo info = testUtils.getAdminCreateTokenTestInfo(utils.createRandomType4UUID());
+    var requestId = utils.createRandomType4UUID();
+    final Response tokenResp = given()
+        .header(REQUEST_ID, requestId)
+        .body(info)
+        .contentType(ContentType.JSON)
+        .when()
+        .post("/v1/api/gateway/auth/token/create");
+
+    final CreateTokenResult tokenRet = tokenResp.body().as(CreateTokenResult.class);
+    final AccessToken ak = Objects.requireNonNull(tokenUtils.verifyAccessToken(requestId, tokenRet.getAccessToken()));
+    RealCallRequest real = new RealCallRequest();
+    {
+      real.setServiceName("test-service");
+      real.setApiName("repeat");
+      real.setApiVersion("v1");
+      // several chunks of the streaming output, not a multiple of the AES block or BASE64 group size
+      real.setQueries(ImmutableMap.of("content", "0123456789abcdefghijklmnopqrstuvwxyz", "times", "10000"));
+    }
+
+    CallRequest call = new CallRequest(securityUtils.encryptWithSecret(
+            utils.objectToJson(real), ak.getSharedSecret(), ak.getSharedInitializationVector()), ak.getToken());
+
+    var callRequestId = utils.createRandomType4UUID();
+    final Response callResp = given()
+        .header(REQUEST_ID, callRequestId)
+        .body(call)
+        .contentType(ContentType.JSON)
+        .when()
+        .post("/v1/api/gateway/call");
+
+    assertEquals(200, callResp.statusCode());
+    final RealCallResult callRet = callResp.body().as(RealCallResult.class);
+    assertEquals(200, callRet.code().intValue());
+    assertEquals(callRequestId, callRet.requestId());
+    String body = securityUtils.decryptWithSecret(callRet.body(), ak.getSharedSecret(), ak.getSharedInitializationVector());
+    assertEquals("0123456789abcdefghijklmnopqrstuvwxyz".repeat(10000), body);
+  }
+
+  @Test
+  void testCallUpstreamUnreachableFailedOk() {
+    final CreateTokenInfo info = testUtils.getAdminCreateTokenTestInfo(utils.createRandomType4UUID());
+    var requestId = utils.createRandomType4UUID();
+    final Response tokenResp = given()
+        .header(REQUEST_ID, requestId)
+        .body(info)
+        .contentType(ContentType.JSON)
+        .when()
+        .post("/v1/api/gateway/auth/token/create");
+
+    final CreateTokenResult tokenRet = tokenResp.body().as(CreateTokenResult.class);
+    final AccessToken ak = Objects.requireNonNull(tokenUtils.verifyAccessToken(requestId, tokenRet.getAccessToken()));
+    RealCallRequest real = new RealCallRequest();
+    {
+      real.setServiceName("test-service");
+      real.setApiName("unreachable");
+      real.setApiVersion("v1");
+    }
+
+    CallRequest call = new CallRequest(securityUtils.encryptWithSecret(
+            utils.objectToJson(real), ak.getSharedSecret(), ak.getSharedInitializationVector()), ak.getToken());
+
+    // the upstream error happens before any byte is written, so the usual error response is returned
+    given()
+        .header(REQUEST_ID, utils.createRandomType4UUID())
+        .body(call)
+        .contentType(ContentType.JSON)
+        .when()
+        .post("/v1/api/gateway/call")
+        .then()
+        .statusCode(500)
+        .body("code", is("GW-500"));
+  }
+
   @Test
   void testDownloadNormalCaseOk() {
     var requestId = utils.createRandomType4UUID();
@@ -146,6 +225,57 @@ class GatewayResourceTest {
     assertEquals("attachment;filename=hello.txt",  downloadResp.header("Content-Disposition"));
   }
 
+  @Test
+  void testDownloadRangeOk() {
+    var requestId = utils.createRandomType4UUID();
+    final CreateTokenInfo info = testUtils.getAdminCreateTokenTestInfo(requestId);
+    final Response tokenResp = given()
+        .header(REQUEST_ID, requestId)
+        .body(info)
+        .contentType(ContentType.JSON)
+        .when()
+        .post("/v1/api/gateway/auth/token/create");
+
+    final CreateTokenResult tokenRet = tokenResp.body().as(CreateTokenResult.class);
+    final AccessToken ak = Objects.requireNonNull(tokenUtils.verifyAccessToken(requestId, tokenRet.getAccessToken()));
+    RealCallRequest real = new RealCallRequest();
+    {
+      real.setServiceName("test-service");
+      real.setApiName("download");
+      real.setApiVersion("v1");
+      real.setQueries(ImmutableMap.of("file", "hello.txt", "content","hello world, resume me please!!!!"));
+    }
+
+    CallRequest call = new CallRequest(securityUtils.encryptWithSecret(
+            utils.objectToJson(real), ak.getSharedSecret(), ak.getSharedInitializationVector()), ak.getToken());
+
+    final byte[] full = Base64.getDecoder().decode(securityUtils.encryptWithSecret(
+        "hello world, resume me please!!!!", ak.getSharedSecret(), ak.getSharedInitializationVector()));
+    assertEquals(48, full.length);
+
+    final Response rangeResp = given()
+        .header(REQUEST_ID, utils.createRandomType4UUID())
+        .header("Range", "bytes=16-")
+        .body(call)
+        .contentType(ContentType.JSON)
+        .when()
+        .post("/v1/api/gateway/download");
+    assertEquals(206, rangeResp.statusCode());
+    assertEquals("bytes 16-47/48", rangeResp.header("Content-Range"));
+    assertEquals("32", rangeResp.header("Content-Length"));
+    assertArrayEquals(Arrays.copyOfRange(full, 16, 48), rangeResp.body().asByteArray());
+
+    final Response invalidResp = given()
+        .header(REQUEST_ID, utils.createRandomType4UUID())
+        .header("Range", "bytes=48-")
+        .body(call)
+        .contentType(ContentType.JSON)
+        .when()
+        .post("/v1/api/gateway/download");
+    assertEquals(416, invalidResp.statusCode());
+    assertEquals("bytes */48", invalidResp.header("Content-Range"));
+  }
+
   @Test
   void testUploadNormalCaseOk() {
     var requestId = utils.createRandomType4UUID();
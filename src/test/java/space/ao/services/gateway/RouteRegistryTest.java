@@ -0,0 +1,77 @@
+/*
+ * Copyright (c) 2023 Institute of Software Chinese Academy of Sciences (ISCAS)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package space.ao.services.gateway;
+
+import io.quarkus.test.junit.QuarkusTest;
+import jakarta.inject.Inject;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import space.ao.services.support.service.ServiceOperationException;
+
+import java.util.List;
+import java.util.Map;
+
+@QuarkusTest
+class RouteRegistryTest {
+  @Inject
+  RouteRegistry routeRegistry;
+
+  private static Routers.Router router(String method, String url) {
+    return new Routers.Router("call", method, "HTTP", url, null, null);
+  }
+
+  @Test
+  void testReloadUnchanged() {
+    var before = routeRegistry.current();
+    var diff = routeRegistry.reload("test");
+    Assertions.assertTrue(diff.isEmpty());
+    Assertions.assertNotSame(before, routeRegistry.current());
+  }
+
+  @Test
+  void testDiff() {
+    var old = new RouteTable(new Routers("0.1", Map.of(
+        "file", Map.of(
+            "list", router("GET", "http://fileapi:2001/list"),
+            "delete", router("POST", "http://fileapi:2001/delete")))), "https://ssplatform");
+    var newer = new RouteTable(new Routers("0.2", Map.of(
+        "file", Map.of(
+            "list", router("GET", "http://fileapi:2002/list"),
+            "rename", router("POST", "http://fileapi:2001/rename")))), "https://ssplatform");
+
+    var diff = old.diff(newer);
+    Assertions.assertEquals(List.of("file/rename"), diff.added());
+    Assertions.assertEquals(List.of("file/delete"), diff.removed());
+    Assertions.assertEquals(List.of("file/list"), diff.changed());
+    Assertions.assertEquals(RouteTable.Method.POST, newer.get("file", "rename").method());
+    Assertions.assertThrows(ServiceOperationException.class, () -> newer.get("file", "delete"));
+  }
+
+  @Test
+  void testValidate() {
+    new RouteTable(new Routers("0.1", Map.of(
+        "file", Map.of("list", router("GET", "http://fileapi:2001/list")),
+        "platform", Map.of("register", router("POST", "/v2/platform/device/register")))), "https://ssplatform")
+        .validate();
+
+    for (var url : List.of("fileapi:2001/list", "ftp://fileapi/list", "http://", "v2/platform/device/register")) {
+      var table = new RouteTable(new Routers("0.1", Map.of(
+          "file", Map.of("list", router("GET", url)))), "https://ssplatform");
+      Assertions.assertThrows(IllegalArgumentException.class, table::validate, url);
+    }
+  }
+}
@@ -0,0 +1,123 @@
+/*
+ * Copyright (c) 2023 Institute of Software Chinese Academy of Sciences (ISCAS)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package space.ao.services.gateway;
+
+import io.quarkus.test.junit.QuarkusTest;
+import io.smallrye.mutiny.helpers.test.AssertSubscriber;
+import jakarta.inject.Inject;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import space.ao.services.config.ApplicationProperties;
+import space.ao.services.support.model.AccessToken;
+
+import java.time.Instant;
+import java.util.UUID;
+
+@QuarkusTest
+class SseSubscriptionRegistryTest {
+  @Inject
+  SseSubscriptionRegistry sseSubscriptions;
+  @Inject
+  GatewayMessageService gatewayMessageService;
+  @Inject
+  ApplicationProperties properties;
+
+  private static AccessToken token(String userId, String clientUUID) {
+    return AccessToken.builder().userId(userId).clientUUID(clientUUID).build();
+  }
+
+  private static GatewayMessage message(String topic, GatewayMessage.Type type, String userId, String clientUuid) {
+    var message = new GatewayMessage();
+    message.setVersion("v1");
+    message.setType(type);
+    message.setTopic(topic);
+    message.setUserId(userId);
+    message.setClientUuid(clientUuid);
+    message.setUuid(UUID.randomUUID());
+    message.setTime(Instant.now());
+    return message;
+  }
+
+  private void publish(GatewayMessage message) {
+    gatewayMessageService.publish(message).await().indefinitely();
+  }
+
+  @Test
+  void testRouting() {
+    var first = sseSubscriptions.subscribe("routing", token("1", "client-a"), null)
+        .subscribe().withSubscriber(AssertSubscriber.<SseSubscriptionRegistry.Delivery>create(Long.MAX_VALUE));
+    var second = sseSubscriptions.subscribe("routing", token("2", "client-b"), null)
+        .subscribe().withSubscriber(AssertSubscriber.<SseSubscriptionRegistry.Delivery>create(Long.MAX_VALUE));
+
+    publish(message("routing", GatewayMessage.Type.BROADCAST, null, null));
+    publish(message("routing", GatewayMessage.Type.USER, "1", null));
+    publish(message("routing", GatewayMessage.Type.CLIENT, null, "CLIENT-B"));
+    publish(message("other", GatewayMessage.Type.BROADCAST, null, null));
+
+    Assertions.assertEquals(2, first.getItems().size());
+    Assertions.assertEquals(GatewayMessage.Type.USER, first.getItems().get(1).message().getType());
+    Assertions.assertEquals(2, second.getItems().size());
+    Assertions.assertEquals(GatewayMessage.Type.CLIENT, second.getItems().get(1).message().getType());
+    // serialized once for every receiver
+    Assertions.assertSame(first.getItems().get(0).json(), second.getItems().get(0).json());
+
+    first.cancel();
+    second.cancel();
+    publish(message("routing", GatewayMessage.Type.BROADCAST, null, null));
+    Assertions.assertEquals(2, first.getItems().size());
+  }
+
+  @Test
+  void testSlowSubscriberDropsOldest() {
+    var subscriber = sseSubscriptions.subscribe("slow", token("1", "client-a"), null)
+        .subscribe().withSubscriber(AssertSubscriber.<SseSubscriptionRegistry.Delivery>create(0));
+    var queueSize = properties.gatewaySseQueueSize();
+    var first = message("slow", GatewayMessage.Type.BROADCAST, null, null);
+    publish(first);
+    for (int i = 0; i < queueSize; i++) {
+      publish(message("slow", GatewayMessage.Type.BROADCAST, null, null));
+    }
+
+    subscriber.request(Long.MAX_VALUE);
+    Assertions.assertEquals(queueSize, subscriber.getItems().size());
+    Assertions.assertNotEquals(first.getUuid(), subscriber.getItems().get(0).message().getUuid());
+    subscriber.cancel();
+  }
+
+  @Test
+  void testReplayAfterLastEventId() {
+    var live = sseSubscriptions.subscribe("replay", token("1", "client-a"), null)
+        .subscribe().withSubscriber(AssertSubscriber.<SseSubscriptionRegistry.Delivery>create(Long.MAX_VALUE));
+    for (int i = 0; i < 3; i++) {
+      publish(message("replay", GatewayMessage.Type.USER, "1", null));
+    }
+    publish(message("replay", GatewayMessage.Type.USER, "2", null));
+    live.cancel();
+    Assertions.assertEquals(3, live.getItems().size());
+
+    var lastEventId = live.getItems().get(0).id();
+    var reconnected = sseSubscriptions.subscribe("replay", token("1", "client-a"), lastEventId)
+        .subscribe().withSubscriber(AssertSubscriber.<SseSubscriptionRegistry.Delivery>create(Long.MAX_VALUE));
+    reconnected.awaitItems(2);
+    Assertions.assertEquals(live.getItems().subList(1, 3).stream().map(SseSubscriptionRegistry.Delivery::id).toList(),
+        reconnected.getItems().stream().map(SseSubscriptionRegistry.Delivery::id).toList());
+
+    publish(message("replay", GatewayMessage.Type.USER, "1", null));
+    reconnected.awaitItems(3);
+    reconnected.cancel();
+  }
+}
@@ -0,0 +1,49 @@
+/*
+ * Copyright (c) 2023 Institute of Software Chinese Academy of Sciences (ISCAS)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package space.ao.services.gateway;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.quarkus.test.junit.QuarkusTest;
+import jakarta.inject.Inject;
+import okhttp3.HttpUrl;
+import okhttp3.OkHttpClient;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+@QuarkusTest
+class UpstreamHttpClientsTest {
+  @Inject
+  UpstreamHttpClients httpClients;
+  @Inject
+  OkHttpClient httpClient;
+  @Inject
+  MeterRegistry registry;
+
+  @Test
+  void testForUrl() {
+    var fileapi = httpClients.forUrl(HttpUrl.get("http://aospace-fileapi:2001/space/v1/api/file/list"));
+    Assertions.assertNotSame(httpClient.connectionPool(), fileapi.connectionPool());
+    Assertions.assertSame(httpClient, httpClients.forUrl(HttpUrl.get("http://localhost:8080/")));
+  }
+
+  @Test
+  void testMetrics() {
+    Assertions.assertNotNull(registry.find("gateway.http-client.connection.count").tag("pool", "default").gauge());
+    Assertions.assertNotNull(registry.find("gateway.http-client.requests.queued").tag("host", "aospace-fileapi").gauge());
+    Assertions.assertNotNull(registry.find("gateway.http-client.requests.in-flight").tag("host", "all").gauge());
+  }
+}
@@ -0,0 +1,47 @@
+/*
+ * Copyright (c) 2023 Institute of Software Chinese Academy of Sciences (ISCAS)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package space.ao.services.push.services;
+
+import io.quarkus.test.junit.QuarkusTest;
+import jakarta.inject.Inject;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import space.ao.services.config.ApplicationProperties;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+@QuarkusTest
+class NotificationServiceTest {
+  @Inject
+  NotificationService notificationService;
+  @Inject
+  PollWakeupRegistry pollWakeupRegistry;
+  @Inject
+  ApplicationProperties properties;
+
+  @Test
+  void testPollParksAgainWhenWokenWithoutMessage() {
+    var poll = notificationService.pollAsync("poll-client-1", "1", 1).subscribeAsCompletionStage();
+    // e.g. another poll of the same client consumed the message first
+    pollWakeupRegistry.wakeUp(List.of(properties.pushMqClientPrefix() + "poll-client-1"));
+
+    Assertions.assertThrows(TimeoutException.class, () -> poll.toCompletableFuture().get(500, TimeUnit.MILLISECONDS));
+    poll.toCompletableFuture().cancel(true);
+  }
+}
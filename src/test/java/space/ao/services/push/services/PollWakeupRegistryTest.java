@@ -0,0 +1,41 @@
+/*
+ * Copyright (c) 2023 Institute of Software Chinese Academy of Sciences (ISCAS)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package space.ao.services.push.services;
+
+import io.quarkus.test.junit.QuarkusTest;
+import jakarta.inject.Inject;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.List;
+
+@QuarkusTest
+class PollWakeupRegistryTest {
+  @Inject
+  PollWakeupRegistry pollWakeupRegistry;
+
+  @Test
+  void testWakeUp() {
+    var woken = pollWakeupRegistry.register("test-wakeup-1");
+    var other = pollWakeupRegistry.register("test-wakeup-2");
+    pollWakeupRegistry.wakeUp(List.of("test-wakeup-1", "test-wakeup-3"));
+
+    Assertions.assertTrue(woken.await(Duration.ofSeconds(5)).await().indefinitely());
+    Assertions.assertFalse(other.await(Duration.ofMillis(200)).await().indefinitely());
+  }
+}
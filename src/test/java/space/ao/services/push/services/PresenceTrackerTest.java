@@ -0,0 +1,77 @@
+/*
+ * Copyright (c) 2023 Institute of Software Chinese Academy of Sciences (ISCAS)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package space.ao.services.push.services;
+
+import io.quarkus.redis.datasource.RedisDataSource;
+import io.quarkus.test.junit.QuarkusTest;
+import jakarta.inject.Inject;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.Set;
+
+@QuarkusTest
+class PresenceTrackerTest {
+  @Inject
+  PresenceTracker presenceTracker;
+  @Inject
+  RedisDataSource redisDataSource;
+
+  @Test
+  void testHeartbeatAndOffline() throws InterruptedException {
+    presenceTracker.heartbeat("presence-client-1", "1");
+    Assertions.assertTrue(presenceTracker.isOnline("presence-client-1", "1"));
+    // keyed by client and user
+    Assertions.assertFalse(presenceTracker.isOnline("presence-client-1", "2"));
+
+    presenceTracker.offline("presence-client-1", "1");
+    // the removal is sent without waiting for the reply
+    for (int i = 0; i < 50 && presenceTracker.isOnline("presence-client-1", "1"); i++) {
+      Thread.sleep(20);
+    }
+    Assertions.assertFalse(presenceTracker.isOnline("presence-client-1", "1"));
+  }
+
+  @Test
+  void testOfflineFromOtherInstance() throws InterruptedException {
+    presenceTracker.heartbeat("presence-client-5", "1");
+    Assertions.assertTrue(presenceTracker.isOnline("presence-client-5", "1"));
+
+    // what offline() does on another instance
+    redisDataSource.sortedSet(String.class).zrem(PresenceTracker.KEY, "presence-client-51");
+    // published again until received, the tracker subscribes in the background
+    var pubSub = redisDataSource.pubsub(String.class);
+    for (int i = 0; i < 50 && presenceTracker.isOnline("presence-client-5", "1"); i++) {
+      pubSub.publish(PresenceTracker.OFFLINE_CHANNEL, "presence-client-51");
+      Thread.sleep(20);
+    }
+    Assertions.assertFalse(presenceTracker.isOnline("presence-client-5", "1"));
+  }
+
+  @Test
+  void testOnlineSeenByOtherInstance() {
+    var sortedSet = redisDataSource.sortedSet(String.class);
+    var now = System.currentTimeMillis();
+    sortedSet.zadd(PresenceTracker.KEY, now, "presence-client-22");
+    sortedSet.zadd(PresenceTracker.KEY, now - Duration.ofMinutes(5).toMillis(), "presence-client-32");
+
+    Assertions.assertEquals(Set.of("presence-client-22"),
+        presenceTracker.online(List.of("presence-client-22", "presence-client-32", "presence-client-42")));
+  }
+}
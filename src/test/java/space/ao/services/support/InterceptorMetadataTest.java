@@ -0,0 +1,56 @@
+/*
+ * Copyright (c) 2023 Institute of Software Chinese Academy of Sciences (ISCAS)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package space.ao.services.support;
+
+import io.quarkus.test.junit.QuarkusTest;
+import jakarta.inject.Inject;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import space.ao.services.gateway.auth.qrcode.dto.EncryptAuthInfo;
+import space.ao.services.gateway.auth.qrcode.rest.BoxKeyResource;
+import space.ao.services.gateway.version.VersionResource;
+import space.ao.services.support.limit.LimitReq;
+import space.ao.services.support.platform.check.CheckApiStatus;
+import space.ao.services.support.platform.check.CheckPlatformStatus;
+import space.ao.services.support.platform.check.PlatformTypeEnum;
+
+@QuarkusTest
+class InterceptorMetadataTest {
+  @Inject
+  InterceptorMetadata interceptorMetadata;
+
+  @Test
+  void testMetadata() throws NoSuchMethodException {
+    var app = interceptorMetadata.get(VersionResource.class.getDeclaredMethod("app",
+        String.class, String.class, String.class, String.class, String.class));
+    Assertions.assertEquals(PlatformTypeEnum.PRODUCT, app.binding(CheckPlatformStatus.class).type());
+    Assertions.assertNull(app.binding(CheckApiStatus.class));
+    // @HeaderParam("Request-Id")
+    Assertions.assertEquals(0, app.requestIdIndex());
+    Assertions.assertEquals("request-1", app.requestId(new Object[]{"request-1", "a", "b", "c", null}, "none"));
+
+    var verify = interceptorMetadata.get(BoxKeyResource.class.getDeclaredMethod("verifyQrcodeAuthInfo",
+        String.class, EncryptAuthInfo.class));
+    Assertions.assertEquals(5, verify.binding(LimitReq.class).max());
+    var target = verify.limitTarget();
+    Assertions.assertEquals(5, target.max());
+    Assertions.assertTrue(target.keyPrefix().endsWith("/v1/api/auth/bkey/verify-"), target.keyPrefix());
+    Assertions.assertEquals(1, target.encryptAuthInfoIndex());
+    Assertions.assertEquals(-1, target.clientUUIDIndex());
+    // not limited
+    Assertions.assertNull(app.limitTarget());
+  }
+}
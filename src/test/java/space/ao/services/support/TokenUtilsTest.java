@@ -0,0 +1,84 @@
+/*
+ * Copyright (c) 2023 Institute of Software Chinese Academy of Sciences (ISCAS)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package space.ao.services.support;
+
+import io.quarkus.test.junit.QuarkusTest;
+import io.smallrye.jwt.build.Jwt;
+import jakarta.inject.Inject;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import space.ao.services.config.ApplicationProperties;
+import space.ao.services.support.model.AccessToken;
+import space.ao.services.support.security.SecurityUtils;
+import space.ao.services.support.security.TokenInfoCipher;
+
+import java.nio.charset.StandardCharsets;
+import java.time.ZonedDateTime;
+import java.util.Base64;
+
+@QuarkusTest
+class TokenUtilsTest {
+  @Inject
+  TokenUtils tokenUtils;
+  @Inject
+  TokenInfoCipher tokenInfoCipher;
+  @Inject
+  SecurityUtils securityUtils;
+  @Inject
+  ApplicationProperties properties;
+
+  @Test
+  void testAesInfoClaim() {
+    var iv = Base64.getEncoder().encodeToString(new byte[16]);
+    var token = tokenUtils.createAccessToken("request-1", "1", ZonedDateTime.now().plusHours(1),
+        "secret-1", iv, "client-1", null);
+    var payload = new String(Base64.getUrlDecoder().decode(token.split("\\.")[1]), StandardCharsets.UTF_8);
+    Assertions.assertTrue(payload.contains("\"info\":\"" + TokenInfoCipher.PREFIX), payload);
+
+    var accessToken = tokenUtils.verifyAccessToken("request-1", token);
+    Assertions.assertNotNull(accessToken);
+    Assertions.assertEquals("1", accessToken.getUserId());
+    Assertions.assertEquals("client-1", accessToken.getClientUUID());
+    Assertions.assertEquals("secret-1", accessToken.getSharedSecret());
+  }
+
+  @Test
+  void testRsaInfoClaimStillAccepted() {
+    // an access token issued in rsa mode, or before the aes mode existed
+    var iv = Base64.getEncoder().encodeToString(new byte[16]);
+    var builder = Jwt.upn(properties.boxUserName())
+        .issuer(properties.boxEndpoint())
+        .issuedAt(ZonedDateTime.now().toInstant())
+        .expiresAt(ZonedDateTime.now().plusHours(1).toInstant())
+        .claim("info", securityUtils.getSecurityProvider().encryptUsingBoxPublicKey("request-1", "2,client-2,secret-2"))
+        .claim(AccessToken.SHARED_IV_KEY, iv)
+        .claim("tokenType", "access");
+
+    var accessToken = tokenUtils.verifyAccessToken("request-1", tokenUtils.tokenSign("request-1", builder));
+    Assertions.assertNotNull(accessToken);
+    Assertions.assertEquals("2", accessToken.getUserId());
+    Assertions.assertEquals("secret-2", accessToken.getSharedSecret());
+  }
+
+  @Test
+  void testAesInfoClaimOfOtherKeyRejected() {
+    var info = tokenInfoCipher.encrypt("request-1", "3,client-3,secret-3");
+    var tampered = info.substring(0, info.length() - 4) + (info.endsWith("AAAA") ? "BBBB" : "AAAA");
+    Assertions.assertThrows(Exception.class, () -> tokenInfoCipher.decrypt("request-1", tampered));
+    Assertions.assertEquals("3,client-3,secret-3", tokenInfoCipher.decrypt("request-1", info));
+  }
+}
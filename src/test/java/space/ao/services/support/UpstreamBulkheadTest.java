@@ -0,0 +1,119 @@
+/*
+ * Copyright (c) 2023 Institute of Software Chinese Academy of Sciences (ISCAS)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package space.ao.services.support;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import okhttp3.MediaType;
+import okhttp3.OkHttpClient;
+import okhttp3.Protocol;
+import okhttp3.Request;
+import okhttp3.Response;
+import okhttp3.ResponseBody;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import space.ao.services.support.service.ServiceError;
+import space.ao.services.support.service.ServiceOperationException;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.time.Duration;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+class UpstreamBulkheadTest {
+  private final SimpleMeterRegistry registry = new SimpleMeterRegistry();
+
+  // answers every request without network
+  private OkHttpClient client(UpstreamBulkhead bulkhead) {
+    return new OkHttpClient.Builder()
+        .addInterceptor(bulkhead)
+        .addInterceptor(chain -> new Response.Builder()
+            .request(chain.request())
+            .protocol(Protocol.HTTP_1_1)
+            .code(200)
+            .message("OK")
+            .body(ResponseBody.create(MediaType.get("text/plain"), "hello"))
+            .build())
+        .build();
+  }
+
+  private double gauge(String name, String host) {
+    return registry.find(HttpClientMetrics.PREFIX + ".requests." + name).tag("host", host).gauge().value();
+  }
+
+  @Test
+  void testPermitHeldUntilBodyClosed() throws Exception {
+    var client = client(new UpstreamBulkhead(registry, 8, host -> 1, Duration.ofMillis(100)));
+    var request = new Request.Builder().url("http://upstream-a/hello").build();
+
+    var first = client.newCall(request).execute();
+    Assertions.assertEquals(1, gauge("in-flight", "upstream-a"));
+    Assertions.assertEquals(1, gauge("in-flight", "all"));
+
+    var e = Assertions.assertThrows(ServiceOperationException.class, () -> client.newCall(request).execute());
+    Assertions.assertEquals(ServiceError.TOO_MANY_REQUESTS.getCode(), e.getErrorCode());
+    // other hosts are not blocked
+    try (var other = client.newCall(new Request.Builder().url("http://upstream-b/hello").build()).execute()) {
+      Assertions.assertEquals("hello", other.body().string());
+    }
+
+    Assertions.assertEquals("hello", first.body().string());
+    Assertions.assertEquals(0, gauge("in-flight", "upstream-a"));
+    first.close();
+    Assertions.assertEquals(0, gauge("in-flight", "all"));
+    try (var again = client.newCall(request).execute()) {
+      Assertions.assertEquals(200, again.code());
+    }
+  }
+
+  @Test
+  void testTotalLimit() throws Exception {
+    var client = client(new UpstreamBulkhead(registry, 1, host -> 4, Duration.ofMillis(100)));
+
+    try (var ignored = client.newCall(new Request.Builder().url("http://upstream-a/hello").build()).execute()) {
+      Assertions.assertThrows(ServiceOperationException.class,
+          () -> client.newCall(new Request.Builder().url("http://upstream-b/hello").build()).execute());
+      Assertions.assertEquals(0, gauge("in-flight", "upstream-b"));
+    }
+  }
+
+  @Test
+  void testSaturatedHostDoesNotStarveOthers() throws Exception {
+    var client = client(new UpstreamBulkhead(registry, 2, host -> 1, Duration.ofSeconds(5)));
+    var request = new Request.Builder().url("http://upstream-a/hello").build();
+
+    try (var first = client.newCall(request).execute()) {
+      // queued on upstream-a while its only permit is held
+      var queued = CompletableFuture.supplyAsync(() -> {
+        try (var response = client.newCall(request).execute()) {
+          return response.code();
+        } catch (IOException e) {
+          throw new UncheckedIOException(e);
+        }
+      });
+      while (gauge("queued", "upstream-a") < 1) {
+        Thread.onSpinWait();
+      }
+      try (var other = client.newCall(new Request.Builder().url("http://upstream-b/hello").build()).execute()) {
+        Assertions.assertEquals("hello", other.body().string());
+      }
+      Assertions.assertFalse(queued.isDone());
+      first.close();
+      Assertions.assertEquals(200, queued.get(5, TimeUnit.SECONDS));
+    }
+  }
+}
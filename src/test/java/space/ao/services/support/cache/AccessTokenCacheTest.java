@@ -0,0 +1,58 @@
+/*
+ * Copyright (c) 2023 Institute of Software Chinese Academy of Sciences (ISCAS)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package space.ao.services.support.cache;
+
+import io.quarkus.test.junit.QuarkusTest;
+import jakarta.inject.Inject;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import space.ao.services.support.model.AccessToken;
+
+import java.time.ZonedDateTime;
+
+@QuarkusTest
+class AccessTokenCacheTest {
+  @Inject
+  AccessTokenCache accessTokenCache;
+
+  private static AccessToken token(String token, String userId, String clientUUID, ZonedDateTime expiresAt) {
+    return AccessToken.builder().token(token).userId(userId).clientUUID(clientUUID).expiresAt(expiresAt).build();
+  }
+
+  @Test
+  void testExpire() {
+    accessTokenCache.put(token("expired", "1", "client-1", ZonedDateTime.now().minusSeconds(1)));
+    accessTokenCache.put(token("valid", "1", "client-1", ZonedDateTime.now().plusDays(1)));
+    Assertions.assertNull(accessTokenCache.get("expired"));
+    Assertions.assertNotNull(accessTokenCache.get("valid"));
+  }
+
+  @Test
+  void testInvalidate() {
+    accessTokenCache.put(token("token-1", "1", "client-1", ZonedDateTime.now().plusDays(1)));
+    accessTokenCache.put(token("token-2", "1", "client-2", ZonedDateTime.now().plusDays(1)));
+    accessTokenCache.put(token("token-3", "2", "client-3", ZonedDateTime.now().plusDays(1)));
+
+    accessTokenCache.invalidateClient("1", "client-1");
+    Assertions.assertNull(accessTokenCache.get("token-1"));
+    Assertions.assertNotNull(accessTokenCache.get("token-2"));
+
+    accessTokenCache.invalidateUser("1");
+    Assertions.assertNull(accessTokenCache.get("token-2"));
+    Assertions.assertNotNull(accessTokenCache.get("token-3"));
+  }
+}
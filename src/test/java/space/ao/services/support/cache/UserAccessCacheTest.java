@@ -0,0 +1,69 @@
+/*
+ * Copyright (c) 2023 Institute of Software Chinese Academy of Sciences (ISCAS)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package space.ao.services.support.cache;
+
+import io.quarkus.narayana.jta.QuarkusTransaction;
+import io.quarkus.test.junit.QuarkusTest;
+import jakarta.inject.Inject;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import space.ao.services.account.authorizedterminalinfo.dto.AuthorizedTerminalInfo;
+import space.ao.services.account.authorizedterminalinfo.repository.AuthorizedTerminalRepository;
+import space.ao.services.account.personalinfo.repository.UserInfoRepository;
+import space.ao.services.support.test.TestUtils;
+
+@QuarkusTest
+class UserAccessCacheTest {
+  @Inject
+  UserAccessCache userAccessCache;
+  @Inject
+  UserInfoRepository userInfoRepository;
+  @Inject
+  AuthorizedTerminalRepository authorizedTerminalRepository;
+  @Inject
+  TestUtils testUtils;
+
+  @BeforeEach
+  void setUp() {
+    testUtils.createAdmin();
+  }
+
+  @AfterEach
+  void tearDown() {
+    testUtils.deleteAllUser();
+    testUtils.cleanData();
+  }
+
+  @Test
+  void testInvalidateOnWrite() {
+    var access = userAccessCache.get(1L);
+    Assertions.assertEquals("clientUUID", access.clientUUID());
+    Assertions.assertFalse(access.terminals().containsKey("terminal-1"));
+    Assertions.assertSame(access, userAccessCache.get(1L));
+
+    authorizedTerminalRepository.insert(AuthorizedTerminalInfo.of("1", "terminal-1", "mode", 3600, "", "web"));
+    Assertions.assertTrue(userAccessCache.get(1L).terminals().containsKey("terminal-1"));
+
+    authorizedTerminalRepository.delete(1L, "terminal-1");
+    Assertions.assertFalse(userAccessCache.get(1L).terminals().containsKey("terminal-1"));
+
+    QuarkusTransaction.requiringNew().run(() -> userInfoRepository.updateClient("ios", "clientUUID-2", "authKey", 1L));
+    Assertions.assertEquals("clientUUID-2", userAccessCache.get(1L).clientUUID());
+  }
+}
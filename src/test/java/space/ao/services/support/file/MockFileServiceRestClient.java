@@ -28,6 +28,8 @@ import space.ao.services.support.log.Logged;
 import space.ao.services.support.response.ResponseBase;
 
 import jakarta.enterprise.context.ApplicationScoped;
+import jakarta.ws.rs.WebApplicationException;
+import jakarta.ws.rs.core.Response;
 
 import java.util.List;
 import java.util.Map;
@@ -37,6 +39,9 @@ import java.util.Map;
 @RestClient
 @SuppressWarnings("unused") // test uses this mocked class
 public class MockFileServiceRestClient implements FileServiceRestClient {
+  // a member whose storage the file service fails to return
+  public static final String UNAVAILABLE_STORAGE_USER = "999";
+
   @Override
   @Logged
   public ResponseBase<LinkNameResult> createSoftLink(Long userid, UUIDInfo uuidInfo) {
@@ -44,6 +49,9 @@ public class MockFileServiceRestClient implements FileServiceRestClient {
   }
   @Override
   public ResponseBase<UserStorageInfo> getUserStorageInfo(String requestId, String userid, String targetUserId) {
+    if (UNAVAILABLE_STORAGE_USER.equals(targetUserId)) {
+      throw new WebApplicationException(Response.Status.SERVICE_UNAVAILABLE);
+    }
     return ResponseBase.of("200", "","", new UserStorageInfo());
   }
 
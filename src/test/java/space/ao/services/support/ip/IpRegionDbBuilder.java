@@ -0,0 +1,69 @@
+/*
+ * Copyright (c) 2023 Institute of Software Chinese Academy of Sciences (ISCAS)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package space.ao.services.support.ip;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Writes a minimal ip2region (1.x) db: the super block, the data blocks and the index blocks, without the
+ * b-tree header index.
+ */
+class IpRegionDbBuilder {
+  private final ByteArrayOutputStream data = new ByteArrayOutputStream();
+  private final ByteArrayOutputStream index = new ByteArrayOutputStream();
+  private int count;
+
+  IpRegionDbBuilder add(String startIp, String endIp, String region) {
+    return add((int) IpRegionIndex.parseIpv4(startIp), (int) IpRegionIndex.parseIpv4(endIp), region);
+  }
+
+  IpRegionDbBuilder add(int startIp, int endIp, String region) {
+    var bytes = region.getBytes(StandardCharsets.UTF_8);
+    var pointer = 8 + data.size();
+    var block = ByteBuffer.allocate(4 + bytes.length).order(ByteOrder.LITTLE_ENDIAN);
+    block.putInt(++count).put(bytes);
+    data.writeBytes(block.array());
+    var entry = ByteBuffer.allocate(12).order(ByteOrder.LITTLE_ENDIAN);
+    entry.putInt(startIp).putInt(endIp).putInt(((4 + bytes.length) << 24) | pointer);
+    index.writeBytes(entry.array());
+    return this;
+  }
+
+  byte[] build() {
+    var first = 8 + data.size();
+    var last = first + index.size() - 12;
+    var db = ByteBuffer.allocate(8 + data.size() + index.size()).order(ByteOrder.LITTLE_ENDIAN);
+    db.putInt(first).putInt(last).put(data.toByteArray()).put(index.toByteArray());
+    return db.array();
+  }
+
+  /**
+   * @return a db covering the whole ipv4 space with {@code blocks} ranges.
+   */
+  static byte[] uniform(int blocks) {
+    var builder = new IpRegionDbBuilder();
+    var step = (1L << 32) / blocks;
+    for (long i = 0; i < blocks; i++) {
+      var start = i * step;
+      var end = i == blocks - 1 ? 0xFFFFFFFFL : start + step - 1;
+      builder.add((int) start, (int) end, "中国|0|省份" + i + "|城市" + i + "|电信");
+    }
+    return builder.build();
+  }
+}
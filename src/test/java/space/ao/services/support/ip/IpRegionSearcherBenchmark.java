@@ -0,0 +1,91 @@
+/*
+ * Copyright (c) 2023 Institute of Software Chinese Academy of Sciences (ISCAS)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package space.ao.services.support.ip;
+
+import org.lionsoul.ip2region.DbConfig;
+import org.lionsoul.ip2region.DbSearcher;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares opening a {@link DbSearcher} per lookup (before) with the shared {@link IpRegionIndex} (after).
+ *
+ * <p>Run with: {@code mvn test-compile exec:java -Dexec.classpathScope=test
+ * -Dexec.mainClass=space.ao.services.support.ip.IpRegionSearcherBenchmark}.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class IpRegionSearcherBenchmark {
+  private Path file;
+  private IpRegionIndex index;
+  private String[] ips;
+  private int next;
+
+  @Setup
+  public void setUp() throws IOException {
+    var db = IpRegionDbBuilder.uniform(100_000);
+    file = Files.createTempFile("ip2region", ".db");
+    Files.write(file, db);
+    index = IpRegionIndex.load(db);
+    var random = ThreadLocalRandom.current();
+    ips = new String[1024];
+    for (int i = 0; i < ips.length; i++) {
+      ips[i] = random.nextInt(256) + "." + random.nextInt(256) + "." + random.nextInt(256) + "." + random.nextInt(256);
+    }
+  }
+
+  @TearDown
+  public void tearDown() throws IOException {
+    Files.deleteIfExists(file);
+  }
+
+  private String ip() {
+    return ips[next++ & (ips.length - 1)];
+  }
+
+  @Benchmark
+  public String searcherPerCall() throws Exception {
+    var searcher = new DbSearcher(new DbConfig(), file.toString());
+    try {
+      return searcher.binarySearch(ip()).getRegion();
+    } finally {
+      searcher.close();
+    }
+  }
+
+  @Benchmark
+  public String index() {
+    return index.search((int) IpRegionIndex.parseIpv4(ip()));
+  }
+
+  public static void main(String[] args) throws RunnerException {
+    new Runner(new OptionsBuilder()
+        .include(IpRegionSearcherBenchmark.class.getSimpleName())
+        .build()).run();
+  }
+}
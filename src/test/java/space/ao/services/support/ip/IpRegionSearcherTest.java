@@ -0,0 +1,80 @@
+/*
+ * Copyright (c) 2023 Institute of Software Chinese Academy of Sciences (ISCAS)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package space.ao.services.support.ip;
+
+import io.quarkus.test.junit.QuarkusTest;
+import jakarta.inject.Inject;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.lionsoul.ip2region.DbConfig;
+import org.lionsoul.ip2region.DbSearcher;
+
+import java.nio.file.Files;
+
+@QuarkusTest
+class IpRegionSearcherTest {
+  @Inject
+  IpRegionSearcher ipRegionSearcher;
+
+  @Test
+  void testSearch() {
+    var index = IpRegionIndex.load(new IpRegionDbBuilder()
+        .add("1.0.0.0", "1.0.0.255", "中国|0|福建省|福州市|电信")
+        .add("1.0.1.0", "1.0.3.255", "中国|0|福建省|厦门市|电信")
+        .add("128.0.0.0", "200.255.255.255", "美国|0|0|0|0")
+        .build());
+    Assertions.assertEquals(3, index.size());
+    // the index loaded at startup is put back for the other tests
+    var loaded = ipRegionSearcher.use(index);
+    try {
+      Assertions.assertEquals("中国|0|福建省|福州市|电信", ipRegionSearcher.search("1.0.0.0"));
+      Assertions.assertEquals("中国|0|福建省|厦门市|电信", ipRegionSearcher.search("1.0.2.17"));
+      Assertions.assertEquals("中国|0|福建省|厦门市|电信", ipRegionSearcher.search("1.0.3.255"));
+      // above 2^31, compared as unsigned
+      Assertions.assertEquals("美国|0|0|0|0", ipRegionSearcher.search("192.168.1.1"));
+      // not covered
+      Assertions.assertNull(ipRegionSearcher.search("0.255.255.255"));
+      Assertions.assertNull(ipRegionSearcher.search("1.0.4.0"));
+      Assertions.assertNull(ipRegionSearcher.search("201.0.0.0"));
+      // not ipv4
+      Assertions.assertNull(ipRegionSearcher.search("1.0.0"));
+      Assertions.assertNull(ipRegionSearcher.search("1.0.0.256"));
+      Assertions.assertNull(ipRegionSearcher.search("::1"));
+      Assertions.assertNull(ipRegionSearcher.search(null));
+    } finally {
+      ipRegionSearcher.use(loaded);
+    }
+  }
+
+  @Test
+  void testSameAsDbSearcher() throws Exception {
+    var db = IpRegionDbBuilder.uniform(1000);
+    var index = IpRegionIndex.load(db);
+    var file = Files.createTempFile("ip2region", ".db");
+    try {
+      Files.write(file, db);
+      var searcher = new DbSearcher(new DbConfig(), file.toString());
+      for (var ip : new String[]{"0.0.0.0", "1.2.3.4", "58.30.15.255", "127.0.0.1", "128.0.0.0", "223.5.5.5",
+          "255.255.255.255"}) {
+        Assertions.assertEquals(searcher.binarySearch(ip).getRegion(),
+            index.search((int) IpRegionIndex.parseIpv4(ip)), ip);
+      }
+      searcher.close();
+    } finally {
+      Files.delete(file);
+    }
+  }
+}
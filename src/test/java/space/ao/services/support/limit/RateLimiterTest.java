@@ -0,0 +1,64 @@
+/*
+ * Copyright (c) 2023 Institute of Software Chinese Academy of Sciences (ISCAS)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package space.ao.services.support.limit;
+
+import io.quarkus.redis.datasource.RedisDataSource;
+import io.quarkus.test.junit.QuarkusTest;
+import jakarta.inject.Inject;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+
+@QuarkusTest
+class RateLimiterTest {
+  private static final String KEY = "TESTREQRATE-/v1/api/test-client";
+
+  @Inject
+  RateLimiter rateLimiter;
+  @Inject
+  RedisDataSource redisDataSource;
+
+  @AfterEach
+  void tearDown() {
+    rateLimiter.reset(KEY);
+  }
+
+  @Test
+  void testSlidingWindow() {
+    for (int i = 0; i < 3; i++) {
+      Assertions.assertEquals(0, rateLimiter.acquire(KEY, 3, Duration.ofSeconds(60)));
+    }
+    var wait = rateLimiter.acquire(KEY, 3, Duration.ofSeconds(60));
+    Assertions.assertTrue(wait > 0 && wait <= 60_000);
+    Assertions.assertEquals(3, redisDataSource.sortedSet(String.class).zcard(KEY));
+    Assertions.assertTrue(redisDataSource.key().pttl(KEY) > 0);
+
+    rateLimiter.reset(KEY);
+    Assertions.assertEquals(0, rateLimiter.acquire(KEY, 3, Duration.ofSeconds(60)));
+  }
+
+  @Test
+  void testLegacyCounter() {
+    // counter left by the former INCR limiter, without TTL
+    redisDataSource.value(String.class).set(KEY, "100");
+    Assertions.assertEquals(0, rateLimiter.acquire(KEY, 3, Duration.ofSeconds(60)));
+    Assertions.assertEquals(1, redisDataSource.sortedSet(String.class).zcard(KEY));
+    Assertions.assertTrue(redisDataSource.key().pttl(KEY) > 0);
+  }
+}
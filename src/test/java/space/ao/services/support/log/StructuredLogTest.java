@@ -0,0 +1,55 @@
+/*
+ * Copyright (c) 2023 Institute of Software Chinese Academy of Sciences (ISCAS)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package space.ao.services.support.log;
+
+import io.quarkus.test.junit.QuarkusTest;
+import jakarta.inject.Inject;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+@QuarkusTest
+class StructuredLogTest {
+  @Inject
+  StructuredLog structuredLog;
+
+  @Test
+  void testRedact() {
+    var headers = new LinkedHashMap<String, String>();
+    headers.put("Box-Reg-Key", "reg-key-1");
+    headers.put("Authorization", "Bearer abc.def");
+    headers.put("Accept", "application/json");
+    Assertions.assertEquals("{Box-Reg-Key=***, Authorization=***, Accept=application/json}",
+        structuredLog.value(headers).toString());
+    Assertions.assertEquals("{\"userId\":\"1\",\"password\":\"***\"}",
+        structuredLog.value("{\"userId\":\"1\",\"password\":\"123456\"}").toString());
+    // only whole field names
+    Assertions.assertEquals("{mytoken=1}", structuredLog.value(Map.of("mytoken", "1")).toString());
+
+    Assertions.assertEquals("{requestId=req-1, sharedSecret=***}",
+        structuredLog.args(new String[]{"requestId", "sharedSecret"}, new Object[]{"req-1", "secret"}).toString());
+  }
+
+  @Test
+  void testCap() {
+    var text = structuredLog.value("x".repeat(10_000)).toString();
+    Assertions.assertTrue(text.length() < 300);
+    Assertions.assertTrue(text.endsWith("...(10000 chars)"));
+  }
+}
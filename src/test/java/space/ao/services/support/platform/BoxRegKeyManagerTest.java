@@ -0,0 +1,149 @@
+/*
+ * Copyright (c) 2023 Institute of Software Chinese Academy of Sciences (ISCAS)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package space.ao.services.support.platform;
+
+import io.quarkus.test.junit.QuarkusTest;
+import jakarta.inject.Inject;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import space.ao.services.support.platform.info.token.TokenCreateResults;
+import space.ao.services.support.platform.info.token.TokenResult;
+
+import java.time.OffsetDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+@QuarkusTest
+class BoxRegKeyManagerTest {
+  @Inject
+  BoxRegKeyManager boxRegKeyManager;
+
+  private static TokenCreateResults results(String serviceId, String boxRegKey, OffsetDateTime expiresAt) {
+    return TokenCreateResults.of("box-uuid", List.of(TokenResult.of(serviceId, boxRegKey, expiresAt)));
+  }
+
+  @Test
+  void testSingleFlight() throws Exception {
+    var serviceId = UUID.randomUUID().toString();
+    var calls = new AtomicInteger();
+    var entered = new CountDownLatch(8);
+    var release = new CountDownLatch(1);
+    var executor = Executors.newFixedThreadPool(8);
+    var pending = new ArrayList<CompletableFuture<String>>();
+    for (int i = 0; i < 8; i++) {
+      pending.add(CompletableFuture.supplyAsync(() -> {
+        entered.countDown();
+        return boxRegKeyManager.get("request-1", serviceId, requestId -> {
+          calls.incrementAndGet();
+          try {
+            release.await(5, TimeUnit.SECONDS);
+          } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+          }
+          return results(serviceId, "key-1", OffsetDateTime.now().plusHours(1));
+        });
+      }, executor));
+    }
+    // callers arriving after the creation find the cached key, so the count holds either way
+    Assertions.assertTrue(entered.await(5, TimeUnit.SECONDS));
+    release.countDown();
+    for (var future : pending) {
+      Assertions.assertEquals("key-1", future.get(5, TimeUnit.SECONDS));
+    }
+    executor.shutdown();
+    Assertions.assertEquals(1, calls.get());
+    // cached afterwards
+    Assertions.assertEquals("key-1", boxRegKeyManager.get("request-2", serviceId, requestId -> null));
+    boxRegKeyManager.invalidate(serviceId);
+  }
+
+  @Test
+  void testRefreshAhead() throws Exception {
+    var serviceId = UUID.randomUUID().toString();
+    // expiring within the refresh-ahead window
+    boxRegKeyManager.put(TokenResult.of(serviceId, "key-0", OffsetDateTime.now().plusMinutes(2)));
+    var calls = new AtomicInteger();
+    var refreshed = new CountDownLatch(1);
+    var retried = new CountDownLatch(1);
+    var key = boxRegKeyManager.get("request-1", serviceId, requestId -> {
+      var n = calls.incrementAndGet();
+      if (n == 1) {
+        refreshed.countDown();
+        throw new IllegalStateException("platform unavailable");
+      }
+      retried.countDown();
+      return results(serviceId, "key-" + n, OffsetDateTime.now().plusHours(1));
+    });
+    Assertions.assertEquals("key-0", key);
+    // refreshed in the background, the failed refresh leaves the current key in use
+    Assertions.assertTrue(refreshed.await(5, TimeUnit.SECONDS));
+    Assertions.assertEquals("key-0", boxRegKeyManager.get("request-2", serviceId, requestId -> null));
+    // and is retried
+    Assertions.assertTrue(retried.await(5, TimeUnit.SECONDS));
+    awaitPending(serviceId);
+    Assertions.assertEquals("key-2", boxRegKeyManager.get("request-3", serviceId, requestId -> null));
+    boxRegKeyManager.invalidate(serviceId);
+  }
+
+  @Test
+  void testInvalidateDuringCreation() throws Exception {
+    var serviceId = UUID.randomUUID().toString();
+    var entered = new CountDownLatch(1);
+    var release = new CountDownLatch(1);
+    var first = CompletableFuture.supplyAsync(() -> boxRegKeyManager.get("request-1", serviceId, requestId -> {
+      entered.countDown();
+      try {
+        release.await(5, TimeUnit.SECONDS);
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+      }
+      return results(serviceId, "key-old", OffsetDateTime.now().plusHours(1));
+    }));
+    Assertions.assertTrue(entered.await(5, TimeUnit.SECONDS));
+    var creation = boxRegKeyManager.pending(serviceId);
+    boxRegKeyManager.invalidate(serviceId);
+    release.countDown();
+
+    // the caller that was waiting still gets its key, but it is not kept
+    Assertions.assertEquals("key-old", first.get(5, TimeUnit.SECONDS));
+    creation.get(5, TimeUnit.SECONDS);
+    Assertions.assertNull(boxRegKeyManager.getTokenResult(serviceId));
+    boxRegKeyManager.invalidate(serviceId);
+  }
+
+  // waits for the creation the manager may still be storing
+  private void awaitPending(String serviceId) throws Exception {
+    var creation = boxRegKeyManager.pending(serviceId);
+    if (creation != null) {
+      creation.get(5, TimeUnit.SECONDS);
+    }
+  }
+
+  @Test
+  void testCreateFailed() {
+    var serviceId = UUID.randomUUID().toString();
+    Assertions.assertThrows(IllegalStateException.class, () -> boxRegKeyManager.get("request-1", serviceId,
+        requestId -> {
+          throw new IllegalStateException("platform unavailable");
+        }));
+  }
+}
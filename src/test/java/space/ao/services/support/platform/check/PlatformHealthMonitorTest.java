@@ -0,0 +1,74 @@
+/*
+ * Copyright (c) 2023 Institute of Software Chinese Academy of Sciences (ISCAS)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package space.ao.services.support.platform.check;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.quarkus.rest.client.reactive.QuarkusRestClientBuilder;
+import io.quarkus.test.junit.QuarkusTest;
+import jakarta.inject.Inject;
+import org.eclipse.microprofile.rest.client.inject.RestClient;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import space.ao.services.support.platform.PlatformRegistryServiceRestClient;
+import space.ao.services.support.platform.PlatformUtils;
+
+import java.net.URI;
+
+@QuarkusTest
+class PlatformHealthMonitorTest {
+  @Inject
+  PlatformHealthMonitor platformHealthMonitor;
+  @Inject
+  PlatformUtils platformUtils;
+  @Inject
+  @RestClient
+  PlatformRegistryServiceRestClient platformRegistryServiceRestClient;
+  @Inject
+  MeterRegistry registry;
+
+  @Test
+  void testCircuitBreaker() {
+    Assertions.assertTrue(platformHealthMonitor.probe(PlatformTypeEnum.SPACE));
+    Assertions.assertTrue(platformUtils.isRegistryPlatformAvailable("request-1"));
+
+    // nothing listens on port 1
+    var unreachable = QuarkusRestClientBuilder.newBuilder()
+        .baseUri(URI.create("http://127.0.0.1:1"))
+        .build(PlatformRegistryServiceRestClient.class);
+    try {
+      // the first failure is tolerated, the second one opens the breaker
+      platformUtils.setRegistryServiceRestClient(unreachable);
+      Assertions.assertTrue(platformHealthMonitor.awaitProbe(PlatformTypeEnum.SPACE));
+      Assertions.assertTrue(platformUtils.isRegistryPlatformAvailable("request-1"));
+      Assertions.assertFalse(platformHealthMonitor.probe(PlatformTypeEnum.SPACE));
+      Assertions.assertEquals(PlatformHealthMonitor.State.OPEN, platformHealthMonitor.getState(PlatformTypeEnum.SPACE));
+      Assertions.assertFalse(platformUtils.isRegistryPlatformAvailable("request-1"));
+      // the other platform is not affected
+      Assertions.assertTrue(platformUtils.isOpstagePlatformAvailable("request-1"));
+    } finally {
+      platformUtils.setRegistryServiceRestClient(platformRegistryServiceRestClient);
+    }
+    Assertions.assertTrue(platformHealthMonitor.awaitProbe(PlatformTypeEnum.SPACE));
+    Assertions.assertEquals(PlatformHealthMonitor.State.CLOSED, platformHealthMonitor.getState(PlatformTypeEnum.SPACE));
+    Assertions.assertTrue(platformUtils.isRegistryPlatformAvailable("request-1"));
+
+    Assertions.assertEquals(1, registry.get("platform.health.transitions")
+        .tags("platform", "space", "from", "CLOSED", "to", "OPEN").counter().count());
+    Assertions.assertEquals(1, registry.get("platform.health.transitions")
+        .tags("platform", "space", "from", "HALF_OPEN", "to", "CLOSED").counter().count());
+    Assertions.assertEquals(0, registry.get("platform.health.state").tag("platform", "space").gauge().value());
+  }
+}
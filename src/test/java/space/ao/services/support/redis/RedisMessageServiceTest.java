@@ -17,6 +17,7 @@
 package space.ao.services.support.redis;
 
 import io.quarkus.logging.Log;
+import io.quarkus.redis.datasource.RedisDataSource;
 import io.quarkus.test.junit.QuarkusTest;
 import jakarta.inject.Inject;
 import org.junit.jupiter.api.Assertions;
@@ -25,11 +26,17 @@ import space.ao.services.support.redis.message.ReceiveMessage;
 import space.ao.services.support.redis.message.RedisMessageService;
 import space.ao.services.support.redis.message.SendMessage;
 
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+
 @QuarkusTest
 class RedisMessageServiceTest {
 
   @Inject
   RedisMessageService redisMessageService;
+  @Inject
+  RedisDataSource redisDataSource;
 
   @Test
   void test() {
@@ -45,6 +52,46 @@ class RedisMessageServiceTest {
     Assertions.assertTrue(messages.isEmpty());
   }
 
+  @Test
+  void testGroup() throws InterruptedException {
+    redisDataSource.key().del("test-group");
+    redisMessageService.createGroup("test-group", "group");
+    redisMessageService.createGroup("test-group", "group");
+    for (int i = 0; i < 3; i++) {
+      redisMessageService.push("test-group", new SendMessage("1", "1", "1", "req-" + i, "1"));
+    }
+
+    var messages = redisMessageService.readGroup("test-group", "group", "consumer-1", 2, Duration.ofSeconds(1));
+    Assertions.assertEquals(List.of("req-0", "req-1"), messages.stream().map(ReceiveMessage::requestId).toList());
+    redisMessageService.ack("test-group", "group", List.of(messages.get(0).messageId()));
+
+    // consumer-1 stopped without acknowledging req-1, another consumer takes it over
+    Thread.sleep(10);
+    var claimed = redisMessageService.autoClaim("test-group", "group", "consumer-2", Duration.ofMillis(1), 10);
+    Assertions.assertEquals(List.of("req-1"), claimed.stream().map(ReceiveMessage::requestId).toList());
+    redisMessageService.ack("test-group", "group", List.of(claimed.get(0).messageId()));
+
+    messages = redisMessageService.readGroup("test-group", "group", "consumer-2", 10, Duration.ofSeconds(1));
+    Assertions.assertEquals(List.of("req-2"), messages.stream().map(ReceiveMessage::requestId).toList());
+    redisMessageService.ack("test-group", "group", List.of(messages.get(0).messageId()));
+    Assertions.assertTrue(redisMessageService.autoClaim("test-group", "group", "consumer-1", Duration.ofMillis(1), 10).isEmpty());
+    Assertions.assertTrue(redisMessageService.getMessage("test-group", null, null).isEmpty());
+  }
+
+  @Test
+  void testPushAll() {
+    redisDataSource.key().del("test-all-1", "test-all-2");
+    redisMessageService.pushAll(List.of(
+        Map.entry("test-all-1", new SendMessage("1", "1", "1", "req-0", "1")),
+        Map.entry("test-all-2", new SendMessage("2", "2", "1", "req-1", "")),
+        Map.entry("test-all-1", new SendMessage("1", "1", "1", "req-2", "1"))));
+
+    Assertions.assertEquals(List.of("req-0", "req-2"),
+        redisMessageService.getMessage("test-all-1", null, null).stream().map(ReceiveMessage::requestId).toList());
+    Assertions.assertEquals(List.of("req-1"),
+        redisMessageService.getMessage("test-all-2", null, null).stream().map(ReceiveMessage::requestId).toList());
+  }
+
   boolean readMessage(ReceiveMessage message){
     Log.info("message: " + message);
     return redisMessageService.del("test", message.messageId());
@@ -0,0 +1,59 @@
+/*
+ * Copyright (c) 2023 Institute of Software Chinese Academy of Sciences (ISCAS)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package space.ao.services.support.security;
+
+import io.quarkus.test.junit.QuarkusTest;
+import jakarta.inject.Inject;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import space.ao.services.support.TokenUtils;
+import space.ao.services.support.model.AccessToken;
+
+import javax.crypto.Cipher;
+import javax.crypto.spec.IvParameterSpec;
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+
+@QuarkusTest
+class Base64CipherEncoderTest {
+  @Inject
+  SecurityUtils securityUtils;
+  @Inject
+  TokenUtils tokenUtils;
+
+  @Test
+  void testSameAsWholeBodyEncryption() {
+    var accessToken = AccessToken.builder()
+        .sharedSecret("0123456789abcdef0123456789abcdef")
+        .sharedInitializationVector(new IvParameterSpec(new byte[16]))
+        .build();
+    var body = "{\"list\":[\"/a\",\"/b\"],\"pageInfo\":{\"page\":0}}".repeat(7);
+    var bytes = body.getBytes(StandardCharsets.UTF_8);
+
+    for (var chunkSize : new int[]{1, 2, 5, 16, 17, 4096}) {
+      var encoder = new Base64CipherEncoder(tokenUtils.createAndInitCipherWithAccessToken(accessToken, Cipher.ENCRYPT_MODE));
+      var out = new ByteArrayOutputStream();
+      for (int offset = 0; offset < bytes.length; offset += chunkSize) {
+        out.writeBytes(encoder.update(bytes, offset, Math.min(chunkSize, bytes.length - offset)));
+      }
+      out.writeBytes(encoder.doFinal());
+
+      Assertions.assertEquals(securityUtils.encryptWithSecret(body, accessToken.getSharedSecret(),
+          accessToken.getSharedInitializationVector()), out.toString(StandardCharsets.US_ASCII));
+    }
+  }
+}
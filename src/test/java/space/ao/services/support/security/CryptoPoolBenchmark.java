@@ -0,0 +1,103 @@
+/*
+ * Copyright (c) 2023 Institute of Software Chinese Academy of Sciences (ISCAS)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package space.ao.services.support.security;
+
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import javax.crypto.Cipher;
+import javax.crypto.spec.IvParameterSpec;
+import javax.crypto.spec.SecretKeySpec;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.security.KeyPair;
+import java.security.KeyPairGenerator;
+import java.security.Signature;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares creating crypto primitives per call (before) with {@link CryptoPool} (after).
+ *
+ * <p>Run with: {@code mvn test-compile exec:java -Dexec.classpathScope=test
+ * -Dexec.mainClass=space.ao.services.support.security.CryptoPoolBenchmark},
+ * the gc profiler reports the allocation rate ({@code gc.alloc.rate.norm}).
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class CryptoPoolBenchmark {
+  private static final String TRANSFORMATION = "AES/CBC/PKCS5PADDING";
+  private static final String SIGNATURE_ALGORITHM = "SHA256withRSA";
+
+  private final String secret = "0123456789abcdef0123456789abcdef";
+  private final IvParameterSpec iv = new IvParameterSpec(new byte[16]);
+  private final byte[] body = "{\"serviceName\":\"eulixspace-file-service\",\"apiName\":\"list_folders\"}"
+      .repeat(16).getBytes(StandardCharsets.UTF_8);
+  private KeyPair keyPair;
+
+  @Setup
+  public void setUp() throws GeneralSecurityException {
+    var generator = KeyPairGenerator.getInstance("RSA");
+    generator.initialize(2048);
+    keyPair = generator.generateKeyPair();
+  }
+
+  @Benchmark
+  public byte[] aesPerCall() throws GeneralSecurityException {
+    var secretKey = new SecretKeySpec(secret.getBytes(StandardCharsets.UTF_8), "AES");
+    var cipher = Cipher.getInstance(TRANSFORMATION);
+    cipher.init(Cipher.ENCRYPT_MODE, secretKey, iv);
+    return cipher.doFinal(body);
+  }
+
+  @Benchmark
+  public byte[] aesPooled() throws GeneralSecurityException {
+    var secretKey = CryptoPool.secretKey(secret, "AES");
+    var cipher = CryptoPool.cipher(TRANSFORMATION);
+    cipher.init(Cipher.ENCRYPT_MODE, secretKey, iv);
+    return cipher.doFinal(body);
+  }
+
+  @Benchmark
+  public boolean verifyPerCall() throws GeneralSecurityException {
+    var signature = Signature.getInstance(SIGNATURE_ALGORITHM);
+    signature.initVerify(keyPair.getPublic());
+    signature.update(body);
+    return signature.verify(new byte[256]);
+  }
+
+  @Benchmark
+  public boolean verifyPooled() throws GeneralSecurityException {
+    var signature = CryptoPool.signature(SIGNATURE_ALGORITHM);
+    signature.initVerify(keyPair.getPublic());
+    signature.update(body);
+    return signature.verify(new byte[256]);
+  }
+
+  public static void main(String[] args) throws RunnerException {
+    new Runner(new OptionsBuilder()
+        .include(CryptoPoolBenchmark.class.getSimpleName())
+        .addProfiler(GCProfiler.class)
+        .build()).run();
+  }
+}
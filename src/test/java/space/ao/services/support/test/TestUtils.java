@@ -44,6 +44,7 @@ import space.ao.services.gateway.RealCallResult;
 import space.ao.services.gateway.auth.CreateTokenInfo;
 import space.ao.services.gateway.auth.CreateTokenResult;
 import space.ao.services.support.OperationUtils;
+import space.ao.services.support.cache.UserAccessCache;
 import space.ao.services.support.model.AccessToken;
 import space.ao.services.support.security.SecurityUtils;
 
@@ -82,6 +83,8 @@ public class TestUtils {
   @Inject
   AuthorizedTerminalRepository authorizedTerminalRepository;
   @Inject
+  UserAccessCache userAccessCache;
+  @Inject
   OperationUtils utils;
 
   @Inject
@@ -131,6 +134,8 @@ public class TestUtils {
       userInfoRepository.update("set id=1 where role=?1", UserEntity.Role.ADMINISTRATOR);
       userEntityAdmin.setAoId("aoid-" + userEntityAdmin.getId());
     }
+    // the admin entity above is changed without the repository update methods
+    userAccessCache.invalidateAll();
 
     createAdminInfoFile();
     memberManageService.writeToAdminFile(AdminInfoFileDTO.of(
@@ -164,6 +169,7 @@ public class TestUtils {
   public void deleteAllUser() {
     userInfoRepository.deleteAll();
     authorizedTerminalRepository.deleteAll();
+    userAccessCache.invalidateAll();
   }
 
   @Transactional